@@ -0,0 +1,58 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures filling the knapsack table for one day and choosing its schools.
+ * The day with the most candidates is used.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DayKnapsackBenchmark {
+
+   @Param({"100", "400"})
+   public int schools;
+   @Param({"20", "40"})
+   public int days;
+   @Param({"300"})
+   public int seats;
+   @Param({"0", "0.33"})
+   public double splitRatio;
+
+   private LogicModel model;
+   private KnapsackTable table;
+   private ArrayList<School> availSchools;
+   private Day day;
+
+   @Setup(Level.Trial)
+   public void setup() {
+      model = Workload.build(schools, days, seats, splitRatio, 42);
+      table = new KnapsackTable();
+
+      for (Day d : model.dayList.values())
+      {
+         if (day == null || d.candidates.length > day.candidates.length)
+         {
+            day = d;
+         }
+      }
+      availSchools = model.getAvail(model.schoolListSplit, day);
+   }
+
+   @Benchmark
+   public ArrayList<School> fillAndChoose() {
+      day.clearSchools();
+      model.fillTable(table, availSchools, day.getSeats());
+      return model.altChooseSchedule(table, availSchools, day.index);
+   }
+}
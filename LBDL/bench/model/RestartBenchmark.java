@@ -0,0 +1,43 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures one full altKnapsack iteration: scheduling, need adds and
+ * dropping partly scheduled split schools until nothing changes.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestartBenchmark {
+
+   @Param({"100", "400"})
+   public int schools;
+   @Param({"20", "40"})
+   public int days;
+   @Param({"300"})
+   public int seats;
+   @Param({"0", "0.33"})
+   public double splitRatio;
+
+   private LogicModel model;
+   private long restart;
+
+   @Setup(Level.Trial)
+   public void setup() {
+      model = Workload.build(schools, days, seats, splitRatio, 42);
+   }
+
+   @Benchmark
+   public int runIteration() {
+      return model.runIteration(model.seedFor(restart++));
+   }
+}
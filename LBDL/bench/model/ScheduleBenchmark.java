@@ -0,0 +1,48 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures one schedule() pass over every day, starting from an empty
+ * schedule.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleBenchmark {
+
+   @Param({"100", "400"})
+   public int schools;
+   @Param({"20", "40"})
+   public int days;
+   @Param({"300"})
+   public int seats;
+   @Param({"0", "0.33"})
+   public double splitRatio;
+
+   private LogicModel model;
+
+   @Setup(Level.Trial)
+   public void setup() {
+      model = Workload.build(schools, days, seats, splitRatio, 42);
+   }
+
+   @Setup(Level.Invocation)
+   public void clear() {
+      model.beginIteration(42);
+   }
+
+   @Benchmark
+   public int schedule() {
+      model.schedule(model.unscheduled);
+      return model.scheduledSchools.size();
+   }
+}
@@ -0,0 +1,344 @@
+package model;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Random;
+
+import org.apache.poi.openxml4j.util.Nullable;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Writes made up workbooks in the layout ExcelHandler.readXLFile reads, so
+ * the scheduler can be profiled at any size without real school data. The
+ * same seed and settings always give the same workbook.
+ *
+ * Rows are streamed to disk, so 200,000 schools by 365 days only keeps a
+ * small window of rows in memory.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class WorkbookGenerator {
+
+   /**
+    * The first date column, as in the template
+    */
+   public static final int DATE_START = 7;
+   /**
+    * The rows kept in memory while streaming
+    */
+   private static final int WINDOW = 100;
+
+   private long seed = 1;
+   private int numSchools = 100;
+   private int numDays = 28;
+   private int minSeats = 110;
+   private int maxSeats = 110;
+   private double meanStudents = 70;
+   private double deviationStudents = 25;
+   private int minStudents = 15;
+   private int maxStudents = 150;
+   private double splitRatio = .2;
+   private double availability = .5;
+   private double blankRatio = .02;
+   private double visitedRatio = .6;
+   private final Calendar firstDate = Calendar.getInstance();
+
+   public WorkbookGenerator() {
+      firstDate.clear();
+      firstDate.set(2016, Calendar.JANUARY, 21);
+   }
+
+   /**
+    * Writes the workbook.
+    *
+    * @param filename The file to write.
+    * @throws IOException If the file can not be written.
+    */
+   public void write(String filename) throws IOException {
+      //Compress the temp file, and write strings inline. A shared string
+      //table makes writing about three times slower
+      SXSSFWorkbook wb = new SXSSFWorkbook(null, WINDOW, true, false);
+      Sheet sheet = wb.createSheet("Sheet1");
+      Random rand = new Random(seed);
+
+      try
+      {
+         //Keep the file the same from run to run
+         wb.getXSSFWorkbook().getProperties().getCoreProperties().setCreated(new Nullable<>(firstDate.getTime()));
+         writeDates(sheet, rand);
+         for (int num = 0; num < numSchools; num++)
+         {
+            writeSchool(sheet.createRow(num + 2), num, rand);
+         }
+         //The reader stops at the first row without a school name
+         sheet.createRow(numSchools + 2).createCell(0);
+
+         try (FileOutputStream fileOut = new FileOutputStream(filename))
+         {
+            wb.write(fileOut);
+         }
+      } finally
+      {
+         wb.dispose();
+         wb.close();
+      }
+   }
+
+   /**
+    * Writes the header row with one date per column and the seats row.
+    *
+    * @param sheet The sheet.
+    * @param rand The random number generator.
+    */
+   private void writeDates(Sheet sheet, Random rand) {
+      SimpleDateFormat formatter = new SimpleDateFormat("EE. M/d");
+      Calendar date = (Calendar) firstDate.clone();
+      Row header = sheet.createRow(0);
+      Row seats = sheet.createRow(1);
+      String[] titles = {"Priority", "Full School Name:", "Have you visited before?", "Grade Levels",
+         "How many total students", "Split?", "Split numbers"};
+
+      for (int col = 0; col < titles.length; col++)
+      {
+         header.createCell(col).setCellValue(titles[col]);
+      }
+
+      for (int index = 0; index < numDays; index++)
+      {
+         //Field trips only run on weekdays
+         while (date.get(Calendar.DAY_OF_WEEK) == Calendar.SATURDAY
+                 || date.get(Calendar.DAY_OF_WEEK) == Calendar.SUNDAY)
+         {
+            date.add(Calendar.DATE, 1);
+         }
+         header.createCell(DATE_START + index).setCellValue(formatter.format(date.getTime()));
+         seats.createCell(DATE_START + index).setCellValue(minSeats + rand.nextInt(maxSeats - minSeats + 1));
+         date.add(Calendar.DATE, 1);
+      }
+   }
+
+   /**
+    * Writes one school row.
+    *
+    * @param row The row.
+    * @param num The number of the school. Its priority is num + 1.
+    * @param rand The random number generator.
+    */
+   private void writeSchool(Row row, int num, Random rand) {
+      int students, first;
+      boolean blank;
+      Cell cell;
+
+      students = (int) Math.round(meanStudents + rand.nextGaussian() * deviationStudents);
+      students = Math.max(minStudents, Math.min(maxStudents, students));
+
+      row.createCell(0).setCellValue(num + 1);
+      row.createCell(1).setCellValue("School " + (num + 1));
+      row.createCell(2).setCellValue(rand.nextDouble() < visitedRatio ? "Last Year" : "No");
+      row.createCell(3).setCellValue("K-6");
+      row.createCell(4).setCellValue(students);
+
+      if (students > 1 && rand.nextDouble() < splitRatio)
+      {
+         //Split somewhere between a third and two thirds
+         first = Math.max(1, Math.min(students - 1, students / 3 + rand.nextInt(students / 3 + 1)));
+         row.createCell(5).setCellValue(1);
+         row.createCell(6).setCellValue(first + ", " + (students - first));
+      }
+      else
+      {
+         row.createCell(5).setCellValue(0);
+      }
+
+      //Some schools leave their dates empty
+      blank = rand.nextDouble() < blankRatio;
+      for (int index = 0; index < numDays; index++)
+      {
+         cell = row.createCell(DATE_START + index);
+         if (blank)
+         {
+            cell.setCellValue("");
+         }
+         else
+         {
+            cell.setCellValue(rand.nextDouble() < availability ? "1" : "0");
+         }
+      }
+   }
+
+   /**
+    * Returns the column name of the last date, to pass to readXLFile.
+    *
+    * @return The column name, such as AI.
+    */
+   public String getEndColumn() {
+      return columnName(DATE_START + numDays - 1);
+   }
+
+   /**
+    * Converts a column number to its name where 0 = A. The reverse of
+    * ExcelHandler.convertColumn.
+    *
+    * @param number The column number.
+    * @return The column name.
+    */
+   public static String columnName(int number) {
+      StringBuilder name = new StringBuilder();
+
+      for (int col = number + 1; col > 0; col = (col - 1) / 26)
+      {
+         name.insert(0, (char) ('A' + (col - 1) % 26));
+      }
+      return name.toString();
+   }
+
+   public void setSeed(long seed) {
+      this.seed = seed;
+   }
+
+   public void setSchools(int numSchools) {
+      this.numSchools = numSchools;
+   }
+
+   public void setDays(int numDays) {
+      this.numDays = numDays;
+   }
+
+   /**
+    * Sets the range the seats of each day are picked from.
+    *
+    * @param min The fewest seats.
+    * @param max The most seats.
+    */
+   public void setSeats(int min, int max) {
+      this.minSeats = min;
+      this.maxSeats = Math.max(min, max);
+   }
+
+   /**
+    * Sets the normal distribution school sizes are drawn from.
+    *
+    * @param mean The average school size.
+    * @param deviation The standard deviation.
+    * @param min The smallest school.
+    * @param max The biggest school.
+    */
+   public void setStudents(double mean, double deviation, int min, int max) {
+      this.meanStudents = mean;
+      this.deviationStudents = deviation;
+      this.minStudents = min;
+      this.maxStudents = Math.max(min, max);
+   }
+
+   public void setSplitRatio(double splitRatio) {
+      this.splitRatio = splitRatio;
+   }
+
+   /**
+    * Sets the chance that a school can come on any one date.
+    *
+    * @param availability The chance, from 0 to 1.
+    */
+   public void setAvailability(double availability) {
+      this.availability = availability;
+   }
+
+   /**
+    * Sets the share of schools that leave every date empty.
+    *
+    * @param blankRatio The share, from 0 to 1.
+    */
+   public void setBlankRatio(double blankRatio) {
+      this.blankRatio = blankRatio;
+   }
+
+   public void setVisitedRatio(double visitedRatio) {
+      this.visitedRatio = visitedRatio;
+   }
+
+   /**
+    * Sets the first date. Weekends are skipped.
+    *
+    * @param year The year.
+    * @param month The month, starting at 1.
+    * @param day The day of the month.
+    */
+   public void setFirstDate(int year, int month, int day) {
+      firstDate.clear();
+      firstDate.set(year, month - 1, day);
+   }
+
+   /**
+    * Writes a workbook from the command line.
+    *
+    * Usage: WorkbookGenerator file [-schools n] [-days n] [-seed n]
+    * [-seats min max] [-students mean deviation min max] [-split ratio]
+    * [-avail chance] [-blank ratio] [-visited ratio]
+    *
+    * @param args The file and options.
+    * @throws IOException If the file can not be written.
+    */
+   public static void main(String[] args) throws IOException {
+      WorkbookGenerator generator = new WorkbookGenerator();
+      long startTime;
+      int arg = 1;
+
+      if (args.length == 0)
+      {
+         System.err.println("Usage: WorkbookGenerator file [-schools n] [-days n] [-seed n] [-seats min max]"
+                 + " [-students mean deviation min max] [-split ratio] [-avail chance] [-blank ratio] [-visited ratio]");
+         System.exit(2);
+      }
+
+      while (arg < args.length)
+      {
+         switch (args[arg++])
+         {
+            case "-schools":
+               generator.setSchools(Integer.parseInt(args[arg++]));
+               break;
+            case "-days":
+               generator.setDays(Integer.parseInt(args[arg++]));
+               break;
+            case "-seed":
+               generator.setSeed(Long.parseLong(args[arg++]));
+               break;
+            case "-seats":
+               generator.setSeats(Integer.parseInt(args[arg]), Integer.parseInt(args[arg + 1]));
+               arg += 2;
+               break;
+            case "-students":
+               generator.setStudents(Double.parseDouble(args[arg]), Double.parseDouble(args[arg + 1]),
+                       Integer.parseInt(args[arg + 2]), Integer.parseInt(args[arg + 3]));
+               arg += 4;
+               break;
+            case "-split":
+               generator.setSplitRatio(Double.parseDouble(args[arg++]));
+               break;
+            case "-avail":
+               generator.setAvailability(Double.parseDouble(args[arg++]));
+               break;
+            case "-blank":
+               generator.setBlankRatio(Double.parseDouble(args[arg++]));
+               break;
+            case "-visited":
+               generator.setVisitedRatio(Double.parseDouble(args[arg++]));
+               break;
+            default:
+               System.err.println("Unknown option: " + args[arg - 1]);
+               System.exit(2);
+         }
+      }
+
+      startTime = System.currentTimeMillis();
+      generator.write(args[0]);
+      System.out.println("Wrote " + args[0] + " in " + ((System.currentTimeMillis() - startTime) / 1000.0)
+              + " seconds. Dates are columns " + columnName(DATE_START) + " to " + generator.getEndColumn());
+   }
+}
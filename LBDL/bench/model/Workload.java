@@ -0,0 +1,80 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Builds a made up workbook for the benchmarks. Schools and days are set up
+ * the same way ExcelHandler reads them, so no excel file is needed.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class Workload {
+
+   /**
+    * The number of top priority schools that must be added, as in the
+    * ExcelHandler.
+    */
+   private static final int TOP_PRIORITY = 10;
+
+   /**
+    * Builds a model with its split school list ready to schedule.
+    *
+    * @param numSchools The number of schools.
+    * @param numDays The number of days.
+    * @param seats The number of seats on every day.
+    * @param splitRatio The share of schools that can be split in two.
+    * @param seed The seed for the random school sizes and dates.
+    * @return The model.
+    */
+   public static LogicModel build(int numSchools, int numDays, int seats, double splitRatio, long seed) {
+      LogicModel model = new LogicModel();
+      Random rand = new Random(seed);
+      School school;
+      Day day;
+      int half;
+
+      for (int index = 1; index <= numDays; index++)
+      {
+         day = new Day(index, seats);
+         day.date.set(2016, 0, index);
+         model.dayList.put(index, day);
+      }
+      model.TotalDays = numDays;
+
+      for (int num = 0; num < numSchools; num++)
+      {
+         school = new School(model.ids);
+         school.name = "School " + num;
+         school.priority = 500.0 - (num + 1);
+         school.numStudents = 20 + rand.nextInt(90);
+         school.totalNumStudents = school.numStudents;
+
+         if (rand.nextDouble() < splitRatio)
+         {
+            school.split = true;
+            half = school.numStudents / 2;
+            school.splitNums.add(half);
+            school.splitNums.add(school.numStudents - half);
+         }
+
+         //Each school can come on about half of the days
+         for (int index = 1; index <= numDays; index++)
+         {
+            if (rand.nextBoolean())
+            {
+               school.addDay(model.dayList.get(index));
+            }
+         }
+
+         if (num < TOP_PRIORITY)
+         {
+            model.toAdd.add(school);
+         }
+         model.schoolList.add(school);
+      }
+
+      model.createSplitSchoolList();
+      return model;
+   }
+}
@@ -24,8 +24,12 @@ import model.*;
  * @author Daniel Yao
  * @year 2016
  */
-public class GUI extends javax.swing.JFrame implements Observer {
+public class GUI extends javax.swing.JFrame {
 
+   /**
+    * How often the model's events are shown, about 30 times a second
+    */
+   private static final int FRAME_MILLIS = 33;
    private final LogicModel model;
    private int progress = 0;
    //Key is index in day options, value is Day.index
@@ -44,7 +48,16 @@ public class GUI extends javax.swing.JFrame implements Observer {
     */
    public GUI(final LogicModel model) {
       this.model = model;
-      this.model.addObserver(this);
+      //Show the model's events once a frame, on the event thread
+      new javax.swing.Timer(FRAME_MILLIS, new java.awt.event.ActionListener() {
+         @Override
+         public void actionPerformed(java.awt.event.ActionEvent evt) {
+            for (ModelEvents.Event event : model.getEvents().drain())
+            {
+               update(event);
+            }
+         }
+      }).start();
       //Set the layout of the gui
       SpringLayout springLayout = new SpringLayout();
       this.getContentPane().setLayout(springLayout);
@@ -72,14 +85,33 @@ public class GUI extends javax.swing.JFrame implements Observer {
       WindowListener exitListener = new WindowAdapter() {
          @Override
          public void windowClosing(WindowEvent e) {
-            if (model.thread != null && model.thread.isAlive())
-            {
-               model.thread.interrupt();
-            }
+            cancelRun();
             System.exit(0);
          }
       };
       addWindowListener(exitListener);
+
+      //Escape stops a run, keeping the best schedule so far
+      getRootPane().registerKeyboardAction(new java.awt.event.ActionListener() {
+         @Override
+         public void actionPerformed(java.awt.event.ActionEvent evt) {
+            if (cancelRun())
+            {
+               lblLog.setText("<html>Status:   <b>Cancelling...</b></html>");
+            }
+         }
+      }, javax.swing.KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), javax.swing.JComponent.WHEN_IN_FOCUSED_WINDOW);
+   }
+
+   /**
+    * Cancels the solver run if one is going.
+    *
+    * @return True if a run was cancelled.
+    */
+   private boolean cancelRun() {
+      SolverJob job = model.getJob();
+
+      return job != null && job.cancel(true);
    }
 
    /**
@@ -152,6 +184,7 @@ public class GUI extends javax.swing.JFrame implements Observer {
       lblLog = new javax.swing.JLabel();
       menuBar = new javax.swing.JMenuBar();
       menuFile = new javax.swing.JMenu();
+      menuExact = new javax.swing.JCheckBoxMenuItem();
       menuExit = new javax.swing.JMenuItem();
       menuAbout = new javax.swing.JMenu();
       menuInfo = new javax.swing.JMenuItem();
@@ -749,6 +782,10 @@ public class GUI extends javax.swing.JFrame implements Observer {
 
       menuFile.setText("File");
 
+      menuExact.setText("Exact Search");
+      menuExact.setToolTipText("<html>After the iterations, search for a schedule that seats more students.<br/> Can take several minutes</html>");
+      menuFile.add(menuExact);
+
       menuExit.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_E, java.awt.event.InputEvent.ALT_MASK));
       menuExit.setText("Exit");
       menuExit.addActionListener(new java.awt.event.ActionListener() {
@@ -826,7 +863,7 @@ public class GUI extends javax.swing.JFrame implements Observer {
    private void btnChooseFileActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_btnChooseFileActionPerformed
    {//GEN-HEADEREND:event_btnChooseFileActionPerformed
       inputFileChooser.setCurrentDirectory(new File(FileSystemView.getFileSystemView().getDefaultDirectory().getPath()));
-      FileNameExtensionFilter filter = new FileNameExtensionFilter("Excel Files", "xlsx", "xls", "csv", "xlsm");
+      FileNameExtensionFilter filter = new FileNameExtensionFilter("Excel Files", "xlsx", "xls", "csv", "tsv", "json", "xlsm");
       inputFileChooser.setFileFilter(filter);
       inputFileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
       inputFileChooser.showOpenDialog(this);
@@ -871,8 +908,9 @@ public class GUI extends javax.swing.JFrame implements Observer {
       btnWrite.setEnabled(false);
 
       model.setIterations(progress);
+      model.setSolverMode(menuExact.isSelected() ? LogicModel.SolverMode.EXACT : LogicModel.SolverMode.RESTARTS);
       progressBar.setMaximum(progress);
-      lblLog.setText("<html>Status:   <b>Running...</b></html>");
+      lblLog.setText("<html>Status:   <b>Running...</b> (Esc to cancel)</html>");
       model.knapsack();
    }//GEN-LAST:event_btnKnapActionPerformed
 
@@ -907,10 +945,7 @@ public class GUI extends javax.swing.JFrame implements Observer {
    }//GEN-LAST:event_btnOKActionPerformed
 
     private void menuExitActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menuExitActionPerformed
-       if (model.thread != null && model.thread.isAlive())
-       {
-          model.thread.interrupt();
-       }
+       cancelRun();
        System.exit(0);
     }//GEN-LAST:event_menuExitActionPerformed
 
@@ -959,7 +994,7 @@ public class GUI extends javax.swing.JFrame implements Observer {
       lblOptSeatsLeft.setText("<html>Seats Left: <b>" + day.getSeats() + "</b></html>");
       lblOptMaxSeats.setText("<html>Max Seats: <b>"+ day.getMaxSeats() +"</b></html>");
       
-      DefaultListModel<String> listDayModel = day.getSchoolNames();
+      DefaultListModel<String> listDayModel = getSchoolNames(day);
       listOptDaySchools.setModel(listDayModel);
       
       dialogSchoolOptions.setVisible(true);
@@ -1025,7 +1060,7 @@ public class GUI extends javax.swing.JFrame implements Observer {
                remSchoolMap.remove(school);
                lblOptSeatsLeft.setText("<html>Seats Left: <b>" + day.getSeats() + "</b></html>");
                lblOptMaxSeats.setText("<html>Max Seats: <b>"+ day.getMaxSeats() +"</b></html>");
-               listDayModel = day.getSchoolNames();
+               listDayModel = getSchoolNames(day);
                break;
             }
          }
@@ -1041,7 +1076,7 @@ public class GUI extends javax.swing.JFrame implements Observer {
       lblOptMaxSeats.setText("<html>Max Seats: <b>"+ day.getMaxSeats() +"</b></html>");
       
       DefaultListModel<String> listDayModel = new DefaultListModel<>();
-      listDayModel = day.getSchoolNames();
+      listDayModel = getSchoolNames(day);
       listOptDaySchools.setModel(listDayModel);
    }//GEN-LAST:event_comboOptDaysActionPerformed
 
@@ -1070,7 +1105,7 @@ public class GUI extends javax.swing.JFrame implements Observer {
          
          lblOptSeatsLeft.setText("<html>Seats Left: <b>" + day.getSeats() + "</b></html>");
          lblOptMaxSeats.setText("<html>Max Seats: <b>"+ day.getMaxSeats() +"</b></html>");
-         listDayModel = day.getSchoolNames();
+         listDayModel = getSchoolNames(day);
          
          listOptDaySchools.setModel(listDayModel);
          createOptSchools();
@@ -1120,25 +1155,38 @@ public class GUI extends javax.swing.JFrame implements Observer {
       });
    }
 
-   @Override
-   public void update(Observable o, Object arg) {
-      LogicModel.NotifyCmd cmd = (LogicModel.NotifyCmd) arg;
+   /**
+    * Get list model of all school names of a day
+    *
+    * @param day The day.
+    * @return DefaultListModel<String> of all the school names
+    */
+   private static DefaultListModel<String> getSchoolNames(Day day) {
+      DefaultListModel<String> listModel = new DefaultListModel<>();
+
+      String sSize, element;
+      for (School s : day.getSchools())
+      {
+         sSize = "<b>" + s.getTotalStudents() + "</b>";
+         element = String.format("<html>%2.1f %10s %s</html>", 500 - s.priority, sSize, s.getName());
+         listModel.addElement(element);
+      }
+
+      return listModel;
+   }
 
+   /**
+    * Shows one event from the model.
+    *
+    * @param event The event.
+    */
+   private void update(ModelEvents.Event event) {
       //SWITCH over the commands 
-      switch (cmd)
+      switch (event.getCmd())
       {
          case TEXT:
-         {
-            try
-            {
-               Thread.sleep(700);
-            } catch (InterruptedException ex)
-            {
-               System.out.println(ex.toString());
-            }
-            lblDebug.setText("<html>Results: <br/>" + model.notifyText + "</html>");
-         }
-         break;
+            lblDebug.setText("<html>Results: <br/>" + event.getText() + "</html>");
+            break;
          case LIST:
             DefaultListModel<String> listModel = new DefaultListModel<>();
             ArrayList<FinalDay> schedule = new ArrayList<>(model.finalSchedule);
@@ -1180,14 +1228,14 @@ public class GUI extends javax.swing.JFrame implements Observer {
             lblLog.setText("Status: ");
             break;
          case PROG:
-            progressBar.setValue(model.index);
+            progressBar.setValue(event.getProgress());
             break;
          case ERROR:
-            lblError.setText(model.notifyText);
+            lblError.setText(event.getText());
             dialogError.setVisible(true);
             break;
          case LOG:
-            lblLog.setText("Status: " + model.notifyText);
+            lblLog.setText("Status: " + event.getText());
             break;
       }
    }
@@ -1281,6 +1329,7 @@ public class GUI extends javax.swing.JFrame implements Observer {
    private javax.swing.JList<String> listSchools;
    private javax.swing.JMenu menuAbout;
    private javax.swing.JMenuBar menuBar;
+   private javax.swing.JCheckBoxMenuItem menuExact;
    private javax.swing.JMenuItem menuExit;
    private javax.swing.JMenu menuFile;
    private javax.swing.JMenuItem menuHow;
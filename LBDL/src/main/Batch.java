@@ -0,0 +1,422 @@
+package main;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import model.BestSchedule;
+import model.LogicModel;
+import model.ModelEvents;
+import model.ResultCache;
+
+/**
+ * Runs the scheduler without the GUI. Reads the input file, runs the solver,
+ * writes the schedule workbook and a JSON summary of the run, and returns an
+ * exit code. No Swing classes are loaded, and AWT runs headless for the few
+ * font classes POI uses. Anything the model prints goes to stderr, so stdout
+ * carries only the summary when it is written there.
+ *
+ * Usage: java -jar LBDL.jar --input FILE --output FILE [options]
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class Batch {
+
+   /**
+    * The schedule and summary were written
+    */
+   public static final int OK = 0;
+   /**
+    * The arguments were wrong
+    */
+   public static final int USAGE = 2;
+   /**
+    * The input file could not be read
+    */
+   public static final int READ_FAILED = 3;
+   /**
+    * The solver failed or scheduled nothing
+    */
+   public static final int SOLVE_FAILED = 4;
+   /**
+    * The schedule or summary could not be written
+    */
+   public static final int WRITE_FAILED = 5;
+
+   private static final String USAGE_TEXT
+           = "Usage: java -jar LBDL.jar --input FILE --output FILE [options]\n"
+           + "  --input FILE         The .xlsx, .csv, .tsv or .json file to read\n"
+           + "  --output FILE        The .xlsx schedule to write\n"
+           + "  --start COL          The first date column (default H)\n"
+           + "  --end COL            The last date column (default AI)\n"
+           + "  --iterations N       The number of restarts (default 55000)\n"
+           + "  --seed N             The master seed, to repeat a run\n"
+           + "  --mode MODE          restarts, exact or anytime (default restarts,\n"
+           + "                       or anytime with a time budget). Exact runs\n"
+           + "                       the restarts, then a branch and bound search\n"
+           + "  --time-budget MS     Run restarts until the time is up instead, or\n"
+           + "                       stop the exact search then\n"
+           + "  --threads N          The number of solver threads (default 1)\n"
+           + "  --summary FILE       Where to write the JSON summary, - for\n"
+           + "                       standard out (default OUTPUT.json)\n"
+           + "  --result-cache DIR   Keep seeded results in DIR and reuse them\n"
+           + "Exit codes: 0 done, 2 bad arguments, 3 input not read,\n"
+           + "            4 nothing scheduled, 5 output not written\n"
+           + "Or: java -jar LBDL.jar --serve [options] to run as an HTTP service";
+
+   private String input, output, summary;
+   private String start = "H", end = "AI";
+   private int iterations = 55000, threads = 1;
+   private long seed, timeBudget;
+   private boolean seedSet = false;
+   /**
+    * The engine to run. Picked from the time budget if not given
+    */
+   private LogicModel.SolverMode mode;
+   /**
+    * Where seeded results are kept, or null to always solve
+    */
+   private ResultCache resultCache;
+   /**
+    * The first error the model reported
+    */
+   private String error;
+   /**
+    * Where the summary goes when it is written to stdout
+    */
+   private PrintStream stdout;
+
+   /**
+    * Runs the scheduler with the command line arguments.
+    *
+    * @param args The arguments.
+    * @return The exit code.
+    */
+   public static int run(String[] args) {
+      Batch batch = new Batch();
+      String problem;
+
+      //Never open a window, even if a library asks for one
+      System.setProperty("java.awt.headless", "true");
+
+      try
+      {
+         problem = batch.parse(args);
+      } catch (NumberFormatException ex)
+      {
+         problem = "Not a number: " + ex.getMessage();
+      }
+      if (problem != null)
+      {
+         if (!problem.isEmpty())
+         {
+            System.err.println(problem);
+         }
+         System.err.println(USAGE_TEXT);
+         return problem.isEmpty() ? OK : USAGE;
+      }
+      batch.stdout = System.out;
+      System.setOut(System.err);
+      try
+      {
+         return batch.run();
+      } finally
+      {
+         System.out.flush();
+         System.setOut(batch.stdout);
+      }
+   }
+
+   /**
+    * Reads the arguments.
+    *
+    * @return null if they are fine, an empty string if help was asked for,
+    * or what is wrong with them.
+    */
+   private String parse(String[] args) {
+      String name, value;
+      int split;
+
+      for (int pos = 0; pos < args.length; pos++)
+      {
+         name = args[pos];
+         if (name.equals("--help") || name.equals("-h"))
+         {
+            return "";
+         }
+         //Take --name=value or --name value
+         split = name.indexOf('=');
+         if (split > 0)
+         {
+            value = name.substring(split + 1);
+            name = name.substring(0, split);
+         }
+         else if (pos + 1 < args.length)
+         {
+            value = args[++pos];
+         }
+         else
+         {
+            return "Missing a value for " + name;
+         }
+
+         switch (name)
+         {
+            case "--input":
+               input = value;
+               break;
+            case "--output":
+               output = value;
+               break;
+            case "--start":
+               start = value.toUpperCase();
+               break;
+            case "--end":
+               end = value.toUpperCase();
+               break;
+            case "--iterations":
+               iterations = Integer.parseInt(value);
+               break;
+            case "--seed":
+               seed = Long.parseLong(value);
+               seedSet = true;
+               break;
+            case "--mode":
+               mode = modeOf(value);
+               if (mode == null)
+               {
+                  return "--mode must be restarts, exact or anytime";
+               }
+               break;
+            case "--time-budget":
+               timeBudget = Long.parseLong(value);
+               break;
+            case "--threads":
+               threads = Integer.parseInt(value);
+               break;
+            case "--summary":
+               summary = value;
+               break;
+            case "--result-cache":
+               resultCache = new ResultCache(ResultCache.DEFAULT_CAPACITY);
+               resultCache.setDirectory(new File(value));
+               break;
+            default:
+               return "Unknown option " + name;
+         }
+      }
+
+      if (input == null || output == null)
+      {
+         return "Both --input and --output are needed";
+      }
+      if (!start.matches("[A-Z]+") || !end.matches("[A-Z]+"))
+      {
+         return "Columns are letters, like H or AI";
+      }
+      if (iterations < 1 || threads < 1 || timeBudget < 0)
+      {
+         return "Iterations and threads must be positive";
+      }
+      if (summary == null)
+      {
+         summary = output + ".json";
+      }
+      if (mode == null)
+      {
+         mode = timeBudget > 0 ? LogicModel.SolverMode.ANYTIME : LogicModel.SolverMode.RESTARTS;
+      }
+      return null;
+   }
+
+   /**
+    * Returns the engine with the given name, in any case.
+    *
+    * @param name The name, like exact.
+    * @return The engine, or null if there is none by that name.
+    */
+   static LogicModel.SolverMode modeOf(String name) {
+      for (LogicModel.SolverMode solverMode : LogicModel.SolverMode.values())
+      {
+         if (solverMode.name().equalsIgnoreCase(name))
+         {
+            return solverMode;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Reads, solves and writes, then writes the summary.
+    *
+    * @return The exit code.
+    */
+   private int run() {
+      LogicModel model = new LogicModel();
+      long startTime = System.currentTimeMillis();
+      int code;
+
+      model.setResultCache(resultCache);
+      code = solve(model);
+      if (code != OK)
+      {
+         System.err.println(error);
+      }
+      try
+      {
+         writeSummary(model, code, System.currentTimeMillis() - startTime);
+      } catch (IOException ex)
+      {
+         System.err.println("Could not write summary: " + ex.getMessage());
+         if (code == OK)
+         {
+            code = WRITE_FAILED;
+         }
+      }
+      return code;
+   }
+
+   /**
+    * Reads the input, runs the solver and writes the schedule.
+    *
+    * @return The exit code.
+    */
+   private int solve(LogicModel model) {
+      if (!new File(input).isFile())
+      {
+         error = "Error: Input file not found: " + input;
+         return READ_FAILED;
+      }
+      model.readExcelFile(input, start, end);
+      takeError(model);
+      if (error != null || !model.fileRead)
+      {
+         return READ_FAILED;
+      }
+
+      model.setIterations(iterations);
+      model.setThreads(threads);
+      if (seedSet)
+      {
+         model.setSeed(seed);
+      }
+      model.setSolverMode(mode);
+      model.setTimeBudget(timeBudget);
+      model.solve();
+      takeError(model);
+      if (error != null || model.getBest() == null)
+      {
+         if (error == null)
+         {
+            error = "Error: Nothing was scheduled";
+         }
+         return SOLVE_FAILED;
+      }
+
+      if (!model.writeExcelFile(output))
+      {
+         error = model.notifyText;
+         return WRITE_FAILED;
+      }
+      return OK;
+   }
+
+   /**
+    * Keeps the first error among the model's events. The rest are only for
+    * the gui.
+    */
+   private void takeError(LogicModel model) {
+      for (ModelEvents.Event event : model.getEvents().drain())
+      {
+         if (event.getCmd() == LogicModel.NotifyCmd.ERROR && error == null)
+         {
+            error = event.getText();
+         }
+      }
+   }
+
+   /**
+    * Writes the JSON summary of the run.
+    */
+   private void writeSummary(LogicModel model, int code, long millis) throws IOException {
+      BestSchedule best = model.getBest();
+      StringBuilder json = new StringBuilder();
+
+      json.append("{\n");
+      field(json, "exitCode", code);
+      field(json, "error", error == null ? null : quote(error));
+      field(json, "input", quote(input));
+      field(json, "output", code == OK ? quote(output) : null);
+      field(json, "startColumn", quote(start));
+      field(json, "endColumn", quote(end));
+      field(json, "iterations", iterations);
+      field(json, "threads", threads);
+      field(json, "mode", quote(mode.name().toLowerCase()));
+      field(json, "timeBudgetMillis", timeBudget);
+      if (mode == LogicModel.SolverMode.EXACT)
+      {
+         field(json, "provenOptimal", model.isProvenOptimal());
+      }
+      field(json, "masterSeed", model.getSeed());
+      field(json, "resultReused", model.isResultReused());
+      if (best != null)
+      {
+         field(json, "restartSeed", best.hasSeed() ? best.getSeed() : null);
+         field(json, "days", model.TotalDays);
+         field(json, "availableSeats", model.getAvailableSeats());
+         field(json, "seatedStudents", best.getSeated());
+         field(json, "emptySeats", model.getAvailableSeats() - best.getSeated());
+         field(json, "totalStudents", model.totalStudents);
+         field(json, "scheduledSchools", best.getSchools());
+         field(json, "unscheduledSchools", best.getUnscheduled().size());
+         field(json, "totalSchools", model.schoolList.size());
+      }
+      json.append("  \"runMillis\": ").append(millis).append("\n}\n");
+
+      if (summary.equals("-"))
+      {
+         stdout.print(json);
+         stdout.flush();
+         return;
+      }
+      try (Writer out = new OutputStreamWriter(new FileOutputStream(summary), StandardCharsets.UTF_8))
+      {
+         out.write(json.toString());
+      }
+   }
+
+   /**
+    * Adds a "name": value line. A null value is written as null.
+    */
+   private static void field(StringBuilder json, String name, Object value) {
+      json.append("  \"").append(name).append("\": ").append(value).append(",\n");
+   }
+
+   /**
+    * Returns a string as a JSON string.
+    */
+   static String quote(String text) {
+      StringBuilder quoted = new StringBuilder("\"");
+
+      for (char c : text.toCharArray())
+      {
+         if (c == '"' || c == '\\')
+         {
+            quoted.append('\\').append(c);
+         }
+         else if (c < ' ')
+         {
+            quoted.append(String.format("\\u%04x", (int) c));
+         }
+         else
+         {
+            quoted.append(c);
+         }
+      }
+      return quoted.append('"').toString();
+   }
+}
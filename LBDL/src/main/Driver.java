@@ -1,10 +1,12 @@
 package main;
 
 import gui.GUI;
+import java.util.Arrays;
 import model.*;
 
 /**
- * Starts the main program.
+ * Starts the main program. With arguments it runs in batch mode without
+ * the gui, see Batch, and with --serve as a local HTTP service, see Server.
  *
  * @author Daniel Yao
  * @year 2016
@@ -14,6 +16,22 @@ public class Driver
 
    public static void main(String[] args)
    {
+      //Serve other tools over HTTP until stopped
+      if (args.length > 0 && args[0].equals("--serve"))
+      {
+         int code = Server.run(Arrays.copyOfRange(args, 1, args.length));
+
+         if (code != Batch.OK)
+         {
+            System.exit(code);
+         }
+         return;
+      }
+      //Run without the gui when given arguments
+      if (args.length > 0)
+      {
+         System.exit(Batch.run(args));
+      }
       //Create a model for logic
       LogicModel model = new LogicModel();
       //Start up the gui
@@ -0,0 +1,878 @@
+package main;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import model.BestSchedule;
+import model.FinalDay;
+import model.LogicModel;
+import model.ModelEvents;
+import model.ResultCache;
+import model.School;
+import model.SolverJob;
+
+/**
+ * Runs the scheduler as a local HTTP service, so other tools can use it
+ * without the GUI. Every posted workbook or JSON problem becomes a job.
+ * Jobs wait in a bounded queue for one of a fixed number of solver threads,
+ * and a post is turned away with 503 while the queue is full.
+ *
+ * <pre>
+ * POST   /jobs?format=xlsx|csv|tsv|json&amp;start=H&amp;end=AI&amp;iterations=N
+ *             &amp;seed=N&amp;timeBudget=MS&amp;threads=N
+ *             &amp;mode=restarts|exact|anytime   the file is the body
+ * GET    /jobs                the status of every job
+ * GET    /jobs/ID             the state, progress and result of a job
+ * GET    /jobs/ID/schedule    the schedule as JSON
+ * GET    /jobs/ID/workbook    the schedule as an .xlsx workbook
+ * DELETE /jobs/ID             cancels a job, keeping its best schedule
+ * </pre>
+ *
+ * Usage: java -jar LBDL.jar --serve [options]
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class Server {
+
+   /**
+    * The threads answering requests. Solving is done on the solver threads
+    */
+   private static final int HTTP_THREADS = 4;
+   /**
+    * The seconds a turned away client is asked to wait
+    */
+   private static final String RETRY_AFTER = "5";
+
+   private static final String USAGE_TEXT
+           = "Usage: java -jar LBDL.jar --serve [options]\n"
+           + "  --bind ADDRESS       The address to listen on (default 127.0.0.1)\n"
+           + "  --port N             The port to listen on (default 8080)\n"
+           + "  --solvers N          The jobs solved at once (default 1)\n"
+           + "  --queue N            The jobs waiting before posts are turned\n"
+           + "                       away with 503 (default 16)\n"
+           + "  --keep N             The finished jobs kept (default 100)\n"
+           + "  --max-upload MB      The largest file taken (default 64)\n"
+           + "  --result-cache DIR   Also keep seeded results in DIR";
+
+   /**
+    * The states of a job.
+    */
+   public enum State {
+      QUEUED, RUNNING, DONE, FAILED, CANCELLED;
+   }
+
+   private String bind = "127.0.0.1";
+   private int port = 8080, solvers = 1, queue = 16, keep = 100;
+   private long maxUpload = 64L << 20;
+   private HttpServer http;
+   private ThreadPoolExecutor pool;
+   /**
+    * Every job by id, oldest first
+    */
+   private final LinkedHashMap<Long, Job> jobs = new LinkedHashMap<>();
+   private final AtomicLong nextId = new AtomicLong(1);
+   /**
+    * The seeded results every job can reuse
+    */
+   private final ResultCache results = new ResultCache(ResultCache.DEFAULT_CAPACITY);
+
+   /**
+    * Starts the service with the command line arguments after --serve. The
+    * service keeps running after this returns.
+    *
+    * @param args The arguments.
+    * @return Batch.OK if the service started, or the Batch exit code.
+    */
+   public static int run(String[] args) {
+      final Server server = new Server();
+      String problem;
+
+      System.setProperty("java.awt.headless", "true");
+      try
+      {
+         problem = server.parse(args);
+      } catch (NumberFormatException ex)
+      {
+         problem = "Not a number: " + ex.getMessage();
+      }
+      if (problem != null)
+      {
+         if (!problem.isEmpty())
+         {
+            System.err.println(problem);
+         }
+         System.err.println(USAGE_TEXT);
+         return problem.isEmpty() ? Batch.OK : Batch.USAGE;
+      }
+
+      try
+      {
+         server.start();
+      } catch (IOException ex)
+      {
+         System.err.println("Could not start the service: " + ex.getMessage());
+         return Batch.USAGE;
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+         @Override
+         public void run() {
+            server.stop();
+         }
+      });
+      System.out.println("Listening on http://" + server.bind + ":" + server.getPort() + "/jobs");
+      return Batch.OK;
+   }
+
+   /**
+    * Reads the arguments.
+    *
+    * @return null if they are fine, an empty string if help was asked for,
+    * or what is wrong with them.
+    */
+   private String parse(String[] args) {
+      String name, value;
+
+      for (int pos = 0; pos < args.length; pos++)
+      {
+         name = args[pos];
+         if (name.equals("--help") || name.equals("-h"))
+         {
+            return "";
+         }
+         if (pos + 1 >= args.length)
+         {
+            return "Missing a value for " + name;
+         }
+         value = args[++pos];
+
+         switch (name)
+         {
+            case "--bind":
+               bind = value;
+               break;
+            case "--port":
+               port = Integer.parseInt(value);
+               break;
+            case "--solvers":
+               solvers = Integer.parseInt(value);
+               break;
+            case "--queue":
+               queue = Integer.parseInt(value);
+               break;
+            case "--keep":
+               keep = Integer.parseInt(value);
+               break;
+            case "--max-upload":
+               maxUpload = Long.parseLong(value) << 20;
+               break;
+            case "--result-cache":
+               results.setDirectory(new File(value));
+               break;
+            default:
+               return "Unknown option " + name;
+         }
+      }
+      if (port < 0 || port > 65535)
+      {
+         return "--port must be from 0 to 65535";
+      }
+      if (solvers < 1)
+      {
+         return "--solvers must be at least 1";
+      }
+      if (queue < 1)
+      {
+         return "--queue must be at least 1";
+      }
+      if (keep < 0)
+      {
+         return "--keep must not be negative";
+      }
+      if (maxUpload < 1)
+      {
+         return "--max-upload must be at least 1";
+      }
+      return null;
+   }
+
+   /**
+    * Starts listening and the solver threads.
+    *
+    * @throws IOException If the address can not be listened on.
+    */
+   public void start() throws IOException {
+      pool = new ThreadPoolExecutor(solvers, solvers, 0, TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<Runnable>(queue));
+      http = HttpServer.create(new InetSocketAddress(InetAddress.getByName(bind), port), 0);
+      http.createContext("/jobs", new HttpHandler() {
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            try
+            {
+               route(exchange);
+            } catch (RuntimeException ex)
+            {
+               ex.printStackTrace();
+               sendError(exchange, 500, ex.toString());
+            } finally
+            {
+               exchange.close();
+            }
+         }
+      });
+      http.setExecutor(Executors.newFixedThreadPool(HTTP_THREADS));
+      http.start();
+   }
+
+   /**
+    * Stops listening and cancels every job.
+    */
+   public void stop() {
+      ArrayList<Job> all;
+
+      http.stop(0);
+      synchronized (jobs)
+      {
+         all = new ArrayList<>(jobs.values());
+      }
+      for (Job job : all)
+      {
+         job.cancel();
+      }
+      pool.shutdownNow();
+   }
+
+   /**
+    * @return The port the service listens on.
+    */
+   public int getPort() {
+      return http.getAddress().getPort();
+   }
+
+   /**
+    * Sends a request to its handler by method and path.
+    */
+   private void route(HttpExchange exchange) throws IOException {
+      String method = exchange.getRequestMethod();
+      String[] parts = exchange.getRequestURI().getPath().split("/");
+      Job job = null;
+
+      //parts are "", "jobs", then the id and what of it
+      if (parts.length == 2)
+      {
+         if (method.equals("POST"))
+         {
+            submit(exchange);
+         }
+         else if (method.equals("GET"))
+         {
+            sendJson(exchange, 200, listJobs());
+         }
+         else
+         {
+            sendError(exchange, 405, "Use GET or POST");
+         }
+         return;
+      }
+
+      if (parts.length <= 4)
+      {
+         try
+         {
+            synchronized (jobs)
+            {
+               job = jobs.get(Long.valueOf(parts[2]));
+            }
+         } catch (NumberFormatException ex)
+         {
+            job = null;
+         }
+      }
+      if (job == null)
+      {
+         sendError(exchange, 404, "No such job");
+         return;
+      }
+
+      if (parts.length == 3 && method.equals("GET"))
+      {
+         sendJson(exchange, 200, job.status());
+      }
+      else if (parts.length == 3 && method.equals("DELETE"))
+      {
+         job.cancel();
+         sendJson(exchange, 200, job.status());
+      }
+      else if (parts.length == 4 && method.equals("GET") && parts[3].equals("schedule"))
+      {
+         if (job.getBest() == null)
+         {
+            sendError(exchange, 409, "The job has no schedule yet");
+            return;
+         }
+         sendJson(exchange, 200, job.schedule());
+      }
+      else if (parts.length == 4 && method.equals("GET") && parts[3].equals("workbook"))
+      {
+         sendWorkbook(exchange, job);
+      }
+      else
+      {
+         sendError(exchange, 404, "No such resource");
+      }
+   }
+
+   /**
+    * Takes a posted file and queues it as a job.
+    */
+   private void submit(HttpExchange exchange) throws IOException {
+      HashMap<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+      String format = query.get("format");
+      Job job;
+
+      //Turn the post away before reading the file if no one could take it
+      if (pool.getQueue().remainingCapacity() == 0)
+      {
+         sendBusy(exchange);
+         return;
+      }
+      if (format == null)
+      {
+         format = formatOf(exchange.getRequestHeaders().getFirst("Content-Type"));
+      }
+      if (!format.matches("xlsx|csv|tsv|json"))
+      {
+         sendError(exchange, 400, "The format must be xlsx, csv, tsv or json");
+         return;
+      }
+
+      try
+      {
+         job = new Job(nextId.getAndIncrement(), format, query);
+      } catch (NumberFormatException ex)
+      {
+         sendError(exchange, 400, "Not a number: " + ex.getMessage());
+         return;
+      } catch (IllegalArgumentException ex)
+      {
+         sendError(exchange, 400, ex.getMessage());
+         return;
+      }
+
+      try
+      {
+         if (!job.upload(exchange.getRequestBody()))
+         {
+            job.deleteInput();
+            sendError(exchange, 413, "The file is larger than " + (maxUpload >> 20) + " MB");
+            return;
+         }
+         synchronized (jobs)
+         {
+            jobs.put(job.id, job);
+            evict();
+         }
+         pool.execute(job);
+      } catch (RejectedExecutionException ex)
+      {
+         synchronized (jobs)
+         {
+            jobs.remove(job.id);
+         }
+         job.deleteInput();
+         sendBusy(exchange);
+         return;
+      } catch (IOException ex)
+      {
+         job.deleteInput();
+         throw ex;
+      }
+
+      exchange.getResponseHeaders().set("Location", "/jobs/" + job.id);
+      sendJson(exchange, 202, job.status());
+   }
+
+   /**
+    * Forgets the oldest finished jobs past the number kept.
+    */
+   private void evict() {
+      Iterator<Job> iter = jobs.values().iterator();
+      int finished = 0;
+
+      for (Job job : jobs.values())
+      {
+         if (job.isFinished())
+         {
+            finished++;
+         }
+      }
+      while (finished > keep && iter.hasNext())
+      {
+         if (iter.next().isFinished())
+         {
+            iter.remove();
+            finished--;
+         }
+      }
+   }
+
+   /**
+    * Returns the status of every job.
+    */
+   private String listJobs() {
+      StringBuilder json = new StringBuilder();
+      String separator = "";
+
+      json.append("{\"queued\": ").append(pool.getQueue().size())
+              .append(", \"running\": ").append(pool.getActiveCount())
+              .append(", \"jobs\": [");
+      synchronized (jobs)
+      {
+         for (Job job : jobs.values())
+         {
+            json.append(separator).append(job.status());
+            separator = ", ";
+         }
+      }
+      return json.append("]}").toString();
+   }
+
+   /**
+    * Writes the job's schedule to a temp workbook and sends it.
+    */
+   private void sendWorkbook(HttpExchange exchange, Job job) throws IOException {
+      File file;
+
+      if (job.getBest() == null)
+      {
+         sendError(exchange, 409, "The job has no schedule yet");
+         return;
+      }
+      file = File.createTempFile("lbdl-schedule", ".xlsx");
+      try
+      {
+         if (!job.writeWorkbook(file))
+         {
+            sendError(exchange, 500, "The workbook could not be written");
+            return;
+         }
+         exchange.getResponseHeaders().set("Content-Disposition",
+                 "attachment; filename=\"schedule-" + job.id + ".xlsx\"");
+         send(exchange, 200, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+                 Files.readAllBytes(file.toPath()));
+      } finally
+      {
+         file.delete();
+      }
+   }
+
+   /**
+    * Returns the format of a Content-Type, xlsx if it is not a text format.
+    */
+   private static String formatOf(String contentType) {
+      if (contentType == null)
+      {
+         return "xlsx";
+      }
+      contentType = contentType.toLowerCase();
+      if (contentType.contains("json"))
+      {
+         return "json";
+      }
+      if (contentType.contains("tab-separated"))
+      {
+         return "tsv";
+      }
+      if (contentType.contains("csv"))
+      {
+         return "csv";
+      }
+      return "xlsx";
+   }
+
+   private static HashMap<String, String> parseQuery(String raw) throws IOException {
+      HashMap<String, String> query = new HashMap<>();
+      int split;
+
+      if (raw == null)
+      {
+         return query;
+      }
+      for (String pair : raw.split("&"))
+      {
+         split = pair.indexOf('=');
+         if (split > 0)
+         {
+            query.put(URLDecoder.decode(pair.substring(0, split), "UTF-8"),
+                    URLDecoder.decode(pair.substring(split + 1), "UTF-8"));
+         }
+      }
+      return query;
+   }
+
+   private static void sendBusy(HttpExchange exchange) throws IOException {
+      exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER);
+      sendError(exchange, 503, "The queue is full, try again later");
+   }
+
+   private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+      sendJson(exchange, code, "{\"error\": " + Batch.quote(message) + "}");
+   }
+
+   private static void sendJson(HttpExchange exchange, int code, String json) throws IOException {
+      send(exchange, code, "application/json; charset=utf-8", (json + "\n").getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static void send(HttpExchange exchange, int code, String type, byte[] body) throws IOException {
+      exchange.getResponseHeaders().set("Content-Type", type);
+      exchange.sendResponseHeaders(code, body.length);
+      try (OutputStream out = exchange.getResponseBody())
+      {
+         out.write(body);
+      }
+   }
+
+   /**
+    * One posted problem and its run.
+    */
+   private class Job implements Runnable {
+
+      private final long id;
+      private final String start, end;
+      private final int iterations, threads;
+      private final long seed, timeBudget;
+      private final boolean seedSet;
+      /**
+       * The engine to run. Anytime if only a time budget is given
+       */
+      private final LogicModel.SolverMode mode;
+      private final File dir, input;
+      private State state = State.QUEUED;
+      private boolean cancelRequested = false;
+      private String error;
+      private volatile LogicModel model;
+      private SolverJob solver;
+      private final long created = System.currentTimeMillis();
+      private long started, finished;
+      /**
+       * Held while the workbook is written
+       */
+      private final Object writing = new Object();
+
+      /**
+       * Reads the job's options from the query.
+       *
+       * @throws IllegalArgumentException If an option is out of range.
+       */
+      Job(long id, String format, HashMap<String, String> query) throws IOException {
+         this.id = id;
+         start = option(query, "start", "H").toUpperCase();
+         end = option(query, "end", "AI").toUpperCase();
+         iterations = Integer.parseInt(option(query, "iterations", "55000"));
+         threads = Math.min(Integer.parseInt(option(query, "threads", "1")),
+                 Runtime.getRuntime().availableProcessors());
+         seedSet = query.containsKey("seed");
+         seed = Long.parseLong(option(query, "seed", "0"));
+         timeBudget = Long.parseLong(option(query, "timeBudget", "0"));
+         mode = Batch.modeOf(option(query, "mode", timeBudget > 0 ? "anytime" : "restarts"));
+         if (mode == null)
+         {
+            throw new IllegalArgumentException("mode must be restarts, exact or anytime");
+         }
+         if (!start.matches("[A-Z]+") || !end.matches("[A-Z]+"))
+         {
+            throw new IllegalArgumentException("Columns are letters, like H or AI");
+         }
+         if (iterations < 1 || threads < 1 || timeBudget < 0)
+         {
+            throw new IllegalArgumentException("Iterations and threads must be positive");
+         }
+         dir = Files.createTempDirectory("lbdl-job").toFile();
+         input = new File(dir, "input." + format);
+      }
+
+      private String option(HashMap<String, String> query, String name, String byDefault) {
+         String value = query.get(name);
+
+         return value == null || value.isEmpty() ? byDefault : value;
+      }
+
+      /**
+       * Copies the posted file to the job's input.
+       *
+       * @return False if it is larger than the largest upload.
+       */
+      boolean upload(InputStream body) throws IOException {
+         byte[] buffer = new byte[1 << 16];
+         long total = 0;
+         int read;
+
+         try (InputStream in = body; OutputStream out = new FileOutputStream(input))
+         {
+            while ((read = in.read(buffer)) > 0)
+            {
+               total += read;
+               if (total > maxUpload)
+               {
+                  return false;
+               }
+               out.write(buffer, 0, read);
+            }
+         }
+         return true;
+      }
+
+      /**
+       * Deletes the input, and the cache a read may have left beside it.
+       */
+      void deleteInput() {
+         File[] files = dir.listFiles();
+
+         if (files != null)
+         {
+            for (File file : files)
+            {
+               file.delete();
+            }
+         }
+         dir.delete();
+      }
+
+      @Override
+      public void run() {
+         synchronized (this)
+         {
+            if (state != State.QUEUED)
+            {
+               return;
+            }
+            state = State.RUNNING;
+            started = System.currentTimeMillis();
+         }
+         try
+         {
+            solve();
+         } catch (RuntimeException ex)
+         {
+            ex.printStackTrace();
+            finish(State.FAILED, ex.toString());
+         } finally
+         {
+            deleteInput();
+         }
+      }
+
+      /**
+       * Reads the input and runs the solver the way knapsack() does.
+       */
+      private void solve() {
+         LogicModel solving = new LogicModel();
+         SolverJob run;
+
+         model = solving;
+         solving.setResultCache(results);
+         solving.readExcelFile(input.getPath(), start, end);
+         deleteInput();
+         takeError(solving);
+         if (error != null || !solving.fileRead)
+         {
+            finish(State.FAILED, error != null ? error : "Error: The file could not be read");
+            return;
+         }
+
+         solving.setIterations(iterations);
+         solving.setThreads(threads);
+         if (seedSet)
+         {
+            solving.setSeed(seed);
+         }
+         solving.setSolverMode(mode);
+         solving.setTimeBudget(timeBudget);
+         synchronized (this)
+         {
+            if (cancelRequested)
+            {
+               finish(State.CANCELLED, null);
+               return;
+            }
+            solver = solving.knapsack();
+            run = solver;
+         }
+
+         try
+         {
+            run.await();
+         } catch (InterruptedException ex)
+         {
+            //The service is stopping
+            run.cancel(true);
+            Thread.currentThread().interrupt();
+         }
+         takeError(solving);
+         if (solving.isCancelled())
+         {
+            finish(State.CANCELLED, null);
+         }
+         else if (error != null || solving.getBest() == null)
+         {
+            finish(State.FAILED, error != null ? error : "Error: Nothing was scheduled");
+         }
+         else
+         {
+            finish(State.DONE, null);
+         }
+      }
+
+      /**
+       * Keeps the first error among the model's events.
+       */
+      private void takeError(LogicModel solving) {
+         for (ModelEvents.Event event : solving.getEvents().drain())
+         {
+            if (event.getCmd() == LogicModel.NotifyCmd.ERROR && error == null)
+            {
+               error = event.getText();
+            }
+         }
+      }
+
+      private synchronized void finish(State end, String message) {
+         state = end;
+         error = message;
+         finished = System.currentTimeMillis();
+      }
+
+      /**
+       * Cancels the job. A queued job is taken off the queue, a running one
+       * is stopped and keeps its best schedule.
+       */
+      synchronized void cancel() {
+         if (state == State.QUEUED)
+         {
+            pool.remove(this);
+            deleteInput();
+            finish(State.CANCELLED, null);
+         }
+         else if (state == State.RUNNING)
+         {
+            cancelRequested = true;
+            if (solver != null)
+            {
+               solver.cancel(true);
+            }
+         }
+      }
+
+      synchronized boolean isFinished() {
+         return state != State.QUEUED && state != State.RUNNING;
+      }
+
+      BestSchedule getBest() {
+         LogicModel solving = model;
+
+         return solving == null ? null : solving.getBest();
+      }
+
+      /**
+       * Writes the final schedule. One at a time, since the writer reads the
+       * model's final lists.
+       */
+      boolean writeWorkbook(File file) {
+         synchronized (writing)
+         {
+            return model.writeExcelFile(file.getPath());
+         }
+      }
+
+      /**
+       * Returns the job's state, progress and result as JSON.
+       */
+      synchronized String status() {
+         StringBuilder json = new StringBuilder();
+         BestSchedule best = getBest();
+         long now = System.currentTimeMillis();
+
+         json.append("{\"id\": ").append(id)
+                 .append(", \"state\": \"").append(state).append('"')
+                 .append(", \"progress\": ").append(solver == null ? 0 : solver.getProgress())
+                 .append(", \"total\": ").append(iterations)
+                 .append(", \"mode\": \"").append(mode.name().toLowerCase()).append('"')
+                 .append(", \"error\": ").append(error == null ? null : Batch.quote(error))
+                 .append(", \"waitMillis\": ").append((started == 0 ? now : started) - created)
+                 .append(", \"runMillis\": ").append(started == 0 ? 0 : (finished == 0 ? now : finished) - started);
+         if (best != null)
+         {
+            json.append(", \"seatedStudents\": ").append(best.getSeated())
+                    .append(", \"availableSeats\": ").append(model.getAvailableSeats())
+                    .append(", \"scheduledSchools\": ").append(best.getSchools())
+                    .append(", \"unscheduledSchools\": ").append(best.getUnscheduled().size())
+                    .append(", \"restartSeed\": ").append(best.hasSeed() ? best.getSeed() : null)
+                    .append(", \"resultReused\": ").append(model.isResultReused());
+            if (mode == LogicModel.SolverMode.EXACT && state == State.DONE)
+            {
+               json.append(", \"provenOptimal\": ").append(model.isProvenOptimal());
+            }
+         }
+         return json.append('}').toString();
+      }
+
+      /**
+       * Returns the best schedule as JSON.
+       */
+      String schedule() {
+         StringBuilder json = new StringBuilder();
+         BestSchedule best = getBest();
+         String separator = "";
+
+         json.append("{\"id\": ").append(id)
+                 .append(", \"seatedStudents\": ").append(best.getSeated())
+                 .append(", \"days\": [");
+         for (FinalDay day : best.getSchedule())
+         {
+            json.append(separator).append("{\"date\": ").append(Batch.quote(day.toString()))
+                    .append(", \"seatsLeft\": ").append(day.getSeats())
+                    .append(", \"schools\": [");
+            separator = "";
+            for (School school : day.getSchools())
+            {
+               json.append(separator).append("{\"name\": ").append(Batch.quote(school.getName()))
+                       .append(", \"students\": ").append(school.getNumStudents()).append('}');
+               separator = ", ";
+            }
+            json.append("]}");
+            separator = ", ";
+         }
+         json.append("], \"unscheduled\": [");
+         separator = "";
+         for (School school : best.getUnscheduled())
+         {
+            json.append(separator).append("{\"name\": ").append(Batch.quote(school.getName()))
+                    .append(", \"students\": ").append(school.getTotalStudents())
+                    .append(", \"priority\": ").append(500 - school.priority).append('}');
+            separator = ", ";
+         }
+         return json.append("]}").toString();
+      }
+   }
+}
@@ -0,0 +1,148 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An unchangeable copy of the best schedule found so far.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class BestSchedule {
+
+   /**
+    * The seed of a schedule that did not come from a single restart
+    */
+   public static final long NO_SEED = Long.MIN_VALUE;
+   /**
+    * The restart number of a schedule that did not come from a numbered
+    * restart
+    */
+   public static final long NO_RESTART = -1;
+
+   /**
+    * The number of students seated
+    */
+   protected final int seated;
+   /**
+    * The number of schools scheduled
+    */
+   protected final int schools;
+   /**
+    * The scheduled days
+    */
+   protected final List<FinalDay> schedule;
+   /**
+    * One entry for every school that was not scheduled
+    */
+   protected final List<School> unscheduled;
+   /**
+    * The seed of the restart that made the schedule
+    */
+   protected final long seed;
+   /**
+    * The number of the restart that made the schedule, to break ties
+    */
+   protected final long restart;
+
+   /**
+    * Creates a snapshot of a schedule.
+    *
+    * @param seated The number of students seated.
+    * @param schools The number of schools scheduled.
+    * @param schedule The scheduled days.
+    * @param unscheduled The schools that were not scheduled.
+    * @param seed The seed of the restart, or NO_SEED.
+    */
+   public BestSchedule(int seated, int schools, ArrayList<FinalDay> schedule, ArrayList<School> unscheduled, long seed) {
+      this(seated, schools, schedule, unscheduled, seed, NO_RESTART);
+   }
+
+   /**
+    * Creates a snapshot of a schedule made by a numbered restart.
+    *
+    * @param seated The number of students seated.
+    * @param schools The number of schools scheduled.
+    * @param schedule The scheduled days.
+    * @param unscheduled The schools that were not scheduled.
+    * @param seed The seed of the restart, or NO_SEED.
+    * @param restart The number of the restart, or NO_RESTART.
+    */
+   public BestSchedule(int seated, int schools, ArrayList<FinalDay> schedule, ArrayList<School> unscheduled, long seed,
+           long restart) {
+      this.seated = seated;
+      this.schools = schools;
+      this.schedule = Collections.unmodifiableList(schedule);
+      this.unscheduled = Collections.unmodifiableList(unscheduled);
+      this.seed = seed;
+      this.restart = restart;
+   }
+
+   /**
+    * Returns the number of students seated.
+    *
+    * @return The number of students seated.
+    */
+   public int getSeated() {
+      return seated;
+   }
+
+   /**
+    * Returns the number of schools scheduled.
+    *
+    * @return The number of schools scheduled.
+    */
+   public int getSchools() {
+      return schools;
+   }
+
+   /**
+    * Returns the scheduled days.
+    *
+    * @return The scheduled days.
+    */
+   public List<FinalDay> getSchedule() {
+      return schedule;
+   }
+
+   /**
+    * Returns the schools that were not scheduled.
+    *
+    * @return The unscheduled schools.
+    */
+   public List<School> getUnscheduled() {
+      return unscheduled;
+   }
+
+   /**
+    * Returns the seed of the restart that made the schedule. Pass it to
+    * LogicModel.replay to make the schedule again.
+    *
+    * @return The seed, or NO_SEED if the schedule came from the exact solver
+    * or a repair.
+    */
+   public long getSeed() {
+      return seed;
+   }
+
+   /**
+    * Returns the number of the restart that made the schedule. Of two
+    * schedules seating the same students, the later restart is kept.
+    *
+    * @return The restart number, or NO_RESTART.
+    */
+   public long getRestart() {
+      return restart;
+   }
+
+   /**
+    * Returns if the schedule can be replayed from its seed.
+    *
+    * @return True if the schedule has a seed.
+    */
+   public boolean hasSeed() {
+      return seed != NO_SEED;
+   }
+}
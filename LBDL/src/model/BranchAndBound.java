@@ -0,0 +1,1032 @@
+package model;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exact solver for the whole schedule. Treats the days as a multiple knapsack
+ * where each split school may only go on its available days, and all parts of
+ * a split school are scheduled or none are. Maximizes the number of seated
+ * students with branch and bound, filling one day at a time.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class BranchAndBound {
+
+   /**
+    * The most nodes to search before giving up on proving the optimum
+    */
+   protected long maxNodes = 50000000L;
+   /**
+    * The System.nanoTime() to give up at
+    */
+   private long deadline;
+   /**
+    * True if the search has a deadline
+    */
+   private boolean timed = false;
+   /**
+    * Raised to stop the search, or null
+    */
+   private AtomicBoolean cancel;
+   /**
+    * The days, most constrained first
+    */
+   private final Day[] days;
+   /**
+    * Seats left on each day
+    */
+   private final int[] residual;
+   /**
+    * The split schools
+    */
+   private final School[] fragments;
+   /**
+    * The number of students of each split school
+    */
+   private final int[] weight;
+   /**
+    * The school each split school belongs to
+    */
+   private final int[] groupOf;
+   /**
+    * Split schools that can be swapped without changing the schedule share a
+    * class
+    */
+   private final int[] classOf;
+   /**
+    * The number of split schools in each school
+    */
+   private final int[] groupSize;
+   /**
+    * True for every school whose parts all fit on some day
+    */
+   private final boolean[] groupFit;
+   /**
+    * The number of split schools placed in each school
+    */
+   private final int[] groupPlaced;
+   /**
+    * The positions in days of every split school's available days
+    */
+   private final int[][] fragDays;
+   /**
+    * The day position of every split school. -1 if not scheduled
+    */
+   private final int[] assign;
+   /**
+    * The split schools that can come on each day, biggest first
+    */
+   private final int[][] dayCandidates;
+   /**
+    * A known schedule to start from, with the day of every split school, or
+    * null
+    */
+   private Day[] incumbent;
+   private int[] bestAssign;
+   private int current;
+   private int bestValue;
+   /**
+    * No schedule can seat more than this
+    */
+   private int rootBound;
+   private long nodes;
+   private boolean aborted;
+   /**
+    * Scratch bitset for the bound
+    */
+   private final long[] scratch;
+   /**
+    * The most each day can take in the flow bound
+    */
+   private final int[] dayCap;
+   /**
+    * Scratch arrays for the flow bound
+    */
+   private final int[] flowIn, flowDay, parentDay, parentFrag, queue;
+   /**
+    * The slot in fragDays of the edge a path took into each day and out of
+    * each split school
+    */
+   private final int[] parentDaySlot, parentFragSlot;
+   /**
+    * The flow on every edge of the flow bound, kept by split school and slot
+    * in fragDays so only real edges take room
+    */
+   private final int[][] flowEdge;
+   /**
+    * The slot of the day in every candidate's fragDays, by day and position
+    * in dayCandidates
+    */
+   private final int[][] candidateSlot;
+   /**
+    * The Lagrangian multiplier of every split school
+    */
+   private final double[] lambda;
+   /**
+    * The number of days that took each school in the last relaxation
+    */
+   private final int[] uses;
+   /**
+    * Scratch row for the day knapsacks in the relaxation, rolled over item
+    * by item
+    */
+   private final double[] dpValue;
+   /**
+    * One bit per (item, seats) of a day knapsack. Set if the item improved
+    * that many seats
+    */
+   private long[] dpTaken;
+   private final int[] dpItem;
+   /**
+    * Subgradient steps at the root and at every other day
+    */
+   protected int rootSteps = 300, nodeSteps = 15;
+
+   /**
+    * Creates a solver for the given split schools and days. The days' current
+    * seats left are used as capacities.
+    *
+    * @param splitSchools The split school list.
+    * @param dayCollection The days to schedule on.
+    */
+   public BranchAndBound(ArrayList<School> splitSchools, Collection<Day> dayCollection) {
+      HashMap<Integer, Integer> groupIds = new HashMap<>();
+      HashMap<String, Integer> classIds = new HashMap<>();
+      ArrayList<Integer> avail;
+      Integer id;
+      String key;
+      int maxSeats = 0;
+      long words = 0;
+
+      days = dayCollection.toArray(new Day[dayCollection.size()]);
+      residual = new int[days.length];
+      fragments = splitSchools.toArray(new School[splitSchools.size()]);
+      weight = new int[fragments.length];
+      groupOf = new int[fragments.length];
+      classOf = new int[fragments.length];
+      fragDays = new int[fragments.length][];
+      assign = new int[fragments.length];
+      Arrays.fill(assign, -1);
+
+      for (int f = 0; f < fragments.length; f++)
+      {
+         weight[f] = fragments[f].numStudents;
+         id = groupIds.get(fragments[f].splitId);
+         if (id == null)
+         {
+            id = groupIds.size();
+            groupIds.put(fragments[f].splitId, id);
+         }
+         groupOf[f] = id;
+      }
+      groupSize = new int[groupIds.size()];
+      groupPlaced = new int[groupIds.size()];
+      for (int f = 0; f < fragments.length; f++)
+      {
+         groupSize[groupOf[f]]++;
+      }
+
+      //Whole schools of the same size and days are interchangeable, and so
+      //are same sized parts of one school
+      for (int f = 0; f < fragments.length; f++)
+      {
+         if (groupSize[groupOf[f]] == 1)
+         {
+            key = weight[f] + ":" + Arrays.toString(fragments[f].availMask);
+         }
+         else
+         {
+            key = weight[f] + "#" + groupOf[f];
+         }
+         id = classIds.get(key);
+         if (id == null)
+         {
+            id = classIds.size();
+            classIds.put(key, id);
+         }
+         classOf[f] = id;
+      }
+
+      //Most constrained days first
+      final int[] counts = new int[days.length];
+      Integer[] order = new Integer[days.length];
+      for (int d = 0; d < days.length; d++)
+      {
+         order[d] = d;
+         for (School school : fragments)
+         {
+            if (school.isAvailable(days[d]))
+            {
+               counts[d]++;
+            }
+         }
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+         @Override
+         public int compare(Integer d1, Integer d2) {
+            return Integer.compare(counts[d1], counts[d2]);
+         }
+      });
+      Day[] sorted = days.clone();
+      for (int d = 0; d < days.length; d++)
+      {
+         days[d] = sorted[order[d]];
+         residual[d] = Math.max(0, days[d].getSeats());
+         maxSeats = Math.max(maxSeats, residual[d]);
+      }
+      scratch = new long[(maxSeats >>> 6) + 1];
+      dayCap = new int[days.length];
+      flowDay = new int[days.length];
+      parentDay = new int[days.length];
+      flowIn = new int[fragments.length];
+      parentFrag = new int[fragments.length];
+      queue = new int[fragments.length];
+      parentDaySlot = new int[days.length];
+      parentFragSlot = new int[fragments.length];
+      flowEdge = new int[fragments.length][];
+      lambda = new double[fragments.length];
+      uses = new int[fragments.length];
+      dpValue = new double[maxSeats + 1];
+      dpItem = new int[fragments.length + 1];
+
+      for (int f = 0; f < fragments.length; f++)
+      {
+         avail = new ArrayList<>();
+         for (int d = 0; d < days.length; d++)
+         {
+            if (fragments[f].isAvailable(days[d]) && weight[f] <= residual[d])
+            {
+               avail.add(d);
+            }
+         }
+         fragDays[f] = toArray(avail);
+         flowEdge[f] = new int[fragDays[f].length];
+      }
+
+      //A school fits if every part of it has a day
+      groupFit = new boolean[groupSize.length];
+      Arrays.fill(groupFit, true);
+      for (int f = 0; f < fragments.length; f++)
+      {
+         if (fragDays[f].length == 0)
+         {
+            groupFit[groupOf[f]] = false;
+         }
+      }
+
+      dayCandidates = new int[days.length][];
+      for (int d = 0; d < days.length; d++)
+      {
+         avail = new ArrayList<>();
+         for (int f = 0; f < fragments.length; f++)
+         {
+            if (fragments[f].isAvailable(days[d]) && weight[f] <= residual[d] && groupFits(groupOf[f]))
+            {
+               avail.add(f);
+            }
+         }
+         Collections.sort(avail, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer f1, Integer f2) {
+               if (weight[f1] != weight[f2])
+               {
+                  return Integer.compare(weight[f2], weight[f1]);
+               }
+               return Integer.compare(classOf[f1], classOf[f2]);
+            }
+         });
+         dayCandidates[d] = toArray(avail);
+      }
+
+      //Every candidate of a day has the day in its fragDays
+      candidateSlot = new int[days.length][];
+      for (int d = 0; d < days.length; d++)
+      {
+         candidateSlot[d] = new int[dayCandidates[d].length];
+         for (int i = 0; i < dayCandidates[d].length; i++)
+         {
+            candidateSlot[d][i] = Arrays.binarySearch(fragDays[dayCandidates[d][i]], d);
+         }
+         words = Math.max(words, ((long) dayCandidates[d].length * (residual[d] + 1) + 63) >>> 6);
+      }
+      dpTaken = new long[(int) words];
+   }
+
+   /**
+    * Runs the search.
+    *
+    * @return True if the schedule found is proven to be optimal.
+    */
+   public boolean solve() {
+      nodes = 0;
+      aborted = false;
+      if (incumbent != null)
+      {
+         startFrom(incumbent);
+      }
+      rootBound = laterBound(0);
+
+      greedy();
+      if (bestValue < rootBound)
+      {
+         fillDay(0);
+      }
+      return !aborted;
+   }
+
+   /**
+    * Returns the day the split school was scheduled on.
+    *
+    * @param fragment The position of the split school in the split school list.
+    * @return The day, or null if not scheduled.
+    */
+   public Day getAssignedDay(int fragment) {
+      if (bestAssign == null || bestAssign[fragment] < 0)
+      {
+         return null;
+      }
+      return days[bestAssign[fragment]];
+   }
+
+   /**
+    * Returns the number of seated students in the best schedule.
+    *
+    * @return The number of seated students.
+    */
+   public int getBestValue() {
+      return bestValue;
+   }
+
+   /**
+    * Returns the most students any schedule could seat.
+    *
+    * @return The upper bound at the start of the search.
+    */
+   public int getRootBound() {
+      return rootBound;
+   }
+
+   /**
+    * Starts the search from a known schedule, so it only ever keeps a
+    * schedule that seats more students. A schedule that does not fit the
+    * days is ignored.
+    *
+    * @param assigned The day of every split school, by position in the split
+    * school list, or null where a school is not scheduled.
+    */
+   public void setIncumbent(Day[] assigned) {
+      this.incumbent = assigned;
+   }
+
+   /**
+    * Stops the search once System.nanoTime() passes the deadline. The best
+    * schedule found so far is kept.
+    *
+    * @param nanoTime The deadline.
+    */
+   public void setDeadline(long nanoTime) {
+      this.deadline = nanoTime;
+      this.timed = true;
+   }
+
+   /**
+    * Stops the search once the flag is raised. The best schedule found so
+    * far is kept.
+    *
+    * @param flag The flag to check.
+    */
+   public void setCancel(AtomicBoolean flag) {
+      this.cancel = flag;
+   }
+
+   /**
+    * Returns the number of search nodes visited.
+    *
+    * @return The number of nodes.
+    */
+   public long getNodes() {
+      return nodes;
+   }
+
+   /**
+    * Records the known schedule as the best so far, if every school in it
+    * can come on its day.
+    *
+    * @param assigned The day of every split school, or null.
+    */
+   private void startFrom(Day[] assigned) {
+      IdentityHashMap<Day, Integer> position = new IdentityHashMap<>();
+      Integer day;
+      boolean fits = true;
+
+      for (int d = 0; d < days.length; d++)
+      {
+         position.put(days[d], d);
+      }
+      for (int f = 0; f < fragments.length && fits; f++)
+      {
+         if (f >= assigned.length || assigned[f] == null)
+         {
+            continue;
+         }
+         day = position.get(assigned[f]);
+         if (day == null || Arrays.binarySearch(fragDays[f], day) < 0 || weight[f] > residual[day])
+         {
+            fits = false;
+         }
+         else
+         {
+            place(f, day);
+         }
+      }
+      if (fits)
+      {
+         recordLeaf();
+      }
+
+      for (int f = 0; f < fragments.length; f++)
+      {
+         if (assign[f] >= 0)
+         {
+            unplace(f);
+         }
+      }
+   }
+
+   /**
+    * Finds a first schedule by placing the biggest schools on the tightest day
+    * they fit.
+    */
+   private void greedy() {
+      Integer[] order = new Integer[fragments.length];
+      int day;
+
+      for (int f = 0; f < fragments.length; f++)
+      {
+         order[f] = f;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+         @Override
+         public int compare(Integer f1, Integer f2) {
+            return Integer.compare(weight[f2], weight[f1]);
+         }
+      });
+
+      for (int f : order)
+      {
+         day = -1;
+         for (int d : fragDays[f])
+         {
+            if (residual[d] >= weight[f] && (day < 0 || residual[d] < residual[day]))
+            {
+               day = d;
+            }
+         }
+         if (day >= 0)
+         {
+            place(f, day);
+         }
+      }
+      recordLeaf();
+
+      for (int f = 0; f < fragments.length; f++)
+      {
+         if (assign[f] >= 0)
+         {
+            unplace(f);
+         }
+      }
+   }
+
+   /**
+    * Fills the day at position d and every day after it.
+    *
+    * @param d The position in days.
+    */
+   private void fillDay(int d) {
+      int later;
+
+      if (d == days.length)
+      {
+         recordLeaf();
+         return;
+      }
+      later = laterBound(d + 1);
+      if (current + Math.min(residual[d], available(d)) + later <= bestValue)
+      {
+         return;
+      }
+      choose(d, 0, later);
+   }
+
+   /**
+    * Decides the candidate at position i for day d. Bigger schools are tried
+    * first so days fill up early.
+    *
+    * @param d The position in days.
+    * @param i The position in the day's candidates.
+    * @param later An upper bound on the days after d.
+    */
+   private void choose(int d, int i, int later) {
+      int[] candidates = dayCandidates[d];
+      int f, next;
+
+      if (done())
+      {
+         return;
+      }
+      if (++nodes > maxNodes || (timed && (nodes & 1023) == 0 && System.nanoTime() - deadline > 0)
+              || (cancel != null && cancel.get()))
+      {
+         aborted = true;
+         return;
+      }
+
+      //Skip candidates already placed or too big
+      while (i < candidates.length && (assign[candidates[i]] >= 0 || weight[candidates[i]] > residual[d]))
+      {
+         i++;
+      }
+      if (i == candidates.length || residual[d] == 0)
+      {
+         if (!closable(d))
+         {
+            return;
+         }
+         fillDay(d + 1);
+         return;
+      }
+      if (current + Math.min(residual[d], remaining(d, i)) + later <= bestValue)
+      {
+         return;
+      }
+
+      f = candidates[i];
+      place(f, d);
+      choose(d, i + 1, later);
+      unplace(f);
+
+      //Leaving one out means leaving out the ones just like it
+      next = i + 1;
+      while (next < candidates.length && classOf[candidates[next]] == classOf[f])
+      {
+         next++;
+      }
+      choose(d, next, later);
+   }
+
+   /**
+    * Returns if day d can be closed. It cannot if a whole school that has no
+    * later day still fits, since adding it always seats more.
+    *
+    * @param d The position in days.
+    * @return True if the day can be closed.
+    */
+   private boolean closable(int d) {
+      for (int f : dayCandidates[d])
+      {
+         if (assign[f] < 0 && weight[f] <= residual[d] && groupSize[groupOf[f]] == 1
+                 && fragDays[f][fragDays[f].length - 1] <= d)
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Returns the students still unplaced that could come on day d.
+    *
+    * @param d The position in days.
+    * @return The number of students.
+    */
+   private int available(int d) {
+      return remaining(d, 0);
+   }
+
+   /**
+    * Returns the unplaced students in the day's candidates from position i.
+    *
+    * @param d The position in days.
+    * @param i The first candidate to count.
+    * @return The number of students.
+    */
+   private int remaining(int d, int i) {
+      int[] candidates = dayCandidates[d];
+      int total = 0;
+
+      for (; i < candidates.length; i++)
+      {
+         if (assign[candidates[i]] < 0 && weight[candidates[i]] <= residual[d])
+         {
+            total += weight[candidates[i]];
+         }
+      }
+      return total;
+   }
+
+   /**
+    * Returns an upper bound on the students that can be seated on the days
+    * from position from on. Each day is filled as well as its unplaced
+    * schools allow, as if a school could come on more than one day.
+    *
+    * @param from The first day position.
+    * @return The upper bound.
+    */
+   private int laterBound(int from) {
+      long[] reach = scratch;
+      int total = 0, capacity, words, demand;
+
+      for (int d = from; d < days.length; d++)
+      {
+         capacity = residual[d];
+         demand = available(d);
+         if (demand <= capacity)
+         {
+            dayCap[d] = demand;
+            total += demand;
+            continue;
+         }
+
+         words = (capacity >>> 6) + 1;
+         Arrays.fill(reach, 0, words, 0L);
+         reach[0] = 1L;
+         for (int f : dayCandidates[d])
+         {
+            if (assign[f] < 0 && weight[f] <= capacity)
+            {
+               shiftOr(reach, words, weight[f]);
+            }
+         }
+         dayCap[d] = highestBit(reach, capacity);
+         total += dayCap[d];
+      }
+      if (total <= bestValue - current)
+      {
+         return total;
+      }
+      total = flowBound(from);
+      if (total <= bestValue - current)
+      {
+         return total;
+      }
+      return Math.min(total, lagrangeBound(from, from == 0 ? rootSteps : nodeSteps));
+   }
+
+   /**
+    * Returns the most students that can be sent from the unplaced schools to
+    * the days from position from on, where each school sends at most its
+    * size and each day takes at most its dayCap. Found with augmenting paths.
+    *
+    * @param from The first day position.
+    * @return The maximum flow.
+    */
+   private int flowBound(int from) {
+      int flow = 0, push, f, g, d, day, head, tail;
+
+      Arrays.fill(flowIn, 0);
+      Arrays.fill(flowDay, 0);
+      for (int[] edges : flowEdge)
+      {
+         Arrays.fill(edges, 0);
+      }
+
+      //Schools first take any day with room
+      for (f = 0; f < fragments.length; f++)
+      {
+         if (assign[f] >= 0)
+         {
+            continue;
+         }
+         for (int slot = 0; slot < fragDays[f].length; slot++)
+         {
+            d = fragDays[f][slot];
+            if (d >= from && flowIn[f] < weight[f] && flowDay[d] < dayCap[d])
+            {
+               push = Math.min(weight[f] - flowIn[f], dayCap[d] - flowDay[d]);
+               flowIn[f] += push;
+               flowDay[d] += push;
+               flowEdge[f][slot] += push;
+               flow += push;
+            }
+         }
+      }
+
+      //Then reroute through full days until no path is left
+      while (true)
+      {
+         Arrays.fill(parentDay, -2);
+         Arrays.fill(parentFrag, -2);
+         head = 0;
+         tail = 0;
+         for (f = 0; f < fragments.length; f++)
+         {
+            if (assign[f] < 0 && flowIn[f] < weight[f])
+            {
+               parentFrag[f] = -1;
+               queue[tail++] = f;
+            }
+         }
+         d = -1;
+         while (head < tail && d < 0)
+         {
+            f = queue[head++];
+            for (int slot = 0; slot < fragDays[f].length; slot++)
+            {
+               day = fragDays[f][slot];
+               if (day < from || parentDay[day] != -2)
+               {
+                  continue;
+               }
+               parentDay[day] = f;
+               parentDaySlot[day] = slot;
+               if (flowDay[day] < dayCap[day])
+               {
+                  d = day;
+                  break;
+               }
+               //Follow flow back out of the full day to other schools
+               for (int i = 0; i < dayCandidates[day].length; i++)
+               {
+                  g = dayCandidates[day][i];
+                  if (assign[g] < 0 && parentFrag[g] == -2 && flowEdge[g][candidateSlot[day][i]] > 0)
+                  {
+                     parentFrag[g] = day;
+                     parentFragSlot[g] = candidateSlot[day][i];
+                     queue[tail++] = g;
+                  }
+               }
+            }
+         }
+         if (d < 0)
+         {
+            return flow;
+         }
+
+         //Find the bottleneck along the path
+         push = dayCap[d] - flowDay[d];
+         for (day = d; ; )
+         {
+            f = parentDay[day];
+            if (parentFrag[f] == -1)
+            {
+               push = Math.min(push, weight[f] - flowIn[f]);
+               break;
+            }
+            day = parentFrag[f];
+            push = Math.min(push, flowEdge[f][parentFragSlot[f]]);
+         }
+
+         flowDay[d] += push;
+         for (day = d; ; )
+         {
+            f = parentDay[day];
+            flowEdge[f][parentDaySlot[day]] += push;
+            if (parentFrag[f] == -1)
+            {
+               flowIn[f] += push;
+               break;
+            }
+            day = parentFrag[f];
+            flowEdge[f][parentFragSlot[f]] -= push;
+         }
+         flow += push;
+      }
+   }
+
+   /**
+    * Returns an upper bound from the Lagrangian relaxation of "each school
+    * comes at most once". Each day solves its own knapsack with every
+    * school's size lowered by the school's multiplier, and the multipliers
+    * are tuned with subgradient steps. Any multipliers give a valid bound.
+    *
+    * @param from The first day position.
+    * @param steps The number of subgradient steps.
+    * @return The upper bound.
+    */
+   private int lagrangeBound(int from, int steps) {
+      double bound, best = Double.MAX_VALUE, theta = 2.0, step, norm, target;
+      int sinceBest = 0, gradient;
+
+      for (int k = 0; k < steps; k++)
+      {
+         Arrays.fill(uses, 0);
+         bound = 0;
+         for (int f = 0; f < fragments.length; f++)
+         {
+            if (assign[f] < 0)
+            {
+               bound += lambda[f];
+            }
+         }
+         for (int d = from; d < days.length; d++)
+         {
+            bound += dayKnapsack(d);
+         }
+
+         if (bound < best - 1e-9)
+         {
+            best = bound;
+            sinceBest = 0;
+         }
+         else if (++sinceBest >= 5)
+         {
+            theta /= 2;
+            sinceBest = 0;
+         }
+         if (Math.floor(best + 1e-6) <= bestValue - current || theta < 1e-3)
+         {
+            break;
+         }
+
+         norm = 0;
+         for (int f = 0; f < fragments.length; f++)
+         {
+            if (assign[f] < 0)
+            {
+               gradient = 1 - uses[f];
+               norm += gradient * gradient;
+            }
+         }
+         if (norm == 0)
+         {
+            break;
+         }
+         target = Math.max(bestValue - current, 0);
+         step = theta * Math.max(bound - target, 1.0) / norm;
+         for (int f = 0; f < fragments.length; f++)
+         {
+            if (assign[f] < 0)
+            {
+               lambda[f] = Math.max(0, lambda[f] - step * (1 - uses[f]));
+            }
+         }
+      }
+      return (int) Math.floor(best + 1e-6);
+   }
+
+   /**
+    * Solves day d's knapsack with the lowered sizes and counts the schools
+    * it takes in uses.
+    *
+    * @param d The position in days.
+    * @return The best lowered value for the day.
+    */
+   private double dayKnapsack(int d) {
+      int capacity = residual[d], items = 0, w, f;
+      long bit;
+      double value;
+
+      Arrays.fill(dpValue, 0, capacity + 1, 0.0);
+      Arrays.fill(dpTaken, 0, (int) (((long) dayCandidates[d].length * (capacity + 1) + 63) >>> 6), 0L);
+      for (int candidate : dayCandidates[d])
+      {
+         if (assign[candidate] >= 0 || weight[candidate] > capacity || weight[candidate] - lambda[candidate] <= 0)
+         {
+            continue;
+         }
+         items++;
+         dpItem[items] = candidate;
+         w = weight[candidate];
+         value = w - lambda[candidate];
+         bit = (long) (items - 1) * (capacity + 1);
+         //Go from the top so each school is only counted once
+         for (int c = capacity; c >= w; c--)
+         {
+            if (dpValue[c - w] + value > dpValue[c])
+            {
+               dpValue[c] = dpValue[c - w] + value;
+               dpTaken[(int) ((bit + c) >>> 6)] |= 1L << (bit + c);
+            }
+         }
+      }
+
+      //Backtrack to count which schools the day took
+      for (int i = items, c = capacity; i > 0; i--)
+      {
+         bit = (long) (i - 1) * (capacity + 1) + c;
+         if ((dpTaken[(int) (bit >>> 6)] & (1L << bit)) != 0)
+         {
+            f = dpItem[i];
+            uses[f]++;
+            c -= weight[f];
+         }
+      }
+      return dpValue[capacity];
+   }
+
+   /**
+    * Returns if the search should stop.
+    *
+    * @return True if out of nodes or the bound was reached.
+    */
+   private boolean done() {
+      return aborted || bestValue >= rootBound;
+   }
+
+   private void place(int f, int d) {
+      assign[f] = d;
+      residual[d] -= weight[f];
+      current += weight[f];
+      groupPlaced[groupOf[f]]++;
+   }
+
+   private void unplace(int f) {
+      residual[assign[f]] += weight[f];
+      current -= weight[f];
+      groupPlaced[groupOf[f]]--;
+      assign[f] = -1;
+   }
+
+   /**
+    * Records the current schedule if it is the best, leaving out any school
+    * that only had some of its parts placed.
+    */
+   private void recordLeaf() {
+      int value = current;
+
+      for (int f = 0; f < fragments.length; f++)
+      {
+         if (assign[f] >= 0 && groupPlaced[groupOf[f]] < groupSize[groupOf[f]])
+         {
+            value -= weight[f];
+         }
+      }
+      if (value <= bestValue && bestAssign != null)
+      {
+         return;
+      }
+
+      bestValue = value;
+      bestAssign = assign.clone();
+      for (int f = 0; f < fragments.length; f++)
+      {
+         if (bestAssign[f] >= 0 && groupPlaced[groupOf[f]] < groupSize[groupOf[f]])
+         {
+            bestAssign[f] = -1;
+         }
+      }
+   }
+
+   /**
+    * Returns if every part of the school fits on some day.
+    *
+    * @param group The school.
+    * @return True if the school can be scheduled.
+    */
+   private boolean groupFits(int group) {
+      return groupFit[group];
+   }
+
+   /**
+    * Sets every bit that is shift above a set bit.
+    *
+    * @param bits The bitset.
+    * @param words The number of words in use.
+    * @param shift The amount to shift.
+    */
+   private static void shiftOr(long[] bits, int words, int shift) {
+      int wordShift = shift >>> 6, bitShift = shift & 63;
+      long value;
+
+      for (int i = words - 1; i >= wordShift; i--)
+      {
+         value = bits[i - wordShift] << bitShift;
+         if (bitShift != 0 && i - wordShift - 1 >= 0)
+         {
+            value |= bits[i - wordShift - 1] >>> (64 - bitShift);
+         }
+         bits[i] |= value;
+      }
+   }
+
+   /**
+    * Returns the highest set bit at or below limit.
+    *
+    * @param bits The bitset.
+    * @param limit The highest bit to look at.
+    * @return The highest set bit, or 0.
+    */
+   private static int highestBit(long[] bits, int limit) {
+      int word = limit >>> 6;
+      long value = bits[word] & (-1L >>> (63 - (limit & 63)));
+
+      while (value == 0 && word > 0)
+      {
+         value = bits[--word];
+      }
+      return value == 0 ? 0 : (word << 6) + 63 - Long.numberOfLeadingZeros(value);
+   }
+
+   private static int[] toArray(ArrayList<Integer> list) {
+      int[] array = new int[list.size()];
+
+      for (int i = 0; i < list.size(); i++)
+      {
+         array[i] = list.get(i);
+      }
+      return array;
+   }
+}
@@ -0,0 +1,454 @@
+package model;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+
+/**
+ * Reads the schedule from a CSV or TSV file laid out like the workbook: the
+ * dates on the first row, the seats on the second, and one school per row
+ * after that until the first row without a school name. The columns mean
+ * the same as they do in ExcelHandler.
+ *
+ * The file is memory mapped a window at a time and parsed byte by byte.
+ * Each field is copied into one reused buffer and read from there, so only
+ * school names and the two header rows become Strings. Fields may be quoted,
+ * with "" for a quote, and the file is read as UTF-8.
+ *
+ * Every field counts as a cell, even an empty one, so the day a column is
+ * for only depends on the column.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class CsvReader {
+
+   /**
+    * How much of the file is mapped at a time
+    */
+   private static final int WINDOW = 64 << 20;
+   /**
+    * What ended a field
+    */
+   private static final int DELIMITER = 0, END_OF_ROW = 1, END_OF_FILE = 2;
+   /**
+    * Powers of ten that are exact as doubles
+    */
+   private static final double[] POW10 = new double[23];
+
+   static
+   {
+      POW10[0] = 1;
+      for (int exp = 1; exp < POW10.length; exp++)
+      {
+         POW10[exp] = POW10[exp - 1] * 10;
+      }
+   }
+
+   private final ExcelHandler handler;
+   private final LogicModel model;
+   private final byte delimiter;
+
+   private FileChannel channel;
+   private MappedByteBuffer buffer;
+   /**
+    * Where the mapped window starts in the file, and the file's size
+    */
+   private long base, size;
+   /**
+    * A byte read ahead and put back, or -2 if none
+    */
+   private int pushback = -2;
+   /**
+    * The field just read
+    */
+   private byte[] field = new byte[256];
+   private int fieldLength;
+   /**
+    * The first field of the row, kept until the row turns out to be a school
+    */
+   private byte[] held = new byte[256];
+   private int heldLength;
+
+   /**
+    * @param handler The handler whose days and schools are read.
+    * @param model The model to read into.
+    * @param delimiter The field delimiter, ',' or '\t'.
+    */
+   CsvReader(ExcelHandler handler, LogicModel model, char delimiter) {
+      this.handler = handler;
+      this.model = model;
+      this.delimiter = (byte) delimiter;
+   }
+
+   /**
+    * Returns the delimiter of a file by its extension.
+    *
+    * @param filename The name of the file.
+    * @return ',' for .csv, '\t' for .tsv or .tab, or 0 if it is not a
+    * delimited file.
+    */
+   public static char delimiterOf(String filename) {
+      String name = filename.toLowerCase();
+
+      if (name.endsWith(".csv"))
+      {
+         return ',';
+      }
+      if (name.endsWith(".tsv") || name.endsWith(".tab"))
+      {
+         return '\t';
+      }
+      return 0;
+   }
+
+   /**
+    * Reads the days and schools of a file into the model.
+    *
+    * @param filename The file.
+    * @return The number of schools read.
+    * @throws IOException If the file can not be read.
+    * @throws InvalidFormatException If the days are malformed.
+    */
+   int read(String filename) throws IOException, InvalidFormatException {
+      HashMap<Integer, String> dates = new HashMap<>(), seats = new HashMap<>();
+      School school = null;
+      int rowNum = 0, col, end, schoolCount = 0;
+      boolean daysRead = false, schoolsDone = false;
+
+      try (FileChannel ch = new FileInputStream(filename).getChannel())
+      {
+         channel = ch;
+         size = ch.size();
+         base = 0;
+         buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW, size));
+         skipByteOrderMark();
+
+         do
+         {
+            col = 0;
+            do
+            {
+               end = readField();
+               //A new line at the end of the file is not a row
+               if (end == END_OF_FILE && col == 0 && fieldLength == 0)
+               {
+                  break;
+               }
+
+               if (rowNum < 2)
+               {
+                  if (fieldLength > 0)
+                  {
+                     (rowNum == 0 ? dates : seats).put(col, text());
+                  }
+               }
+               else if (col == 0)
+               {
+                  keepField();
+               }
+               else if (col == 1)
+               {
+                  if (!daysRead)
+                  {
+                     daysRead = true;
+                     model.resetModel();
+                     handler.initializeDayList(dates, seats);
+                  }
+                  //The schools end at the first row without a name
+                  if (fieldLength == 0)
+                  {
+                     schoolsDone = true;
+                     break;
+                  }
+                  school = new School(model.ids);
+                  school.name = text();
+                  if (heldLength > 0)
+                  {
+                     school.priority = 500.0 - parseNumber(held, 0, heldLength);
+                  }
+               }
+               else if (fieldLength > 0)
+               {
+                  readField(school, col);
+               }
+               col++;
+            } while (end == DELIMITER);
+
+            if (school != null)
+            {
+               handler.addSchool(school);
+               schoolCount++;
+               school = null;
+            }
+            else if (rowNum >= 2)
+            {
+               //A row with only one field has no name either
+               schoolsDone = true;
+            }
+            rowNum++;
+         } while (end != END_OF_FILE && !schoolsDone);
+      } finally
+      {
+         channel = null;
+         buffer = null;
+      }
+
+      if (!daysRead)
+      {
+         model.resetModel();
+         handler.initializeDayList(dates, seats);
+      }
+      return schoolCount;
+   }
+
+   /**
+    * Reads one field of a school's row past its name, as
+    * ExcelHandler.readCell reads a cell.
+    */
+   private void readField(School school, int col) {
+      int from;
+
+      switch (col)
+      {
+         //Previously visited
+         case 2:
+            if (containsNo())
+            {
+               school.visited = false;
+            }
+            break;
+
+         //Grade levels
+         case 3:
+            break;
+
+         //Total num students
+         case 4:
+            school.numStudents = (int) parseNumber(field, 0, fieldLength);
+            school.totalNumStudents = school.numStudents;
+            handler.totalStudentCount += school.totalNumStudents;
+            break;
+
+         //Split
+         case 5:
+            if ((int) parseNumber(field, 0, fieldLength) == 1)
+            {
+               school.split = true;
+            }
+            break;
+
+         //Split numbers, separated by commas
+         case 6:
+            from = 0;
+            for (int pos = 0; pos <= fieldLength; pos++)
+            {
+               if (pos == fieldLength || field[pos] == ',')
+               {
+                  if (pos > from)
+                  {
+                     school.splitNums.add((int) parseNumber(field, from, pos));
+                  }
+                  from = pos + 1;
+               }
+            }
+            break;
+
+         //Available dates
+         default:
+            if (col >= handler.dateStart && col <= handler.dateEnd && fieldLength == 1
+                    && (field[0] == 'y' || field[0] == 'Y' || field[0] == '1'))
+            {
+               school.addDay(model.dayList.get(col - 6));
+            }
+            break;
+      }
+   }
+
+   /**
+    * Returns if the field contains "no" in any case.
+    */
+   private boolean containsNo() {
+      for (int pos = 0; pos + 1 < fieldLength; pos++)
+      {
+         if ((field[pos] | 0x20) == 'n' && (field[pos + 1] | 0x20) == 'o')
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Parses a number the way Double.valueOf does. Plain decimals are parsed
+    * from the bytes, anything else falls back to Double.valueOf.
+    *
+    * @throws NumberFormatException If it is not a number.
+    */
+   static double parseNumber(byte[] bytes, int from, int to) {
+      int pos, digits = 0, fraction = -1;
+      long mantissa = 0;
+      boolean negative = false;
+      double value;
+
+      while (from < to && (bytes[from] & 0xFF) <= ' ')
+      {
+         from++;
+      }
+      while (to > from && (bytes[to - 1] & 0xFF) <= ' ')
+      {
+         to--;
+      }
+
+      pos = from;
+      if (pos < to && (bytes[pos] == '-' || bytes[pos] == '+'))
+      {
+         negative = bytes[pos++] == '-';
+      }
+      for (; pos < to; pos++)
+      {
+         if (bytes[pos] >= '0' && bytes[pos] <= '9')
+         {
+            mantissa = mantissa * 10 + (bytes[pos] - '0');
+            digits++;
+            if (fraction >= 0)
+            {
+               fraction++;
+            }
+         }
+         else if (bytes[pos] == '.' && fraction < 0)
+         {
+            fraction = 0;
+         }
+         else
+         {
+            break;
+         }
+      }
+
+      //Exact when the digits and the power of ten are both exact doubles
+      if (pos == to && digits > 0 && digits <= 15 && fraction < POW10.length)
+      {
+         value = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+         return negative ? -value : value;
+      }
+      return Double.valueOf(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+   }
+
+   /**
+    * Returns the field as a String.
+    */
+   private String text() {
+      return new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Keeps the field by swapping it with the held buffer.
+    */
+   private void keepField() {
+      byte[] swap = held;
+
+      held = field;
+      heldLength = fieldLength;
+      field = swap;
+   }
+
+   /**
+    * Reads the next field into the field buffer.
+    *
+    * @return What ended the field.
+    */
+   private int readField() throws IOException {
+      int c = read();
+
+      fieldLength = 0;
+      if (c == '"')
+      {
+         for (c = read(); c >= 0; c = read())
+         {
+            if (c == '"')
+            {
+               //A quote ends the field unless another quote follows
+               c = read();
+               if (c != '"')
+               {
+                  break;
+               }
+            }
+            append(c);
+         }
+      }
+      //Anything after a closing quote is kept as it is
+      while (c >= 0 && c != delimiter && c != '\n' && c != '\r')
+      {
+         append(c);
+         c = read();
+      }
+
+      if (c < 0)
+      {
+         return END_OF_FILE;
+      }
+      if (c == '\r')
+      {
+         c = read();
+         if (c != '\n')
+         {
+            pushback = c;
+         }
+         return END_OF_ROW;
+      }
+      return c == '\n' ? END_OF_ROW : DELIMITER;
+   }
+
+   private void append(int c) {
+      if (fieldLength == field.length)
+      {
+         byte[] bigger = new byte[field.length * 2];
+
+         System.arraycopy(field, 0, bigger, 0, fieldLength);
+         field = bigger;
+      }
+      field[fieldLength++] = (byte) c;
+   }
+
+   /**
+    * Returns the next byte, or -1 at the end of the file. Maps the next
+    * window when the current one is used up.
+    */
+   private int read() throws IOException {
+      int c;
+
+      if (pushback != -2)
+      {
+         c = pushback;
+         pushback = -2;
+         return c;
+      }
+      if (!buffer.hasRemaining())
+      {
+         if (base + buffer.limit() >= size)
+         {
+            return -1;
+         }
+         base += buffer.limit();
+         buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(WINDOW, size - base));
+      }
+      return buffer.get() & 0xFF;
+   }
+
+   /**
+    * Skips the UTF-8 byte order mark Excel writes at the start of a CSV.
+    */
+   private void skipByteOrderMark() {
+      if (buffer.remaining() >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB
+              && (buffer.get(2) & 0xFF) == 0xBF)
+      {
+         buffer.position(3);
+      }
+   }
+}
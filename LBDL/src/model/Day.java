@@ -3,7 +3,6 @@ package model;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.*;
-import javax.swing.DefaultListModel;
 
 /**
  * Contains information regarding who can come on a certain date.
@@ -45,6 +44,15 @@ public class Day {
     * Formats the date to a readable format
     */
    protected SimpleDateFormat formatter;
+   /**
+    * One bit per split school that can come this day, keyed by the school's
+    * position in the split school list
+    */
+   protected long[] candidateMask;
+   /**
+    * The positions in the split school list of the schools that can come
+    */
+   protected int[] candidates;
 
    /**
     * Creates a day object to hold schools.
@@ -62,15 +70,23 @@ public class Day {
       this.formatter = new SimpleDateFormat("EEE. MMM d, yyyy");
    }
 
+   /**
+    * Creates a copy of a day. The copy can be scheduled without touching the
+    * original.
+    *
+    * @param newDay The day to copy.
+    */
    public Day(Day newDay) {
       this.date = newDay.date;
       this.schools = new ArrayList<>(newDay.schools);
-      this.initialSchools = new ArrayList<>();
+      this.initialSchools = new ArrayList<>(newDay.initialSchools);
       this.maxStudents = newDay.maxStudents;
       this.initialSeatsLeft = newDay.initialSeatsLeft;
       this.index = newDay.index;
       this.seatsLeft = newDay.seatsLeft;
       this.formatter = newDay.formatter;
+      this.candidateMask = newDay.candidateMask;
+      this.candidates = newDay.candidates;
    }
 
    /**
@@ -171,30 +187,56 @@ public class Day {
     * @param numSeats The number of seats for this day.
     */
    public void setMaxStudents(int numSeats) {
+      int change = numSeats - maxStudents;
+
+      //Keep the seats already taken by scheduled and pinned schools
       this.maxStudents = numSeats;
-      this.seatsLeft = numSeats;
+      this.seatsLeft += change;
+      this.initialSeatsLeft += change;
    }
 
    /**
-    * Get list model of all school names
+    * Puts a saved schedule back on this day.
     *
-    * @return DefaultListModel<String> of all the school names
+    * @param saved The saved day.
     */
-   public DefaultListModel<String> getSchoolNames() {
-      DefaultListModel listModel = new DefaultListModel<>();
-
-      String sSize, element;
-      for (School s : this.schools)
-      {
-         sSize = "<b>" + s.getTotalStudents() + "</b>";
-         element = String.format("<html>%2.1f %10s %s</html>", 500 - s.priority, sSize, s.getName());
-         listModel.addElement(element);
-      }
+   protected void restore(FinalDay saved) {
+      this.schools = new ArrayList<>(saved.getSchools());
+      this.seatsLeft = saved.seatsLeft;
+   }
 
-      return listModel;
+   /**
+    * Returns if the school was pinned to this day in school options.
+    *
+    * @param school The school to check.
+    * @return True if the school is pinned.
+    */
+   public boolean isPinned(School school) {
+      return initialSchools.contains(school);
    }
 
    public int getMaxSeats() {
       return maxStudents;
    }
+
+   /**
+    * Days are the same if they represent the same index. Copies of a day
+    * still match the days in a school's available dates.
+    *
+    * @param obj The object to compare.
+    * @return True if both days have the same index.
+    */
+   @Override
+   public boolean equals(Object obj) {
+      if (!(obj instanceof Day))
+      {
+         return false;
+      }
+      return index == ((Day) obj).index;
+   }
+
+   @Override
+   public int hashCode() {
+      return index;
+   }
 }
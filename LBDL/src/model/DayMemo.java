@@ -0,0 +1,183 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which schools a day's knapsack picked, so a restart that meets
+ * the same day solve again skips filling the table. A solve is keyed by the
+ * split indexes of the available schools and the seats the day has left, so
+ * a key is only as long as the day's list. The schools' sizes and priorities
+ * never change during a run, so the same key always gives the same picks.
+ *
+ * Only lists in split school list order are kept, since the order of the
+ * schools can change which of two equal picks the table makes. The least
+ * recently used picks are dropped once the keys and picks kept take more
+ * than the memo's bytes. Every model has its own, like its KnapsackTable,
+ * and it must be cleared when the split school list is built again.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class DayMemo {
+
+   /**
+    * The bytes of keys and picks kept unless set otherwise
+    */
+   public static final long DEFAULT_BYTES = 4L << 20;
+   /**
+    * The bytes a kept solve takes besides its two arrays
+    */
+   private static final int ENTRY_BYTES = 96;
+
+   private final LinkedHashMap<Key, int[]> picks = new LinkedHashMap<>(256, 0.75f, true);
+   private final long maxBytes;
+   private long bytes;
+
+   /**
+    * Creates an empty memo.
+    *
+    * @param maxBytes The most bytes of keys and picks kept.
+    */
+   public DayMemo(long maxBytes) {
+      this.maxBytes = Math.max(ENTRY_BYTES, maxBytes);
+   }
+
+   /**
+    * Returns the key of a day solve, or null if the list can not be keyed.
+    *
+    * @param availSchools The schools available on the day.
+    * @param splitList The split school list the schools index into.
+    * @param seats The seats the day has left.
+    * @return The key.
+    */
+   public Key keyOf(ArrayList<School> availSchools, ArrayList<School> splitList, int seats) {
+      int[] indexes = new int[availSchools.size()];
+      School school;
+      int pos, last = -1;
+
+      for (int item = 0; item < indexes.length; item++)
+      {
+         school = availSchools.get(item);
+         pos = school.splitIndex;
+         if (pos <= last || pos >= splitList.size() || splitList.get(pos) != school)
+         {
+            return null;
+         }
+         indexes[item] = pos;
+         last = pos;
+      }
+      return new Key(indexes, seats);
+   }
+
+   /**
+    * Returns the picks of a day solve.
+    *
+    * @param key The key.
+    * @return The split indexes of the picked schools in the order they were
+    * picked, or null if the solve is not kept.
+    */
+   public int[] get(Key key) {
+      return picks.get(key);
+   }
+
+   /**
+    * Keeps the picks of a day solve.
+    *
+    * @param key The key.
+    * @param chosen The picked schools, in the order they were picked.
+    */
+   public void put(Key key, ArrayList<School> chosen) {
+      int[] indexes = new int[chosen.size()];
+
+      for (int pos = 0; pos < indexes.length; pos++)
+      {
+         indexes[pos] = chosen.get(pos).splitIndex;
+      }
+      if (picks.put(key, indexes) == null)
+      {
+         bytes += sizeOf(key.indexes.length, indexes.length);
+      }
+      trim();
+   }
+
+   /**
+    * Drops the least recently used solves until the rest fit the bytes.
+    */
+   private void trim() {
+      Iterator<Map.Entry<Key, int[]>> eldest = picks.entrySet().iterator();
+      Map.Entry<Key, int[]> entry;
+
+      while (bytes > maxBytes && eldest.hasNext())
+      {
+         entry = eldest.next();
+         bytes -= sizeOf(entry.getKey().indexes.length, entry.getValue().length);
+         eldest.remove();
+      }
+   }
+
+   /**
+    * Returns about how many bytes a kept solve takes.
+    */
+   private static long sizeOf(int keyLength, int picksLength) {
+      return ENTRY_BYTES + 4L * (keyLength + picksLength);
+   }
+
+   /**
+    * Forgets every day solve.
+    */
+   public void clear() {
+      picks.clear();
+      bytes = 0;
+   }
+
+   /**
+    * @return The number of day solves kept.
+    */
+   public int size() {
+      return picks.size();
+   }
+
+   /**
+    * @return About how many bytes the kept solves take.
+    */
+   public long getBytes() {
+      return bytes;
+   }
+
+   /**
+    * The available schools and seats of one day solve.
+    */
+   public static class Key {
+
+      private final int[] indexes;
+      private final int seats;
+      private final int hash;
+
+      Key(int[] indexes, int seats) {
+         this.indexes = indexes;
+         this.seats = seats;
+         this.hash = 31 * Arrays.hashCode(indexes) + seats;
+      }
+
+      @Override
+      public int hashCode() {
+         return hash;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         Key other;
+
+         if (!(obj instanceof Key))
+         {
+            return false;
+         }
+         other = (Key) obj;
+         return hash == other.hash && seats == other.seats && Arrays.equals(indexes, other.indexes);
+      }
+   }
+}
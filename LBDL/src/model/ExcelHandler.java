@@ -1,15 +1,13 @@
 package model;
 
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 /**
  * Handles reading and writing from Excel files.
@@ -19,6 +17,10 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
  */
 public class ExcelHandler {
 
+   /**
+    * The number of rows of each sheet kept in memory while writing
+    */
+   private static final int WRITE_WINDOW = 100;
    /**
     * A reference to the LogicModel
     */
@@ -55,11 +57,14 @@ public class ExcelHandler {
    public ExcelHandler(LogicModel model) {
       this.model = model;
       //this.totalStudents = 0;
-      LogicModel.schoolId = 0;
    }
 
    /**
-    * Read the Excel file.
+    * Read the Excel file. The sheet is streamed one row at a time, so only
+    * the schools and days it makes are kept in memory. A .csv or .tsv file
+    * with the same columns is read with CsvReader instead, and a .json
+    * problem with JsonReader. A workbook or CSV file that has not changed
+    * since it was last read is read from its InputCache.
     *
     * @param filename The name of the file.
     * @throws InvalidFormatException If file is malformed.
@@ -76,52 +81,34 @@ public class ExcelHandler {
          return;
       }
 
+      //Skip parsing if the workbook has not changed since it was cached
+      if (!JsonReader.isJson(filename) && InputCache.load(model, filename, dateStart, dateEnd))
+      {
+         readCached();
+         return;
+      }
+
       try
       {
-         XSSFWorkbook wb = new XSSFWorkbook(new File(filename));
-         XSSFSheet wkSheet = wb.getSheetAt(0);
-         XSSFRow xlrow;
-         XSSFCell cell;
-         int numRows = 2; // Schools start from row 2 and on
-         //numRows = wkSheet.getPhysicalNumberOfRows();
-         int numCols = 0; // Num of columns
-         int tmp = 0;
-         int schoolCount = 0;
+         char delimiter = CsvReader.delimiterOf(filename);
+         int schoolCount;
          needAddCounter = 0;
 
-         //Checks each row for a school name to calculate total number of schools
-         do
+         if (JsonReader.isJson(filename))
          {
-            cell = wkSheet.getRow(numRows).getCell(1);
-            numRows++;
-         } while (cell != null);
-
-         model.resetModel();
-         // Get number of columns. Go through 10 rows to make sure
-         for (int i = 0; i < 10 || i < numRows; i++)
+            schoolCount = new JsonReader(this, model).read(filename);
+         }
+         else if (delimiter != 0)
          {
-            xlrow = wkSheet.getRow(i);
-            if (xlrow != null)
-            {
-               tmp = wkSheet.getRow(i).getPhysicalNumberOfCells();
-               if (tmp > numCols)
-               {
-                  numCols = tmp;
-               }
-            }
+            schoolCount = new CsvReader(this, model, delimiter).read(filename);
          }
-         //Initialize available days from first row of sheet
-         initializeDayList(wkSheet);
-
-         // For every row in the sheet starting from the third row after seats per day
-         for (int row = 2; row < numRows - 1; row++)
+         else
          {
-            xlrow = wkSheet.getRow(row);
-            if (xlrow != null)
-            {
-               parseSchool(xlrow, numCols);
-            }
-            schoolCount++;
+            SheetRows rows = new SheetRows();
+
+            SheetReader.read(filename, rows);
+            rows.finish();
+            schoolCount = rows.schoolCount;
          }
 
          //Sort the list by priority
@@ -132,6 +119,13 @@ public class ExcelHandler {
             }
          });
 
+         //Only cache workbooks whose dates were all read. JSON problems
+         //have no columns to key the cache on
+         if (model.TotalDays == dateEnd - dateStart + 1 && !JsonReader.isJson(filename))
+         {
+            InputCache.save(model, filename, dateStart, dateEnd);
+         }
+
          //Temp # of avail seats
          model.notifyText = "Total # of Schools: " + "<b>" + schoolCount + "</b>" + "<br/>Total # of Available Seats: " + "<b>" + totalSeats + "</b>"
                  + "<br/>Total # of Students: " + "<b>" + totalStudentCount + "</b>";
@@ -150,18 +144,174 @@ public class ExcelHandler {
       }
    }
 
+   /**
+    * Sets the totals a parse would have counted, once the schools and days
+    * are read from the cache.
+    */
+   private void readCached() {
+      needAddCounter = model.toAdd.size();
+      totalSeats = 0;
+      for (Day day : model.dayList.values())
+      {
+         totalSeats += day.seatsLeft;
+      }
+      for (School school : model.schoolList)
+      {
+         totalStudentCount += school.totalNumStudents;
+      }
+
+      model.notifyText = "Total # of Schools: " + "<b>" + model.schoolList.size() + "</b>" + "<br/>Total # of Available Seats: " + "<b>" + totalSeats + "</b>"
+              + "<br/>Total # of Students: " + "<b>" + totalStudentCount + "</b>";
+      model.notify(LogicModel.NotifyCmd.TEXT);
+   }
+
+   /**
+    * Builds the days and schools as the rows of the sheet are read.
+    *
+    * Schools start on the third row and end at the first row without a
+    * school name. Only the columns before the most cells in any of the
+    * first ten rows or the school rows are read. That number is only known
+    * at the end, so cells past the widest row so far are kept aside and read
+    * at the end if a row turns out that wide.
+    */
+   private class SheetRows implements SheetReader.RowHandler {
+
+      /**
+       * The text of the date and seat rows, by column
+       */
+      private HashMap<Integer, String> dates, seats;
+      /**
+       * The row the next school should be on
+       */
+      private int nextRow = 2;
+      /**
+       * The first row after the schools. -1 until it is found
+       */
+      private int endRow = -1;
+      /**
+       * The most cells in a row so far
+       */
+      private int numCols = 0;
+      private int schoolCount = 0;
+      private boolean daysRead = false;
+      /**
+       * Cells past numCols at the time they were read
+       */
+      private final ArrayList<LateCell> lateCells = new ArrayList<>();
+
+      @Override
+      public boolean row(int rowNum, ArrayList<SheetReader.Cell> cells) throws Exception {
+         if (endRow < 0 && rowNum >= 2)
+         {
+            readDays();
+            if (rowNum != nextRow || !hasCell(cells, 1))
+            {
+               endRow = nextRow;
+            }
+         }
+         if (endRow >= 0 && rowNum > Math.max(9, endRow))
+         {
+            return false;
+         }
+
+         numCols = Math.max(numCols, cells.size());
+         if (rowNum == 0)
+         {
+            dates = getText(cells);
+         }
+         else if (rowNum == 1)
+         {
+            seats = getText(cells);
+         }
+         else if (endRow < 0)
+         {
+            parseSchool(cells, numCols, lateCells);
+            schoolCount++;
+            nextRow++;
+         }
+         return endRow < 0 || rowNum < Math.max(9, endRow);
+      }
+
+      /**
+       * Finishes reading once the sheet is done.
+       */
+      private void finish() throws InvalidFormatException {
+         readDays();
+         for (LateCell late : lateCells)
+         {
+            if (late.cell.getColumnIndex() < numCols)
+            {
+               readCell(late.school, late.cell, late.dayCount);
+            }
+         }
+      }
+
+      /**
+       * Makes the days once the date and seat rows are read.
+       */
+      private void readDays() throws InvalidFormatException {
+         if (!daysRead)
+         {
+            daysRead = true;
+            model.resetModel();
+            initializeDayList(dates, seats);
+         }
+      }
+   }
+
+   /**
+    * A cell that may be past the last column, kept until the end.
+    */
+   private static class LateCell {
+
+      private final School school;
+      private final SheetReader.Cell cell;
+      private final int dayCount;
+
+      LateCell(School school, SheetReader.Cell cell, int dayCount) {
+         this.school = school;
+         this.cell = cell;
+         this.dayCount = dayCount;
+      }
+   }
+
+   /**
+    * Returns if a row has a cell in a column.
+    */
+   private static boolean hasCell(ArrayList<SheetReader.Cell> cells, int col) {
+      for (SheetReader.Cell cell : cells)
+      {
+         if (cell.getColumnIndex() == col)
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Returns the text of each cell in a row, by column.
+    */
+   private static HashMap<Integer, String> getText(ArrayList<SheetReader.Cell> cells) {
+      HashMap<Integer, String> text = new HashMap<>();
+
+      for (SheetReader.Cell cell : cells)
+      {
+         text.put(cell.getColumnIndex(), cell.toString());
+      }
+      return text;
+   }
+
    /**
     * Initialize all the days that are offered.
     *
-    * @param xlRow The row with the days.
+    * @param dates The text of the row with the days.
+    * @param seats The text of the row with the seats of each day.
     */
-   private void initializeDayList(XSSFSheet sheet) throws InvalidFormatException {
+   void initializeDayList(HashMap<Integer, String> dates, HashMap<Integer, String> seats)
+           throws InvalidFormatException {
       //Count of days
       int dayCount = 0;
-      //The current cell
-      XSSFCell cell;
-      //The row
-      XSSFRow xlRow = sheet.getRow(0);
       //Value of the entire cell
       String cellStr;
       //The date extracted from the cell in mm/dd format
@@ -180,20 +330,18 @@ public class ExcelHandler {
          //FOR each date in the sheet
          while (beginDate <= dateEnd)
          {
-            cell = xlRow.getCell(beginDate);
-            cellStr = cell.toString();
+            cellStr = dates.get(beginDate);
             cellDate = cellStr.substring(cellStr.indexOf(" "), cellStr.length()).trim();
             dateArr = cellDate.split("/");
             if (dateArr.length != 2)
             {
-               model.notifyText = "Bad cell format: Sheet: " + xlRow.getSheet().getSheetName()
-                       + "| Cell(" + xlRow.getRowNum() + ", " + beginDate + ")";
+               model.notifyText = "Bad cell format: Cell(0, " + beginDate + ")";
                model.notify(LogicModel.NotifyCmd.TEXT);
                break;
             }
             else
             {
-               maxStudents = Double.valueOf(sheet.getRow(1).getCell(beginDate).toString()).intValue();
+               maxStudents = Double.valueOf(seats.get(beginDate)).intValue();
                Day newDay = new Day(++dayCount, maxStudents); 
                totalSeats += newDay.seatsLeft;
                //Get the month, subtract 1 because index starts at 0
@@ -218,163 +366,146 @@ public class ExcelHandler {
       model.TotalDays = dayCount;
    }
 
+   /**
+    * Writes the final schedule with SXSSF. Only WRITE_WINDOW rows of each
+    * sheet are kept in memory, older rows are flushed to compressed temp
+    * files, so writing takes the same memory however many schools there are.
+    *
+    * @param outputFile The file to write.
+    * @throws IOException If the file can not be written.
+    */
    protected void writeXLFile(String outputFile) throws IOException {
-      XSSFWorkbook wb = new XSSFWorkbook();
-      XSSFSheet sheet = wb.createSheet("Main Schedule");
-      XSSFSheet sheet2 = wb.createSheet("Remaining Seats");
-      XSSFSheet sheet3 = wb.createSheet("Unscheduled Schools");
-
-      ArrayList<FinalDay> schedule = new ArrayList<>(model.finalSchedule);
-      ArrayList<School> unscheduled = new ArrayList<>(model.finalUnscheduled);
-
-      XSSFRow row, row2, row3;
+      SXSSFWorkbook wb = new SXSSFWorkbook(null, WRITE_WINDOW, true);
+      //Read each list once, publishing a new best replaces it
+      ArrayList<FinalDay> schedule = model.finalSchedule;
+      ArrayList<School> unscheduled = model.finalUnscheduled;
+
+      Sheet sheet, sheet2, sheet3;
+      Row row, row2, row3;
+      String date;
       int count = 0, countf = 0, countU = 0;
 
-      sheet.setColumnWidth(0, 45 * 256);
-      sheet.setColumnWidth(1, 10 * 256);
-      sheet.setColumnWidth(2, 20 * 256);
-      
-      sheet2.setColumnWidth(0, 20 * 256);
-      sheet2.setColumnWidth(1, 10 * 256);
-      sheet2.setColumnWidth(2, 18 * 256);
-
-      sheet3.setColumnWidth(0, 8 * 256);
-      sheet3.setColumnWidth(1, 45 * 256);
-      sheet3.setColumnWidth(2, 10 * 256);
-
-      row = sheet.createRow(count++);
-      row.createCell(0).setCellValue("School");
-      row.createCell(1).setCellValue("Seats");
-      row.createCell(2).setCellValue("Date");
-
-      row2 = sheet2.createRow(countf++);
-      row2.createCell(0).setCellValue("Date");
-      row2.createCell(1).setCellValue("Seats Left");
-      row2.createCell(2).setCellValue("Extra Seats Needed");
-
-      row3 = sheet3.createRow(countU++);
-      row3.createCell(0).setCellValue("Priority");
-      row3.createCell(1).setCellValue("School Name");
-      row3.createCell(2).setCellValue("Seats");
-
-      for (FinalDay day : schedule)
+      try
       {
-         for (School school : day.getSchools())
-         {
-            row = sheet.createRow(count++);
-            row.createCell(0).setCellValue(school.name);
-            row.createCell(1).setCellValue(school.getNumStudents());
-            row.createCell(2).setCellValue(day.toString());
-         }
+         sheet = wb.createSheet("Main Schedule");
+         sheet2 = wb.createSheet("Remaining Seats");
+         sheet3 = wb.createSheet("Unscheduled Schools");
+
+         sheet.setColumnWidth(0, 45 * 256);
+         sheet.setColumnWidth(1, 10 * 256);
+         sheet.setColumnWidth(2, 20 * 256);
+
+         sheet2.setColumnWidth(0, 20 * 256);
+         sheet2.setColumnWidth(1, 10 * 256);
+         sheet2.setColumnWidth(2, 18 * 256);
+
+         sheet3.setColumnWidth(0, 8 * 256);
+         sheet3.setColumnWidth(1, 45 * 256);
+         sheet3.setColumnWidth(2, 10 * 256);
+
+         row = sheet.createRow(count++);
+         row.createCell(0).setCellValue("School");
+         row.createCell(1).setCellValue("Seats");
+         row.createCell(2).setCellValue("Date");
+
          row2 = sheet2.createRow(countf++);
-         row2.createCell(0).setCellValue(day.toString());
-         row2.createCell(1).setCellValue(day.seatsLeft);
-         if (day.getSeats() < 0) {
+         row2.createCell(0).setCellValue("Date");
+         row2.createCell(1).setCellValue("Seats Left");
+         row2.createCell(2).setCellValue("Extra Seats Needed");
+
+         row3 = sheet3.createRow(countU++);
+         row3.createCell(0).setCellValue("Priority");
+         row3.createCell(1).setCellValue("School Name");
+         row3.createCell(2).setCellValue("Seats");
+
+         for (FinalDay day : schedule)
+         {
+            //Format the date once for all of the day's schools
+            date = day.toString();
+            for (School school : day.getSchools())
+            {
+               row = sheet.createRow(count++);
+               row.createCell(0).setCellValue(school.name);
+               row.createCell(1).setCellValue(school.getNumStudents());
+               row.createCell(2).setCellValue(date);
+            }
+            row2 = sheet2.createRow(countf++);
+            row2.createCell(0).setCellValue(date);
+            row2.createCell(1).setCellValue(day.seatsLeft);
+            if (day.getSeats() < 0)
+            {
                row2.createCell(2).setCellValue(Math.abs(day.getSeats()) + " seats");
+            }
          }
-      }
 
-      countf++;
-      row2 = sheet2.createRow(countf++);
-      row2.createCell(0).setCellValue("Total Seated");
-      row2.createCell(1).setCellValue(model.totalSeated);
-      row2 = sheet2.createRow(countf++);
-      row2.createCell(0).setCellValue("Total Schools");
-      row2.createCell(1).setCellValue(model.totalSchools);
+         countf++;
+         row2 = sheet2.createRow(countf++);
+         row2.createCell(0).setCellValue("Total Seated");
+         row2.createCell(1).setCellValue(model.totalSeated);
+         row2 = sheet2.createRow(countf++);
+         row2.createCell(0).setCellValue("Total Schools");
+         row2.createCell(1).setCellValue(model.totalSchools);
 
-      //Write unscheduled schools
-      for (School school : unscheduled)
+         //Write unscheduled schools
+         for (School school : unscheduled)
+         {
+            row3 = sheet3.createRow(countU++);
+            row3.createCell(0).setCellValue(500 - school.priority);
+            row3.createCell(1).setCellValue(school.name);
+            row3.createCell(2).setCellValue(school.totalNumStudents);
+         }
+
+         // Write the output to a file
+         try (FileOutputStream fileOut = new FileOutputStream(outputFile))
+         {
+            wb.write(fileOut);
+         }
+      } finally
       {
-         row3 = sheet3.createRow(countU++);
-         row3.createCell(0).setCellValue(500 - school.priority);
-         row3.createCell(1).setCellValue(school.name);
-         row3.createCell(2).setCellValue(school.totalNumStudents);
+         //Delete the temp files
+         wb.dispose();
+         wb.close();
       }
-
-      // Write the output to a file
-      FileOutputStream fileOut = new FileOutputStream(outputFile);
-      wb.write(fileOut);
-      fileOut.close();
-      wb.close();
    }
 
-   private void parseSchool(XSSFRow xlRow, int totalCols) {
-      XSSFCell cell;
-      School school = new School(LogicModel.schoolId++);
+   /**
+    * Makes a school from its row.
+    *
+    * @param cells The cells of the row.
+    * @param numCols The most cells in a row so far.
+    * @param lateCells Where cells past numCols are kept.
+    */
+   private void parseSchool(ArrayList<SheetReader.Cell> cells, int numCols, ArrayList<LateCell> lateCells) {
+      School school = new School(model.ids);
       int dayCount = 1;
 
-      // For every column in the row
-      for (int col = 0; col < totalCols; col++)
+      // For every cell in the row
+      for (SheetReader.Cell cell : cells)
       {
-         cell = xlRow.getCell(col);
-         if (cell != null)
+         if (cell.getColumnIndex() >= numCols)
          {
-            //SWITCH over each column
-            switch (col)
-            {
-               //Priority
-               case 0:
-                  //Subtract from 100 to reorder priority. Lowest value is now biggest value/priority.
-                  school.priority = 500.0 - Double.valueOf(cell.toString());
-                  break;
-
-               //School Name
-               case 1:
-                  school.name = cell.toString();
-                  break;
-
-               //Previously visited
-               case 2:
-                  if (cell.toString().toLowerCase().contains("no"))
-                  {
-                     school.visited = false;
-                  }
-                  break;
-
-               //Grade levels
-               case 3:
-                  //Ignoring grade levels
-                  break;
-
-               //Total num students
-               case 4:
-                  school.numStudents = new Double(cell.getNumericCellValue()).intValue();
-                  school.totalNumStudents = new Double(cell.getNumericCellValue()).intValue();
-                  totalStudentCount += school.totalNumStudents;
-                  break;
-
-               //Split
-               case 5:
-                  if (new Double(cell.getNumericCellValue()).intValue() == 1)
-                  {
-                     school.split = true;
-                  }
-                  break;
-
-               //Split
-               case 6:
-                  for (String num : cell.toString().split(","))
-                  {
-                     if (!num.equals(""))
-                     {
-                        school.splitNums.add(Double.valueOf(num.trim()).intValue());
-                     }
-                  }
-                  break;
-               //Check available dates. Cols 7 - 33 inclusive
-               default:
-                  if ((col >= dateStart && col <= dateEnd) && !cell.toString().trim().equals("")
-                          && (cell.toString().toLowerCase().equals("y")
-                          || cell.toString().equals("1")))
-                  {
-                     school.addDay(model.dayList.get(dayCount));
-                  }
-                  dayCount++;
-                  break;
-            }
+            lateCells.add(new LateCell(school, cell.copy(), dayCount));
+         }
+         else
+         {
+            readCell(school, cell, dayCount);
+         }
+         //Every cell after the split numbers moves to the next day
+         if (cell.getColumnIndex() > 6)
+         {
+            dayCount++;
          }
       }
 
+      addSchool(school);
+   }
+
+   /**
+    * Adds a school that was read to the model.
+    *
+    * @param school The school.
+    */
+   void addSchool(School school) {
       //Add school to needAdds
       if (needAddCounter < topPriority)
       {
@@ -386,6 +517,80 @@ public class ExcelHandler {
       model.schoolList.add(school);
    }
 
+   /**
+    * Reads one cell of a school's row.
+    *
+    * @param school The school.
+    * @param cell The cell.
+    * @param dayCount The day the cell is for, if it is a date.
+    */
+   private void readCell(School school, SheetReader.Cell cell, int dayCount) {
+      int col = cell.getColumnIndex();
+
+      //SWITCH over each column
+      switch (col)
+      {
+         //Priority
+         case 0:
+            //Subtract from 100 to reorder priority. Lowest value is now biggest value/priority.
+            school.priority = 500.0 - Double.valueOf(cell.toString());
+            break;
+
+         //School Name
+         case 1:
+            school.name = cell.toString();
+            break;
+
+         //Previously visited
+         case 2:
+            if (cell.toString().toLowerCase().contains("no"))
+            {
+               school.visited = false;
+            }
+            break;
+
+         //Grade levels
+         case 3:
+            //Ignoring grade levels
+            break;
+
+         //Total num students
+         case 4:
+            school.numStudents = new Double(cell.getNumericCellValue()).intValue();
+            school.totalNumStudents = new Double(cell.getNumericCellValue()).intValue();
+            totalStudentCount += school.totalNumStudents;
+            break;
+
+         //Split
+         case 5:
+            if (new Double(cell.getNumericCellValue()).intValue() == 1)
+            {
+               school.split = true;
+            }
+            break;
+
+         //Split
+         case 6:
+            for (String num : cell.toString().split(","))
+            {
+               if (!num.equals(""))
+               {
+                  school.splitNums.add(Double.valueOf(num.trim()).intValue());
+               }
+            }
+            break;
+         //Check available dates. Cols 7 - 33 inclusive
+         default:
+            if ((col >= dateStart && col <= dateEnd) && !cell.toString().trim().equals("")
+                    && (cell.toString().toLowerCase().equals("y")
+                    || cell.toString().equals("1")))
+            {
+               school.addDay(model.dayList.get(dayCount));
+            }
+            break;
+      }
+   }
+
    /**
     * Convert column name to number where A = 0
     *
@@ -0,0 +1,73 @@
+package model;
+
+/**
+ * Hands out school ids and split ids for one problem. Every LogicModel has
+ * its own, shared with its workers, so models read and solved side by side
+ * in one JVM never touch each other's ids.
+ *
+ * Ids are only handed out while a problem is read and while its schools are
+ * split, both on the thread running the model, so the counters are not
+ * synchronized.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class IdAllocator {
+
+   /**
+    * The next school id
+    */
+   private int nextId = 0;
+   /**
+    * The next split id. The parts of a split school share their parent's
+    */
+   private int nextSplitId = 0;
+
+   /**
+    * Returns a new school id.
+    *
+    * @return The id.
+    */
+   public int nextId() {
+      return nextId++;
+   }
+
+   /**
+    * Returns a new split id.
+    *
+    * @return The split id.
+    */
+   public int nextSplitId() {
+      return nextSplitId++;
+   }
+
+   /**
+    * Returns the school id the next school gets.
+    *
+    * @return The id.
+    */
+   public int peekId() {
+      return nextId;
+   }
+
+   /**
+    * Returns the split id the next school gets.
+    *
+    * @return The split id.
+    */
+   public int peekSplitId() {
+      return nextSplitId;
+   }
+
+   /**
+    * Continues the counters from the given ids, as when a problem is read
+    * back.
+    *
+    * @param id The next school id.
+    * @param splitId The next split id.
+    */
+   public void resume(int id, int splitId) {
+      this.nextId = id;
+      this.nextSplitId = splitId;
+   }
+}
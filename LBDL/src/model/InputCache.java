@@ -0,0 +1,272 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * Keeps the parsed schools and days of a workbook in a binary file next to
+ * it, so reading the same workbook again skips POI. The cache is keyed by
+ * the SHA-256 of the workbook, the start and end date columns, and the year,
+ * since the dates are read as this year's. It holds the problem as
+ * ProblemCodec writes it, and is memory mapped when read.
+ *
+ * A cache that does not match, or can not be read, is ignored and replaced
+ * the next time the workbook is parsed.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class InputCache {
+
+   /**
+    * Added to the workbook's name to get the cache's name
+    */
+   public static final String SUFFIX = ".lbdlcache";
+   /**
+    * Marks the start of a cache file
+    */
+   private static final int MAGIC = 0x4C424443;
+   /**
+    * The cache format version. Change when the header changes, or when
+    * older caches can not be trusted. 2 drops caches that may hold school
+    * ids mixed up by another model reading at the same time
+    */
+   private static final int VERSION = 2;
+   /**
+    * How much of the workbook is mapped at a time while hashing
+    */
+   private static final int HASH_CHUNK = 64 << 20;
+
+   /**
+    * Reads the schools and days of a workbook from its cache.
+    *
+    * @param model The model to read into.
+    * @param filename The workbook.
+    * @param dateStart The first date column.
+    * @param dateEnd The last date column.
+    * @return If the cache matched and was read.
+    */
+   public static boolean load(LogicModel model, String filename, int dateStart, int dateEnd) {
+      File cache = new File(filename + SUFFIX);
+      MappedByteBuffer buffer;
+      byte[] hash, saved;
+
+      if (!cache.isFile())
+      {
+         return false;
+      }
+      try (FileChannel channel = new RandomAccessFile(cache, "r").getChannel())
+      {
+         buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         hash = hash(filename);
+         if (buffer.remaining() < 12 + hash.length || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+         {
+            return false;
+         }
+         saved = new byte[buffer.getInt()];
+         if (saved.length > buffer.remaining())
+         {
+            return false;
+         }
+         buffer.get(saved);
+         if (!Arrays.equals(saved, hash) || buffer.remaining() < 12 || buffer.getInt() != dateStart
+                 || buffer.getInt() != dateEnd || buffer.getInt() != Calendar.getInstance().get(Calendar.YEAR))
+         {
+            return false;
+         }
+         ProblemCodec.read(model, new BufferInput(buffer));
+         return true;
+      } catch (IOException | RuntimeException ex)
+      {
+         System.err.println("Ignoring cache " + cache + ": " + ex);
+         model.fileRead = false;
+         return false;
+      }
+   }
+
+   /**
+    * Writes the schools and days of a workbook just read to its cache.
+    * Nothing is written if the cache can not be.
+    *
+    * @param model The model the workbook was read into.
+    * @param filename The workbook.
+    * @param dateStart The first date column.
+    * @param dateEnd The last date column.
+    */
+   public static void save(LogicModel model, String filename, int dateStart, int dateEnd) {
+      File cache = new File(filename + SUFFIX);
+      File temp = null;
+      byte[] hash;
+
+      try
+      {
+         hash = hash(filename);
+         //Write to a temp file and move it, so a cache is never half written
+         temp = File.createTempFile(cache.getName(), ".tmp", cache.getAbsoluteFile().getParentFile());
+         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+         {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(hash.length);
+            out.write(hash);
+            out.writeInt(dateStart);
+            out.writeInt(dateEnd);
+            out.writeInt(Calendar.getInstance().get(Calendar.YEAR));
+            ProblemCodec.write(model, out);
+         }
+         Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException | RuntimeException ex)
+      {
+         System.err.println("Could not write cache " + cache + ": " + ex);
+         if (temp != null)
+         {
+            temp.delete();
+         }
+      }
+   }
+
+   /**
+    * Returns the SHA-256 of a file, mapping it a chunk at a time.
+    */
+   private static byte[] hash(String filename) throws IOException {
+      MessageDigest digest;
+
+      try
+      {
+         digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException ex)
+      {
+         //Every Java platform has SHA-256
+         throw new IllegalStateException(ex);
+      }
+      try (FileChannel channel = new FileInputStream(filename).getChannel())
+      {
+         long size = channel.size();
+
+         for (long pos = 0; pos < size; pos += HASH_CHUNK)
+         {
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(HASH_CHUNK, size - pos)));
+         }
+      }
+      return digest.digest();
+   }
+
+   /**
+    * Reads ProblemCodec data straight out of a mapped buffer.
+    */
+   private static class BufferInput implements DataInput {
+
+      private final ByteBuffer buffer;
+
+      BufferInput(ByteBuffer buffer) {
+         this.buffer = buffer;
+      }
+
+      /**
+       * Throws if fewer than count bytes are left.
+       */
+      private ByteBuffer need(int count) throws EOFException {
+         if (buffer.remaining() < count)
+         {
+            throw new EOFException();
+         }
+         return buffer;
+      }
+
+      @Override
+      public void readFully(byte[] b) throws IOException {
+         readFully(b, 0, b.length);
+      }
+
+      @Override
+      public void readFully(byte[] b, int off, int len) throws IOException {
+         need(len).get(b, off, len);
+      }
+
+      @Override
+      public int skipBytes(int n) {
+         int skip = Math.max(0, Math.min(n, buffer.remaining()));
+
+         buffer.position(buffer.position() + skip);
+         return skip;
+      }
+
+      @Override
+      public boolean readBoolean() throws IOException {
+         return need(1).get() != 0;
+      }
+
+      @Override
+      public byte readByte() throws IOException {
+         return need(1).get();
+      }
+
+      @Override
+      public int readUnsignedByte() throws IOException {
+         return need(1).get() & 0xFF;
+      }
+
+      @Override
+      public short readShort() throws IOException {
+         return need(2).getShort();
+      }
+
+      @Override
+      public int readUnsignedShort() throws IOException {
+         return need(2).getShort() & 0xFFFF;
+      }
+
+      @Override
+      public char readChar() throws IOException {
+         return need(2).getChar();
+      }
+
+      @Override
+      public int readInt() throws IOException {
+         return need(4).getInt();
+      }
+
+      @Override
+      public long readLong() throws IOException {
+         return need(8).getLong();
+      }
+
+      @Override
+      public float readFloat() throws IOException {
+         return need(4).getFloat();
+      }
+
+      @Override
+      public double readDouble() throws IOException {
+         return need(8).getDouble();
+      }
+
+      @Override
+      public String readLine() {
+         //ProblemCodec never writes lines
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String readUTF() throws IOException {
+         return DataInputStream.readUTF(this);
+      }
+   }
+}
@@ -0,0 +1,358 @@
+package model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+
+/**
+ * Reads the schedule from a JSON problem, for tools that do not make
+ * workbooks:
+ *
+ * <pre>
+ * {
+ *   "days": [{"date": "Tue 3/1", "seats": 120}, ...],
+ *   "schools": [{"name": "Lincoln", "priority": 1, "students": 60,
+ *                "visited": true, "split": [30, 30], "days": [0, 2]}, ...]
+ * }
+ * </pre>
+ *
+ * The fields mean the same as the workbook's columns. A date is M/D, with or
+ * without the weekday in front as in the workbook. A school's days are
+ * positions in the days list, and a school with split numbers can be split.
+ * Every day is read, so the start and end columns are not used.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class JsonReader {
+
+   private final ExcelHandler handler;
+   private final LogicModel model;
+   private String text;
+   private int pos;
+
+   /**
+    * Creates a reader for one file.
+    *
+    * @param handler The handler whose days and schools are read.
+    * @param model The model to read into.
+    */
+   JsonReader(ExcelHandler handler, LogicModel model) {
+      this.handler = handler;
+      this.model = model;
+   }
+
+   /**
+    * Returns if a file is a JSON problem, by its extension.
+    *
+    * @param filename The file.
+    * @return True for .json files.
+    */
+   public static boolean isJson(String filename) {
+      return filename.toLowerCase().endsWith(".json");
+   }
+
+   /**
+    * Reads the days and schools of a file into the model.
+    *
+    * @param filename The file.
+    * @return The number of schools read.
+    * @throws IOException If the file can not be read or is not JSON.
+    * @throws InvalidFormatException If the days are malformed.
+    */
+   int read(String filename) throws IOException, InvalidFormatException {
+      HashMap<Integer, String> dates = new HashMap<>(), seats = new HashMap<>();
+      Map<?, ?> problem, fields;
+      List<?> days, schools;
+      School school;
+      Day found;
+      String date;
+      int col;
+
+      text = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+      pos = 0;
+      problem = (Map<?, ?>) as(Map.class, value(), "the problem");
+      skipSpace();
+      if (pos < text.length())
+      {
+         throw error("Text after the problem");
+      }
+      days = (List<?>) as(List.class, problem.get("days"), "days");
+      schools = (List<?>) as(List.class, problem.get("schools"), "schools");
+
+      //Lay the days out as the workbook's date and seat rows
+      col = handler.dateStart;
+      for (Object day : days)
+      {
+         fields = (Map<?, ?>) as(Map.class, day, "a day");
+         date = ((String) as(String.class, fields.get("date"), "date")).trim();
+         //The date is read from after the weekday
+         dates.put(col, date.indexOf(' ') < 0 ? "- " + date : date);
+         seats.put(col, as(Double.class, fields.get("seats"), "seats").toString());
+         col++;
+      }
+      handler.dateEnd = col - 1;
+      model.resetModel();
+      handler.initializeDayList(dates, seats);
+
+      for (Object entry : schools)
+      {
+         fields = (Map<?, ?>) as(Map.class, entry, "a school");
+         school = new School(model.ids);
+         school.name = (String) as(String.class, fields.get("name"), "name");
+         if (fields.get("priority") != null)
+         {
+            school.priority = 500.0 - (Double) as(Double.class, fields.get("priority"), "priority");
+         }
+         if (Boolean.FALSE.equals(fields.get("visited")))
+         {
+            school.visited = false;
+         }
+         school.numStudents = ((Double) as(Double.class, fields.get("students"), "students")).intValue();
+         school.totalNumStudents = school.numStudents;
+         handler.totalStudentCount += school.totalNumStudents;
+         if (fields.get("split") != null)
+         {
+            for (Object num : (List<?>) as(List.class, fields.get("split"), "split"))
+            {
+               school.splitNums.add(((Double) as(Double.class, num, "split")).intValue());
+            }
+            school.split = !school.splitNums.isEmpty();
+         }
+         if (fields.get("days") != null)
+         {
+            for (Object day : (List<?>) as(List.class, fields.get("days"), "days"))
+            {
+               found = model.dayList.get(((Double) as(Double.class, day, "days")).intValue() + 1);
+               if (found == null)
+               {
+                  throw new IOException("No day " + day + " for " + school.name);
+               }
+               school.addDay(found);
+            }
+         }
+         handler.addSchool(school);
+      }
+      text = null;
+      return schools.size();
+   }
+
+   /**
+    * Returns the value if it is of the type.
+    *
+    * @throws IOException If it is missing or of another type.
+    */
+   private static Object as(Class<?> type, Object value, String name) throws IOException {
+      if (!type.isInstance(value))
+      {
+         throw new IOException("Expected " + name + " to be " + type.getSimpleName()
+                 + (value == null ? " but it is missing" : ""));
+      }
+      return value;
+   }
+
+   /**
+    * Parses the value at the position: a map, list, String, Double, Boolean
+    * or null.
+    */
+   private Object value() throws IOException {
+      char c;
+
+      skipSpace();
+      if (pos >= text.length())
+      {
+         throw error("Unexpected end");
+      }
+      c = text.charAt(pos);
+      switch (c)
+      {
+         case '{':
+            return object();
+         case '[':
+            return array();
+         case '"':
+            return string();
+         case 't':
+            return word("true", Boolean.TRUE);
+         case 'f':
+            return word("false", Boolean.FALSE);
+         case 'n':
+            return word("null", null);
+         default:
+            return number();
+      }
+   }
+
+   private HashMap<String, Object> object() throws IOException {
+      HashMap<String, Object> map = new HashMap<>();
+      String key;
+
+      pos++;
+      skipSpace();
+      if (take('}'))
+      {
+         return map;
+      }
+      do
+      {
+         skipSpace();
+         if (pos >= text.length() || text.charAt(pos) != '"')
+         {
+            throw error("Expected a name");
+         }
+         key = string();
+         skipSpace();
+         if (!take(':'))
+         {
+            throw error("Expected :");
+         }
+         map.put(key, value());
+         skipSpace();
+      } while (take(','));
+      if (!take('}'))
+      {
+         throw error("Expected , or }");
+      }
+      return map;
+   }
+
+   private ArrayList<Object> array() throws IOException {
+      ArrayList<Object> list = new ArrayList<>();
+
+      pos++;
+      skipSpace();
+      if (take(']'))
+      {
+         return list;
+      }
+      do
+      {
+         list.add(value());
+         skipSpace();
+      } while (take(','));
+      if (!take(']'))
+      {
+         throw error("Expected , or ]");
+      }
+      return list;
+   }
+
+   private String string() throws IOException {
+      StringBuilder builder = new StringBuilder();
+      char c;
+
+      pos++;
+      while (pos < text.length())
+      {
+         c = text.charAt(pos++);
+         if (c == '"')
+         {
+            return builder.toString();
+         }
+         if (c != '\\')
+         {
+            builder.append(c);
+            continue;
+         }
+         if (pos >= text.length())
+         {
+            break;
+         }
+         c = text.charAt(pos++);
+         switch (c)
+         {
+            case 'b':
+               builder.append('\b');
+               break;
+            case 'f':
+               builder.append('\f');
+               break;
+            case 'n':
+               builder.append('\n');
+               break;
+            case 'r':
+               builder.append('\r');
+               break;
+            case 't':
+               builder.append('\t');
+               break;
+            case 'u':
+               if (pos + 4 > text.length())
+               {
+                  throw error("Bad escape");
+               }
+               try
+               {
+                  builder.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+               } catch (NumberFormatException ex)
+               {
+                  throw error("Bad escape");
+               }
+               pos += 4;
+               break;
+            default:
+               builder.append(c);
+               break;
+         }
+      }
+      throw error("Unterminated string");
+   }
+
+   private Double number() throws IOException {
+      int start = pos;
+      char c;
+
+      while (pos < text.length())
+      {
+         c = text.charAt(pos);
+         if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E')
+         {
+            break;
+         }
+         pos++;
+      }
+      try
+      {
+         return Double.valueOf(text.substring(start, pos));
+      } catch (NumberFormatException ex)
+      {
+         pos = start;
+         throw error("Unexpected character");
+      }
+   }
+
+   private Object word(String word, Object value) throws IOException {
+      if (!text.startsWith(word, pos))
+      {
+         throw error("Unexpected character");
+      }
+      pos += word.length();
+      return value;
+   }
+
+   private boolean take(char c) {
+      if (pos < text.length() && text.charAt(pos) == c)
+      {
+         pos++;
+         return true;
+      }
+      return false;
+   }
+
+   private void skipSpace() {
+      while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+      {
+         pos++;
+      }
+   }
+
+   private IOException error(String message) {
+      return new IOException(message + " at character " + pos);
+   }
+}
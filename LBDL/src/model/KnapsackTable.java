@@ -0,0 +1,247 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A reusable 0/1 knapsack table. Only one row of values is kept; which items
+ * were taken at each weight is recorded in a bitmap so the solution can still
+ * be backtracked. Arrays only grow, so one table serves every day solve.
+ *
+ * An item can have copies. It is filled as rows of 1, 2, 4 ... copies, so k
+ * copies cost about log2(k) rows instead of k.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class KnapsackTable {
+
+   /**
+    * Values closer than this are treated as equal when marking a take.
+    */
+   protected static final double EPSILON = .01;
+   /**
+    * The best value for every weight. Rolled over item by item.
+    */
+   private double[] values = new double[0];
+   /**
+    * One bit per (row, weight). Set if the row improved that weight.
+    */
+   private long[] taken = new long[0];
+   /**
+    * The weight of every item. Index 0 is unused.
+    */
+   private int[] itemWeights = new int[1];
+   /**
+    * The value of every item. Index 0 is unused.
+    */
+   private double[] itemValues = new double[1];
+   /**
+    * The number of copies of every item. Index 0 is unused.
+    */
+   private int[] itemCopies = new int[1];
+   /**
+    * The first row of every item, and the number of rows after the last.
+    * Index 0 is unused.
+    */
+   private int[] rowStart = new int[2];
+   /**
+    * The number of copies every row takes.
+    */
+   private int[] rowCopies = new int[0];
+   /**
+    * The number of items in the current solve.
+    */
+   private int items;
+   /**
+    * The capacity of the current solve.
+    */
+   private int capacity;
+   /**
+    * The number of rows in the current solve.
+    */
+   private int rows;
+
+   /**
+    * Prepares the table for a new solve, growing the arrays if needed.
+    *
+    * @param numItems The total number of items.
+    * @param numWeights The total weight to carry.
+    */
+   public void reset(int numItems, int numWeights) {
+      items = numItems;
+      capacity = numWeights;
+
+      if (values.length < numWeights + 1)
+      {
+         values = new double[numWeights + 1];
+      }
+      if (itemWeights.length < numItems + 1)
+      {
+         itemWeights = new int[numItems + 1];
+         itemValues = new double[numItems + 1];
+         itemCopies = new int[numItems + 1];
+         rowStart = new int[numItems + 2];
+      }
+
+      Arrays.fill(values, 0, numWeights + 1, 0.0);
+   }
+
+   /**
+    * Sets the weight and value of an item.
+    *
+    * @param item The item, starting at 1.
+    * @param weight The weight of the item.
+    * @param value The value of the item.
+    */
+   public void setItem(int item, int weight, double value) {
+      setItem(item, weight, value, 1);
+   }
+
+   /**
+    * Sets the weight, value and number of copies of an item. Any number of
+    * the copies can be taken.
+    *
+    * @param item The item, starting at 1.
+    * @param weight The weight of one copy.
+    * @param value The value of one copy.
+    * @param copies The number of copies, at least 1.
+    */
+   public void setItem(int item, int weight, double value, int copies) {
+      itemWeights[item] = weight;
+      itemValues[item] = value;
+      itemCopies[item] = copies;
+   }
+
+   /**
+    * Runs the dynamic program over all items.
+    */
+   public void fill() {
+      int item, weight, sWeight, row, left, copies, words;
+      long bit;
+      double sValue, newValue, prevValue;
+
+      //Lay out the rows, one per power of two of every item's copies
+      rows = 0;
+      for (item = 1; item <= items; item++)
+      {
+         rowStart[item] = rows;
+         for (left = itemCopies[item], copies = 1; left > 0; left -= copies, copies <<= 1)
+         {
+            copies = Math.min(copies, left);
+            rows++;
+         }
+      }
+      rowStart[items + 1] = rows;
+      if (rowCopies.length < rows)
+      {
+         rowCopies = new int[rows];
+      }
+      words = (int) (((long) rows * (capacity + 1) + 63) >>> 6);
+      if (taken.length < words)
+      {
+         taken = new long[words];
+      }
+      Arrays.fill(taken, 0, words, 0L);
+
+      for (item = 1, row = 0; item <= items; item++)
+      {
+         for (left = itemCopies[item], copies = 1; left > 0; left -= copies, copies <<= 1, row++)
+         {
+            copies = Math.min(copies, left);
+            rowCopies[row] = copies;
+            sWeight = itemWeights[item] * copies;
+            sValue = itemValues[item] * copies;
+            bit = (long) row * (capacity + 1);
+
+            //Go from the top so each row is only counted once
+            for (weight = capacity; weight >= sWeight && weight > 0; weight--)
+            {
+               newValue = values[weight - sWeight] + sValue;
+               prevValue = values[weight];
+               if (newValue > prevValue)
+               {
+                  values[weight] = newValue;
+                  if (newValue - prevValue >= EPSILON)
+                  {
+                     taken[(int) ((bit + weight) >>> 6)] |= 1L << (bit + weight);
+                  }
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns if the item was taken at the given weight.
+    *
+    * @param item The item, starting at 1.
+    * @param weight The weight.
+    * @return True if the item improved the value at this weight.
+    */
+   public boolean isTaken(int item, int weight) {
+      return getCopies(item, weight) > 0;
+   }
+
+   /**
+    * Returns how many copies of the item were taken at the given weight.
+    * The weight left for the items before is the weight less the copies
+    * taken.
+    *
+    * @param item The item, starting at 1.
+    * @param weight The weight.
+    * @return The number of copies taken.
+    */
+   public int getCopies(int item, int weight) {
+      int count = 0;
+      long bit;
+
+      //Walk the item's rows back as the table was filled
+      for (int row = rowStart[item + 1] - 1; row >= rowStart[item] && weight > 0; row--)
+      {
+         bit = (long) row * (capacity + 1) + weight;
+         if ((taken[(int) (bit >>> 6)] & (1L << bit)) != 0)
+         {
+            count += rowCopies[row];
+            weight -= rowCopies[row] * itemWeights[item];
+         }
+      }
+      return count;
+   }
+
+   /**
+    * Returns the best value found for the given weight.
+    *
+    * @param weight The weight.
+    * @return The best value.
+    */
+   public double getValue(int weight) {
+      return values[weight];
+   }
+
+   /**
+    * Returns the number of items in the current solve.
+    *
+    * @return The number of items.
+    */
+   public int getItems() {
+      return items;
+   }
+
+   /**
+    * Returns the number of rows of the current solve, after fill().
+    *
+    * @return The number of rows.
+    */
+   public int getRows() {
+      return rows;
+   }
+
+   /**
+    * Returns the capacity of the current solve.
+    *
+    * @return The capacity.
+    */
+   public int getCapacity() {
+      return capacity;
+   }
+}
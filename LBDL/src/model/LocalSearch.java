@@ -0,0 +1,543 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Improves a finished schedule with simulated annealing. Three moves are
+ * tried: move one part to another day, swap two parts between days, and
+ * swap an unscheduled school in for a scheduled one (or into free seats).
+ * Every move is scored from the few numbers it changes, so a step costs the
+ * same no matter how big the schedule is.
+ *
+ * The score is seated students first, then the priority of the seated
+ * schools, then how much the free seats are bunched onto few days so bigger
+ * schools can fit later. Pinned schools never move, must add schools are
+ * never taken out, and split schools only move part by part so they stay
+ * whole.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class LocalSearch {
+
+   /**
+    * The temperature the search cools down to, in students
+    */
+   private static final double END_TEMPERATURE = .05;
+   /**
+    * The schools that can move or be swapped in
+    */
+   private final School[] items;
+   /**
+    * True if the item is a school on its own, so it can be swapped in or out
+    */
+   private final boolean[] whole;
+   /**
+    * True if the item is a must add school
+    */
+   private final boolean[] mustAdd;
+   /**
+    * The days each item can come, as day positions
+    */
+   private final int[][] availDays;
+   /**
+    * The days, in the order of the schedule
+    */
+   private final Day[] days;
+   /**
+    * The schedule that was improved
+    */
+   private final BestSchedule start;
+   /**
+    * Seats left on each day
+    */
+   private final int[] left;
+   /**
+    * The day position of each item. -1 if unscheduled
+    */
+   private final int[] dayOf;
+   /**
+    * The items on each day, and where each item is in its day's list
+    */
+   private final int[][] members;
+   private final int[] memberCount;
+   private final int[] memberPos;
+   /**
+    * The scheduled items, and where each item is in the list
+    */
+   private final int[] scheduled;
+   private int scheduledCount;
+   /**
+    * The unscheduled items, and where each item is in the list. Shares
+    * listPos with scheduled since an item is only in one of them
+    */
+   private final int[] unscheduled;
+   private int unscheduledCount;
+   private final int[] listPos;
+   /**
+    * Weights that keep priority and slack below one student
+    */
+   private final double priorityWeight, slackWeight;
+   private final Random rand;
+   private int seated;
+   private double score;
+   private double bestScore;
+   private int bestSeated;
+   private int[] bestDayOf;
+   /**
+    * The starting day of each item, seats and score
+    */
+   private final int[] startDayOf;
+   private final int startSeated;
+   private final double startScore;
+   private long moves, accepted;
+
+   /**
+    * Sets up the search on a schedule.
+    *
+    * @param start The schedule to improve.
+    * @param dayList The days, keyed by index.
+    * @param groups The split school index of the run.
+    * @param seed The seed for the random moves.
+    */
+   public LocalSearch(BestSchedule start, Map<Integer, Day> dayList, SplitIndex groups, long seed) {
+      ArrayList<School> found = new ArrayList<>();
+      ArrayList<Integer> foundDay = new ArrayList<>();
+      List<FinalDay> schedule = start.getSchedule();
+      double priorityTotal = 0, slackTotal = 0;
+      int[] avail = new int[schedule.size()];
+      School school;
+      int count, d;
+
+      this.start = start;
+      this.rand = new Random(seed);
+      days = new Day[schedule.size()];
+      left = new int[schedule.size()];
+
+      for (d = 0; d < schedule.size(); d++)
+      {
+         days[d] = dayList.get(schedule.get(d).index);
+         left[d] = schedule.get(d).seatsLeft;
+         slackTotal += (double) days[d].getMaxSeats() * days[d].getMaxSeats();
+
+         //Pinned schools only take up seats
+         for (School sch : schedule.get(d).getSchools())
+         {
+            if (!days[d].isPinned(sch) && groups.contains(sch))
+            {
+               found.add(sch);
+               foundDay.add(d);
+               seated += sch.numStudents;
+               //Taken off again when the item is added to the day
+               left[d] += sch.numStudents;
+            }
+         }
+      }
+      for (School sch : start.getUnscheduled())
+      {
+         if (groups.contains(sch) && groups.getParts(groups.groupOf(sch)).length == 1)
+         {
+            found.add(sch);
+            foundDay.add(-1);
+         }
+      }
+
+      items = found.toArray(new School[0]);
+      whole = new boolean[items.length];
+      mustAdd = new boolean[items.length];
+      availDays = new int[items.length][];
+      dayOf = new int[items.length];
+      memberPos = new int[items.length];
+      listPos = new int[items.length];
+      scheduled = new int[items.length];
+      unscheduled = new int[items.length];
+      members = new int[days.length][4];
+      memberCount = new int[days.length];
+
+      for (int i = 0; i < items.length; i++)
+      {
+         school = items[i];
+         whole[i] = groups.getParts(groups.groupOf(school)).length == 1;
+         mustAdd[i] = groups.getMustAddKey(school) >= 0;
+         priorityTotal += Math.abs(school.priority);
+
+         count = 0;
+         for (d = 0; d < days.length; d++)
+         {
+            if (school.isAvailable(days[d]))
+            {
+               avail[count++] = d;
+            }
+         }
+         availDays[i] = Arrays.copyOf(avail, count);
+
+         dayOf[i] = -1;
+         if (foundDay.get(i) >= 0)
+         {
+            addMember(i, foundDay.get(i));
+            listPos[i] = scheduledCount;
+            scheduled[scheduledCount++] = i;
+         }
+         else
+         {
+            listPos[i] = unscheduledCount;
+            unscheduled[unscheduledCount++] = i;
+         }
+      }
+
+      priorityWeight = .5 / (priorityTotal + 1);
+      slackWeight = .25 / (slackTotal + 1);
+
+      for (int i = 0; i < items.length; i++)
+      {
+         if (dayOf[i] >= 0)
+         {
+            score += items[i].numStudents + priorityWeight * items[i].priority;
+         }
+      }
+      for (d = 0; d < days.length; d++)
+      {
+         score += slackWeight * square(left[d]);
+      }
+      bestScore = startScore = score;
+      bestSeated = startSeated = seated;
+      bestDayOf = dayOf.clone();
+      startDayOf = dayOf.clone();
+   }
+
+   /**
+    * Runs the search, cooling from about a quarter of an average school
+    * down to END_TEMPERATURE.
+    *
+    * @param steps The number of moves to try.
+    * @return True if a better schedule was found.
+    */
+   public boolean run(long steps) {
+      double temperature, cooling, total = 0;
+
+      if (scheduledCount == 0 || steps <= 0)
+      {
+         return false;
+      }
+      for (School school : items)
+      {
+         total += school.numStudents;
+      }
+      temperature = Math.max(1, total / items.length / 4);
+      cooling = Math.pow(END_TEMPERATURE / temperature, 1.0 / steps);
+
+      for (long step = 0; step < steps; step++)
+      {
+         switch (rand.nextInt(unscheduledCount > 0 ? 3 : 2))
+         {
+            case 0:
+               tryMove(temperature);
+               break;
+            case 1:
+               trySwap(temperature);
+               break;
+            default:
+               trySwapIn(temperature);
+               break;
+         }
+         moves++;
+         temperature *= cooling;
+      }
+      return improved();
+   }
+
+   /**
+    * Moves a scheduled part to another of its days.
+    */
+   private void tryMove(double temperature) {
+      int i = scheduled[rand.nextInt(scheduledCount)];
+      int from = dayOf[i];
+      int to = pickDay(i);
+      int size = items[i].numStudents;
+      double delta;
+
+      if (to < 0 || to == from || left[to] < size)
+      {
+         return;
+      }
+      delta = slackWeight * (square(left[from] + size) - square(left[from])
+              + square(left[to] - size) - square(left[to]));
+      if (accept(delta, temperature))
+      {
+         removeMember(i);
+         addMember(i, to);
+         commit(delta);
+      }
+   }
+
+   /**
+    * Swaps two scheduled parts on different days.
+    */
+   private void trySwap(double temperature) {
+      int i = scheduled[rand.nextInt(scheduledCount)];
+      int a = dayOf[i];
+      int b = pickDay(i);
+      int j, change;
+      double delta;
+
+      if (b < 0 || b == a || memberCount[b] == 0)
+      {
+         return;
+      }
+      j = members[b][rand.nextInt(memberCount[b])];
+      change = items[i].numStudents - items[j].numStudents;
+      if (!items[j].isAvailable(days[a]) || left[a] + change < 0 || left[b] - change < 0)
+      {
+         return;
+      }
+      delta = slackWeight * (square(left[a] + change) - square(left[a])
+              + square(left[b] - change) - square(left[b]));
+      if (accept(delta, temperature))
+      {
+         removeMember(i);
+         removeMember(j);
+         addMember(i, b);
+         addMember(j, a);
+         commit(delta);
+      }
+   }
+
+   /**
+    * Puts an unscheduled school on one of its days, taking out a scheduled
+    * school if the day is full.
+    */
+   private void trySwapIn(double temperature) {
+      int u = unscheduled[rand.nextInt(unscheduledCount)];
+      int d = pickDay(u);
+      int j = -1, size, room;
+      double delta;
+
+      if (d < 0)
+      {
+         return;
+      }
+      size = items[u].numStudents;
+      room = left[d];
+      if (room < size)
+      {
+         if (memberCount[d] == 0)
+         {
+            return;
+         }
+         j = members[d][rand.nextInt(memberCount[d])];
+         if (!whole[j] || mustAdd[j] || room + items[j].numStudents < size)
+         {
+            return;
+         }
+         room += items[j].numStudents;
+      }
+
+      delta = size + priorityWeight * items[u].priority
+              + slackWeight * (square(room - size) - square(left[d]));
+      if (j >= 0)
+      {
+         delta -= items[j].numStudents + priorityWeight * items[j].priority;
+      }
+      if (accept(delta, temperature))
+      {
+         if (j >= 0)
+         {
+            removeMember(j);
+            toUnscheduled(j);
+            seated -= items[j].numStudents;
+         }
+         addMember(u, d);
+         toScheduled(u);
+         seated += size;
+         commit(delta);
+      }
+   }
+
+   /**
+    * Returns a random day the item can come, or -1 if it has none.
+    */
+   private int pickDay(int i) {
+      int[] avail = availDays[i];
+
+      return avail.length == 0 ? -1 : avail[rand.nextInt(avail.length)];
+   }
+
+   /**
+    * Decides if a move is taken. Better moves always are, worse ones less
+    * often as the search cools.
+    */
+   private boolean accept(double delta, double temperature) {
+      return delta >= 0 || rand.nextDouble() < Math.exp(delta / temperature);
+   }
+
+   /**
+    * Adds a move's change to the score and keeps the schedule if it is the
+    * best so far.
+    */
+   private void commit(double delta) {
+      accepted++;
+      score += delta;
+      if (seated > bestSeated || (seated == bestSeated && score > bestScore + 1e-12))
+      {
+         bestScore = score;
+         bestSeated = seated;
+         System.arraycopy(dayOf, 0, bestDayOf, 0, dayOf.length);
+      }
+   }
+
+   private void addMember(int i, int d) {
+      if (memberCount[d] == members[d].length)
+      {
+         members[d] = Arrays.copyOf(members[d], members[d].length * 2);
+      }
+      memberPos[i] = memberCount[d];
+      members[d][memberCount[d]++] = i;
+      dayOf[i] = d;
+      left[d] -= items[i].numStudents;
+   }
+
+   private void removeMember(int i) {
+      int d = dayOf[i];
+      int last = members[d][--memberCount[d]];
+
+      members[d][memberPos[i]] = last;
+      memberPos[last] = memberPos[i];
+      dayOf[i] = -1;
+      left[d] += items[i].numStudents;
+   }
+
+   /**
+    * Moves an item from the scheduled list to the unscheduled list.
+    */
+   private void toUnscheduled(int i) {
+      int last = scheduled[--scheduledCount];
+
+      scheduled[listPos[i]] = last;
+      listPos[last] = listPos[i];
+      listPos[i] = unscheduledCount;
+      unscheduled[unscheduledCount++] = i;
+   }
+
+   /**
+    * Moves an item from the unscheduled list to the scheduled list.
+    */
+   private void toScheduled(int i) {
+      int last = unscheduled[--unscheduledCount];
+
+      unscheduled[listPos[i]] = last;
+      listPos[last] = listPos[i];
+      listPos[i] = scheduledCount;
+      scheduled[scheduledCount++] = i;
+   }
+
+   /**
+    * Returns if the best schedule found seats more students, or the same
+    * students with higher priority.
+    *
+    * @return True if the search found a better schedule.
+    */
+   public boolean improved() {
+      return bestSeated > startSeated || (bestSeated == startSeated && bestScore > startScore + 1e-9);
+   }
+
+   /**
+    * Builds the best schedule found. Days keep their pinned schools and the
+    * order their schools were scheduled in, with new schools at the end.
+    *
+    * @return The schedule, or the starting one if nothing better was found.
+    */
+   public BestSchedule getResult() {
+      IdentityHashMap<School, Integer> item = new IdentityHashMap<>();
+      ArrayList<FinalDay> schedule = new ArrayList<>();
+      ArrayList<School> schools, unsched = new ArrayList<>();
+      FinalDay old, day;
+      Integer i;
+      int seatsLeft, numSchools = start.getSchools();
+
+      if (!improved())
+      {
+         return start;
+      }
+      for (int num = 0; num < items.length; num++)
+      {
+         item.put(items[num], num);
+      }
+
+      for (int d = 0; d < days.length; d++)
+      {
+         old = start.getSchedule().get(d);
+         schools = new ArrayList<>();
+         seatsLeft = old.seatsLeft;
+         for (School sch : old.getSchools())
+         {
+            i = item.get(sch);
+            if (i == null || bestDayOf[i] == d)
+            {
+               schools.add(sch);
+            }
+            else
+            {
+               seatsLeft += sch.numStudents;
+            }
+         }
+         schedule.add(new FinalDay(old.date, schools, old.index, seatsLeft));
+      }
+      for (int num = 0; num < items.length; num++)
+      {
+         if (bestDayOf[num] >= 0 && bestDayOf[num] != startDayOf[num])
+         {
+            day = schedule.get(bestDayOf[num]);
+            day.getSchools().add(items[num]);
+            day.seatsLeft -= items[num].numStudents;
+         }
+      }
+
+      //Only schools on their own are swapped in or out
+      for (School sch : start.getUnscheduled())
+      {
+         i = item.get(sch);
+         if (i == null || bestDayOf[i] < 0)
+         {
+            unsched.add(sch);
+         }
+         else
+         {
+            numSchools++;
+         }
+      }
+      for (int num = 0; num < items.length; num++)
+      {
+         if (bestDayOf[num] < 0 && startDayOf[num] >= 0)
+         {
+            unsched.add(items[num]);
+            numSchools--;
+         }
+      }
+
+      return new BestSchedule(start.getSeated() + bestSeated - startSeated, numSchools, schedule, unsched,
+              BestSchedule.NO_SEED);
+   }
+
+   /**
+    * Returns the number of moves tried.
+    */
+   public long getMoves() {
+      return moves;
+   }
+
+   /**
+    * Returns the number of moves taken.
+    */
+   public long getAccepted() {
+      return accepted;
+   }
+
+   private static double square(int value) {
+      return (double) value * value;
+   }
+}
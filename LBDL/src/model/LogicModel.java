@@ -1,9 +1,13 @@
 package model;
 
 import java.io.*;
-import java.util.Observable;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 
@@ -13,7 +17,7 @@ import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
  * @author Daniel Yao
  * @year 2016
  */
-public class LogicModel extends Observable {
+public class LogicModel {
 
    /**
     * The map of available days. Column index is the key
@@ -36,16 +40,38 @@ public class LogicModel extends Observable {
     */
    public String notifyText;
    /**
-    * An id counter for new schools.
+    * Hands out the ids of this problem's schools. Shared by workers.
     */
-   protected static int schoolId = 0;
+   protected final IdAllocator ids;
+   
    /**
-    * An split id counter for split schools.
+    * The seed every restart's seed is derived from.
     */
-   protected static int schoolSplitId = 0;
-   
-   private int currentSeed = 0;
-   private int highestSeed = 0;
+   private long masterSeed;
+   /**
+    * True if the master seed was set, so it is not taken from the clock.
+    */
+   private boolean seedSet = false;
+   /**
+    * The seed of the restart being run.
+    */
+   private long iterationSeed = BestSchedule.NO_SEED;
+   /**
+    * The number of the restart the days now hold, or NO_RESTART
+    */
+   private long iterationRestart = BestSchedule.NO_RESTART;
+   /**
+    * Picks the day orders of the restart being run.
+    */
+   private Random iterationRandom = new Random();
+   /**
+    * Times this model's solver phases. Each worker has its own.
+    */
+   private final SolverMetrics.Recorder metrics = new SolverMetrics.Recorder();
+   /**
+    * Where notifications for the gui go. Workers share their parent's.
+    */
+   private final ModelEvents events;
 
    /**
     * Determines if the file has been read.
@@ -56,7 +82,39 @@ public class LogicModel extends Observable {
       dayList = new HashMap<>();
       schoolList = new ArrayList<>();
       xlHandler = new ExcelHandler(this);
+      events = new ModelEvents();
       seated = 0;
+      best = new AtomicReference<>();
+      cancelled = new AtomicBoolean();
+      ids = new IdAllocator();
+   }
+
+   /**
+    * Creates a worker that schedules on its own copy of the parent's days.
+    * The school lists are shared and only read.
+    *
+    * @param parent The model to copy from.
+    */
+   private LogicModel(LogicModel parent) {
+      dayList = new HashMap<>();
+      for (Entry<Integer, Day> entry : parent.dayList.entrySet())
+      {
+         dayList.put(entry.getKey(), new Day(entry.getValue()));
+      }
+      xlHandler = parent.xlHandler;
+      events = parent.events;
+      TotalDays = parent.TotalDays;
+      schoolList = parent.schoolList;
+      schoolListSplit = parent.schoolListSplit;
+      toAdd = parent.toAdd;
+      preScheduled = parent.preScheduled;
+      mustAdd = parent.mustAdd;
+      splitGroups = parent.splitGroups;
+      reduction = parent.reduction;
+      best = parent.best;
+      cancelled = parent.cancelled;
+      ids = parent.ids;
+      masterSeed = parent.masterSeed;
    }
 
    public enum NotifyCmd {
@@ -64,13 +122,44 @@ public class LogicModel extends Observable {
    }
 
    /**
-    * Notifies the gui with the given object.
+    * The engines knapsack() can run.
+    */
+   public enum SolverMode {
+      /** Random restarts of the per day knapsack */
+      RESTARTS,
+      /** Branch and bound over the whole schedule */
+      EXACT,
+      /**
+       * Random restarts until a time budget or seat target is reached. With
+       * no time budget it also stops after the set number of restarts
+       */
+      ANYTIME;
+   }
+
+   /**
+    * Notifies the gui with the given object. Never waits for the gui, and
+    * progress is coalesced until the gui drains it.
     *
     * @param cmd The command to perform - 1 : Notify Text - 2 : Update List
     */
    public void notify(NotifyCmd cmd) {
-      setChanged();
-      notifyObservers(cmd);
+      if (cmd == NotifyCmd.PROG)
+      {
+         events.progress(index);
+      }
+      else
+      {
+         events.post(cmd, notifyText);
+      }
+   }
+
+   /**
+    * Returns the notifications not yet shown.
+    *
+    * @return The model's events.
+    */
+   public ModelEvents getEvents() {
+      return events;
    }
 
    /**
@@ -81,6 +170,8 @@ public class LogicModel extends Observable {
     * @param end The end date.
     */
    public void readExcelFile(String filename, String start, String end) {
+      long startTime = System.nanoTime();
+
       try
       {
          fileRead = false;
@@ -91,23 +182,29 @@ public class LogicModel extends Observable {
          notifyText = "Error: File contains an invalid format.";
          notify(NotifyCmd.ERROR);
       }
+      SolverMetrics.get().record(SolverMetrics.Phase.PARSE, startTime);
    }
 
    /**
     * Writes the schedule to an excel file.
     *
     * @param outputFile The name of the output file.
+    * @return True if the file was written.
     */
-   public void writeExcelFile(String outputFile) {
+   public boolean writeExcelFile(String outputFile) {
+      boolean written = false;
+
       try
       {
          xlHandler.writeXLFile(outputFile);
          notifyText = "File Written!";
+         written = true;
       } catch (IOException e)
       {
          notifyText = "Error: Could not write to file.";
       }
       notify(NotifyCmd.LOG);
+      return written;
    }
 
    /**
@@ -145,92 +242,100 @@ public class LogicModel extends Observable {
     * @param availSchools The list of schools that are available.
     * @param numWeights The number of seats the day has left.
     */
-   private Double[][] fillTable(Double[][] dynTable, ArrayList<School> availSchools, int numWeights) {
-      //sIndex = school, sWeight = # kids per school, sValue = priority
-      int item, weight, sWeight, sIndex;
-      double sValue, newValue, prevValue;
-      //System.out.println("items: " + availSchools.size() + "\nweights: " + numWeights);
+   protected KnapsackTable fillTable(KnapsackTable dynTable, ArrayList<School> availSchools, int numWeights) {
+      //sWeight = # kids per school, sValue = priority, copies = # alike schools
+      School school;
+      int item, numItems;
+      long startTime = System.nanoTime();
 
-      //FOR all items starting at 1 (inclusive) and school in list starting at 0
-      for (item = 1, sIndex = 0; item <= availSchools.size(); item++, sIndex++)
-      {
-         sWeight = availSchools.get(sIndex).numStudents;
-         sValue = availSchools.get(sIndex).priority;
+      numItems = groupItems(availSchools);
+      dynTable.reset(numItems, numWeights);
 
-         //FOR all weights
-         for (weight = 1; weight <= numWeights; weight++)
-         {
-            //IF item can be part of solution
-            if (sWeight <= weight)
-            {
-               newValue = dynTable[item - 1][weight - sWeight] + sValue;
-               prevValue = dynTable[item - 1][weight];
-               if (newValue > prevValue)
-               {
-                  dynTable[item][weight] = newValue;
-               }
-               else
-               {
-                  dynTable[item][weight] = prevValue;
-               }
-            }
-            else
-            {
-               dynTable[item][weight] = dynTable[item - 1][weight];
-            }
-         }
+      //FOR all items starting at 1 (inclusive), from the first school of each
+      for (item = 1; item <= numItems; item++)
+      {
+         school = availSchools.get(itemOrder[itemStart[item - 1]]);
+         dynTable.setItem(item, school.numStudents, school.priority, itemStart[item] - itemStart[item - 1]);
       }
+      dynTable.fill();
+      metrics.addCells((long) (dynTable.getRows() + 1) * (numWeights + 1));
+      metrics.record(SolverMetrics.Phase.FILL, startTime);
 
-//DEBUG
-//<editor-fold defaultstate="collapsed" desc="DEBUG Print DynTable">
-/*System.out.print(".........");
-for (int k = 0; k <= numWeights; k++)
-{
-System.out.printf("%7.2f|", new Double(k));
-}
-System.out.println();
-for (int i = 0; i <= availSchools.size(); i++)
-{
-System.out.printf("ROW %2d:  \n", i);
-if (i < availSchools.size())
-{
-//System.out.println("SCHOOL: " + availSchools.get(i).name);
-}
-for (int j = 0; j <= numWeights; j++)
-{
-System.out.printf("%7.2f|", dynTable[i][j]);
-}
-System.out.println();
-}*/
-//</editor-fold>      
       return dynTable;
    }
 
    /**
-    * Initializes the dynamic table. The entire row 0 and the entire column 0 is
-    * filled with 0's. 0 is the lowest value/priority.
+    * Groups the available schools into the items of a day's table. Schools
+    * in the same class of the reduction are one item, numbered by where the
+    * first of them is in the list. Fills itemOrder with the positions of
+    * every item's schools, item by item, and itemStart with where every item
+    * starts in it.
     *
-    * @param items The total number of items. (y-axis)
-    * @param weights The total weight to carry. (x-axis)
-    *
-    * @return A table to hold weights
+    * @param availSchools The schools available on the day.
+    * @return The number of items.
     */
-   private Double[][] initializeDynTable(int items, int weights) {
-      //Add 1 because 10 items should go from 0 - 10 inclusive
-      Double[][] table = new Double[items + 1][weights + 1];
-      int i;
+   private int groupItems(ArrayList<School> availSchools) {
+      int size = availSchools.size();
+      int classes = reduction == null ? 0 : reduction.getClasses();
+      int numItems = 0, cls, item;
+
+      if (itemOf == null || itemOf.length < size)
+      {
+         itemOf = new int[size];
+         itemOrder = new int[size];
+         itemStart = new int[size + 1];
+      }
+      if (classItem == null || classItem.length < classes)
+      {
+         classItem = new int[classes];
+      }
+
+      //Number the items, giving alike schools the item of the first
+      for (int pos = 0; pos < size; pos++)
+      {
+         cls = classes == 0 ? -1 : reduction.classOf(availSchools.get(pos));
+         if (cls < 0)
+         {
+            itemOf[pos] = numItems++;
+         }
+         else
+         {
+            if (classItem[cls] == 0)
+            {
+               classItem[cls] = ++numItems;
+            }
+            itemOf[pos] = classItem[cls] - 1;
+         }
+      }
+      for (int pos = 0; pos < size; pos++)
+      {
+         cls = classes == 0 ? -1 : reduction.classOf(availSchools.get(pos));
+         if (cls >= 0)
+         {
+            classItem[cls] = 0;
+         }
+      }
 
-      //Set top row to 0's
-      for (i = 0; i <= weights; i++)
+      //Sort the positions by item, keeping list order within an item
+      Arrays.fill(itemStart, 0, numItems + 1, 0);
+      for (int pos = 0; pos < size; pos++)
+      {
+         itemStart[itemOf[pos] + 1]++;
+      }
+      for (item = 0; item < numItems; item++)
       {
-         table[0][i] = 0.0;
+         itemStart[item + 1] += itemStart[item];
       }
-      //Set first column to 0's
-      for (i = 0; i <= items; i++)
+      for (int pos = 0; pos < size; pos++)
       {
-         table[i][0] = 0.0;
+         itemOrder[itemStart[itemOf[pos]]++] = pos;
       }
-      return table;
+      for (item = numItems; item > 0; item--)
+      {
+         itemStart[item] = itemStart[item - 1];
+      }
+      itemStart[0] = 0;
+      return numItems;
    }
 
    /**
@@ -249,8 +354,7 @@ System.out.println();
       switch (seed)
       {
          case -1:
-            currentSeed = (int) System.currentTimeMillis();
-            rand = new Random(currentSeed);
+            rand = iterationRandom;
             break;
          case 0:
             for (int num = 1; num <= TotalDays; num++)
@@ -315,31 +419,349 @@ System.out.println();
    public int iter;  //The number of schools scheduled per iteration
    public long constant = 0;
    public boolean done = false;
-   public int totalSeated = 0, totalSchools = 0;
+   public volatile int totalSeated = 0, totalSchools = 0;
    public int totalStudents = 0;
    public int iterations = 0;
-   public int index = 0;
-   public Thread thread;
-   public ArrayList<FinalDay> finalSchedule = new ArrayList<>();
-   public ArrayList<School> finalUnscheduled = new ArrayList<>(); //Final unscheduled schools
+   public volatile int index = 0;
+   /**
+    * The last run knapsack() started
+    */
+   private volatile SolverJob job;
+   /**
+    * Raised to stop the run. Shared by all workers.
+    */
+   private final AtomicBoolean cancelled;
+   /**
+    * The engine knapsack() runs.
+    */
+   private SolverMode solverMode = SolverMode.RESTARTS;
+   /**
+    * True if the last exact run proved its schedule optimal.
+    */
+   private boolean provenOptimal = false;
+   /**
+    * Where the results of runs that always give the same schedule are
+    * kept. Null to always solve.
+    */
+   private ResultCache resultCache = null;
+   /**
+    * True if the last run's schedule came from the result cache.
+    */
+   private boolean resultReused = false;
+   /**
+    * The number of threads to run restarts on. 1 runs them in order.
+    */
+   private int threads = 1;
+   /**
+    * The local search moves tried on the best schedule after a restart run.
+    * 0 skips the local search.
+    */
+   private long improveSteps = 0;
+   /**
+    * The number of worker processes to run restarts on. 0 runs them in this
+    * process.
+    */
+   private int workers = 0;
+   /**
+    * How long an anytime or exact run may take in milliseconds. 0 is no limit.
+    */
+   private long timeBudget = 0;
+   /**
+    * The number of seated students that ends an anytime run. 0 is no target.
+    */
+   private int targetSeats = 0;
+   /**
+    * The share of all seats that ends an anytime run. 0 is no target.
+    */
+   private double targetFraction = 0;
+   /**
+    * The best schedule found so far. Shared by all workers.
+    */
+   private final AtomicReference<BestSchedule> best;
+   /**
+    * The number of restarts finished by the parallel workers.
+    */
+   private final AtomicInteger completed = new AtomicInteger();
+   /**
+    * The dynamic table reused by every day solve.
+    */
+   private final KnapsackTable dynTable = new KnapsackTable();
+   /**
+    * The picks of earlier day solves, reused across this model's restarts.
+    */
+   private final DayMemo dayMemo = new DayMemo(DayMemo.DEFAULT_BYTES);
+   /**
+    * The day every scheduled school is on while repairing a schedule.
+    */
+   private final IdentityHashMap<School, Day> placement = new IdentityHashMap<>();
+   /**
+    * The parts of the split school list that repairs dropped, or null if
+    * none. They keep their places so no other part is indexed again.
+    */
+   private boolean[] droppedParts;
+   /**
+    * The parts of every split school, grouped by splitId. Shared by workers.
+    */
+   private SplitIndex splitGroups;
+   /**
+    * The dropped, fixed and merged schools of the run. Shared by workers.
+    */
+   private ProblemReduction reduction;
+   /**
+    * The day every part in the split school list is on during a restart.
+    * Null while the days are not being tracked.
+    */
+   private Day[] partDay;
+   /**
+    * True for every part in the split school list that is in unscheduled.
+    */
+   private boolean[] partUnscheduled;
+   /**
+    * The number of parts of every group that are in unscheduled.
+    */
+   private int[] groupUnscheduled;
+   /**
+    * Scratch mask of the schools being looked up in getAvail.
+    */
+   private long[] memberMask;
+   /**
+    * The item of every available school in a day solve, the positions of
+    * the schools item by item, and where every item starts. Reused by every
+    * day solve
+    */
+   private int[] itemOf, itemOrder, itemStart;
+   /**
+    * The item number plus one of every class while grouping, else 0
+    */
+   private int[] classItem;
+   public volatile ArrayList<FinalDay> finalSchedule = new ArrayList<>();
+   public volatile ArrayList<School> finalUnscheduled = new ArrayList<>(); //Final unscheduled schools
    public ArrayList<School> excludedSchools = new ArrayList<>();
 
-   public void knapsack() {
+   /**
+    * Starts the solver engine on its own thread.
+    *
+    * @return The run, to follow or cancel.
+    */
+   public SolverJob knapsack() {
+      cancelled.set(false);
+      job = new SolverJob(this);
+      job.start();
+      return job;
+   }
 
-      thread = new Thread() {
-         @Override
-         public void run() {
-            long startTime;
-            long endTime;
-            startTime = System.currentTimeMillis();
+   /**
+    * Returns the last run knapsack() started.
+    *
+    * @return The run, or null if none was started.
+    */
+   public SolverJob getJob() {
+      return job;
+   }
+
+   /**
+    * Asks the run to stop. The restart loops and the day scheduling check
+    * for it, and the best schedule so far is kept.
+    */
+   void requestCancel() {
+      cancelled.set(true);
+   }
+
+   /**
+    * Returns if the run was asked to stop.
+    *
+    * @return True once cancelled, until the next knapsack().
+    */
+   public boolean isCancelled() {
+      return cancelled.get();
+   }
+
+   /**
+    * Runs the solver engine on this thread and returns once it is done.
+    */
+   public void solve() {
+      long startTime;
+      long endTime;
+      String resultKey = resultKey();
+      startTime = System.currentTimeMillis();
+      SolverMetrics.get().beginRun();
+      try
+      {
+         resultReused = resultKey != null && restoreResult(resultKey);
+         if (resultReused)
+         {
+            SolverMetrics.get().addReusedRun();
+         }
+         else if (solverMode == SolverMode.EXACT)
+         {
+            exactKnapsack();
+         }
+         else if (solverMode == SolverMode.ANYTIME)
+         {
+            anytimeKnapsack();
+         }
+         else if (workers > 0)
+         {
+            distributedKnapsack();
+         }
+         else if (threads > 1)
+         {
+            parallelKnapsack();
+         }
+         else
+         {
             altKnapsack();
-            endTime = System.currentTimeMillis();
-            System.out.println("Run Time: " + ((endTime - startTime)/1000.0) + " seconds");
          }
-      };
-      
-      thread.start();
-      thread.interrupt();
+         if (resultKey != null && !resultReused)
+         {
+            keepResult(resultKey);
+         }
+      } finally
+      {
+         SolverMetrics.get().endRun();
+      }
+      endTime = System.currentTimeMillis();
+      System.out.println("Run Time: " + ((endTime - startTime)/1000.0) + " seconds");
+   }
+
+   /**
+    * Returns the result cache key of the next run, or null if the run is
+    * not cached because it can give a different schedule every time.
+    */
+   private String resultKey() {
+      if (resultCache == null || solverMode == SolverMode.ANYTIME)
+      {
+         return null;
+      }
+      if (solverMode == SolverMode.EXACT && timeBudget > 0)
+      {
+         return null;
+      }
+      if (solverMode == SolverMode.EXACT && iterations == 0)
+      {
+         return ResultCache.keyOf(this, solverMode.ordinal());
+      }
+      if (!seedSet)
+      {
+         return null;
+      }
+      return ResultCache.keyOf(this, solverMode.ordinal(), iterations, masterSeed, improveSteps, threads, workers);
+   }
+
+   /**
+    * Lays a cached schedule back onto the days and makes it the final
+    * schedule, as if the run had just found it.
+    *
+    * @param key The result cache key of the run.
+    * @return False if there is no cached result, or it does not fit.
+    */
+   private boolean restoreResult(String key) {
+      ResultCache.Result result = resultCache.get(key);
+      BestSchedule restored;
+      School school;
+      Day day;
+
+      if (result == null || !resultFits(result))
+      {
+         return false;
+      }
+      createSplitSchoolList();
+      best.set(null);
+      this.reset();
+      iterationSeed = result.seed;
+      iterationRestart = BestSchedule.NO_RESTART;
+      for (int pos = 0; pos < result.days.length; pos++)
+      {
+         if (result.days[pos] == 0)
+         {
+            continue;
+         }
+         day = dayList.get(result.days[pos]);
+         school = schoolListSplit.get(pos);
+         day.addSchool(school, false);
+         school.actualDay = day.date;
+         scheduledSchools.add(school);
+      }
+
+      restored = snapshot();
+      best.set(restored);
+      publishBest();
+      provenOptimal = result.optimal;
+      index = iterations;
+      notifyResults();
+      return true;
+   }
+
+   /**
+    * Returns if a cached result fits this model's problem, without touching
+    * the model. The parts are counted the way createSplitSchoolList() makes
+    * them, every day must exist, and the pinned and placed schools must seat
+    * what the result says.
+    *
+    * @param result The cached result.
+    * @return True if the result can be laid onto the days.
+    */
+   private boolean resultFits(ResultCache.Result result) {
+      int pos = 0, parts;
+      long seated = 0;
+
+      for (Day day : dayList.values())
+      {
+         for (School pinned : day.initialSchools)
+         {
+            seated += pinned.numStudents;
+         }
+      }
+      for (School school : schoolList)
+      {
+         parts = school.split ? school.splitNums.size() : 1;
+         for (int part = 0; part < parts; part++, pos++)
+         {
+            if (pos >= result.days.length)
+            {
+               return false;
+            }
+            if (result.days[pos] == 0)
+            {
+               continue;
+            }
+            if (!dayList.containsKey(result.days[pos]))
+            {
+               return false;
+            }
+            seated += school.split ? school.splitNums.get(part) : school.numStudents;
+         }
+      }
+      return pos == result.days.length && seated == result.seated;
+   }
+
+   /**
+    * Keeps the best schedule of a finished run in the result cache.
+    *
+    * @param key The result cache key of the run.
+    */
+   private void keepResult(String key) {
+      BestSchedule current = best.get();
+      int[] days;
+
+      if (current == null || isCancelled())
+      {
+         return;
+      }
+      days = new int[schoolListSplit.size()];
+      for (FinalDay day : current.schedule)
+      {
+         for (School school : day.getSchools())
+         {
+            //Pinned schools are not in the split school list
+            if (school.splitIndex >= 0 && school.splitIndex < days.length
+                    && schoolListSplit.get(school.splitIndex) == school)
+            {
+               days[school.splitIndex] = day.index;
+            }
+         }
+      }
+      resultCache.put(key, new ResultCache.Result(current.seated, current.seed, provenOptimal, days));
    }
 
    //Create split school list
@@ -348,6 +770,7 @@ System.out.println();
       Iterator schoolListIter = schoolList.iterator();
       ArrayList<School> newSplits;
       int totalNumKids = 0;
+      long startTime = System.nanoTime();
 
       schoolListSplit = new ArrayList<>();
       //Split up all the schools
@@ -386,479 +809,1840 @@ System.out.println();
          }
       }
       totalStudents = totalNumKids;
+      indexAvailability();
+      SolverMetrics.get().record(SolverMetrics.Phase.SPLIT, startTime);
    }
 
    protected void altKnapsack() {
-      ArrayList<School> leftover, chosen, exclude;
-      ArrayList<Integer> unschedExists;
-      Iterator unschedIter;
-      School temp;
+      BestSchedule current;
       createSplitSchoolList();
+      best.set(null);
+      pickMasterSeed();
 
-      for (index = 0; index < iterations; index++)
+      for (index = 0; index < iterations && !isCancelled(); index++)
       {
-         //Reset seated schools
-         this.reset();
-         //Recalculate average
-         calculateAverage(schoolList);
-
-         //Currently no schools are scheduled
-         unscheduled = new ArrayList<>(schoolListSplit);
-
-         //Schedule schools
-         do
+         seated = runRestart(index);
+         //A cancelled restart is only partly scheduled
+         if (isCancelled())
          {
-            runAlgorithm(unscheduled);
+            break;
+         }
 
-            exclude = new ArrayList<>();
-            //If a split school was scheduled.
-            for (School sch : scheduledSchools)
-            {
-               for (School uSch : unscheduled)
-               {
-                  if (sch.splitId == uSch.splitId)
-                  {
-                     exclude.add(sch);
-                  }
-               }
-            }
+         //Get most students
+         current = best.get();
+         if (current == null || seated >= current.seated)
+         {
+            offerBest(snapshot());
+         }
 
-            for (School toRemove : exclude)
-            {
-               removeScheduledSchool(toRemove);
-               unschedIter = unscheduled.iterator();
-               while (unschedIter.hasNext())
-               {
-                  temp = (School) unschedIter.next();
-                  if (temp.splitId == toRemove.splitId)
-                  {
-                     unschedIter.remove();
-                  }
-               }
-            }
-            needAdd.clear();
+         notify(NotifyCmd.PROG);
+      }
 
-         } while (!exclude.isEmpty());
+      improveUnlessCancelled();
+      notifyResults();
 
-         //Get number of seated students
-         seated = 0;
-         for (Day d : dayList.values())
+      //DEBUG
+      /*for (School sch : finalUnscheduled)
+      {
+         System.out.println(500 - sch.priority + " " + sch.name + " ");
+      }*/
+   }
+
+   /**
+    * Runs the restarts across a ForkJoinPool. Every worker schedules on its
+    * own copy of the days and lists, and only the best schedule is shared.
+    */
+   protected void parallelKnapsack() {
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      createSplitSchoolList();
+      best.set(null);
+      pickMasterSeed();
+      completed.set(0);
+      index = 0;
+
+      try
+      {
+         pool.invoke(new RestartTask(0, iterations, Math.max(1, iterations / (threads * 4))));
+      } finally
+      {
+         pool.shutdown();
+      }
+
+      improveUnlessCancelled();
+      notifyResults();
+   }
+
+   /**
+    * Runs the restarts on worker processes through a RestartCoordinator, then
+    * replays the best restart here to rebuild its schedule.
+    */
+   protected void distributedKnapsack() {
+      RestartCoordinator coordinator;
+      long restart;
+
+      pickMasterSeed();
+      //The problem is sent before splitting so both sides split alike
+      coordinator = new RestartCoordinator(this, workers);
+      createSplitSchoolList();
+      best.set(null);
+      index = 0;
+
+      try
+      {
+         restart = coordinator.run(iterations, Math.max(1, iterations / (workers * 4)));
+      } catch (IOException ex)
+      {
+         if (!isCancelled())
          {
-            for (School s : d.getSchools())
-            {
-               seated += s.numStudents;
-            }
+            notifyText = "Error: Distributed run failed. " + ex.getMessage();
+            notify(NotifyCmd.ERROR);
+            return;
          }
+         restart = -1;
+      }
+      //The workers are stopped, so there is no best restart to replay
+      if (isCancelled())
+      {
+         notifyResults();
+         return;
+      }
 
-         //Get most students
-         if (seated >= totalSeated)
+      seated = runRestart(restart);
+      if (seated != coordinator.getBestSeated())
+      {
+         //The workers and this model did not solve alike, so no schedule is trusted
+         notifyText = "Error: Replayed restart " + restart + " seated " + seated
+                 + " students, but the worker reported " + coordinator.getBestSeated();
+         notify(NotifyCmd.ERROR);
+         return;
+      }
+      offerBest(snapshot());
+      improveUnlessCancelled();
+      index = iterations;
+      notifyResults();
+   }
+
+   /**
+    * Runs a range of restarts, splitting it up until it is small enough for
+    * one worker.
+    */
+   private class RestartTask extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+      private final int from, to, chunk;
+
+      RestartTask(int from, int to, int chunk) {
+         this.from = from;
+         this.to = to;
+         this.chunk = chunk;
+      }
+
+      @Override
+      protected void compute() {
+         LogicModel worker;
+         BestSchedule current;
+         int workerSeated, middle;
+
+         //ForkJoinTask has its own isCancelled()
+         if (LogicModel.this.isCancelled())
+         {
+            return;
+         }
+         if (to - from > chunk)
          {
-            totalSeated = seated;
-            totalSchools = 0;//countSchools(scheduledSchools);
-            finalSchedule.clear();
-            finalUnscheduled.clear();
+            middle = (from + to) >>> 1;
+            invokeAll(new RestartTask(from, middle, chunk), new RestartTask(middle, to, chunk));
+            return;
+         }
 
-            chosen = new ArrayList<>(); //temp list of chosen schools
-            totalSeated = 0;
-            for (Day d : dayList.values())
+         worker = new LogicModel(LogicModel.this);
+         for (int i = from; i < to && !LogicModel.this.isCancelled(); i++)
+         {
+            workerSeated = worker.runRestart(i);
+            if (LogicModel.this.isCancelled())
             {
-               finalSchedule.add(new FinalDay(d.date, d.schools, d.index, d.seatsLeft));
-               for (School s : d.getSchools())
-               {
-                  chosen.add(s);
-                  totalSeated += s.numStudents;
-                  totalSchools++;
-               }
+               return;
             }
-
-            //create list of unscheduled schools
-            leftover = new ArrayList<>(schoolListSplit);
-            for (School sch : chosen)
+            current = best.get();
+            if (current == null || workerSeated >= current.seated)
             {
-               if (leftover.contains(sch))
-               {
-                  leftover.remove(sch);
-               }
+               offerBest(worker.snapshot());
             }
-            unschedExists = new ArrayList<>();
+            index = completed.incrementAndGet();
+            LogicModel.this.notify(NotifyCmd.PROG);
+         }
+      }
+   }
 
-            totalSchools = schoolList.size();
-            for (School sch : leftover)
-            {
-               if (!unschedExists.contains(sch.splitId))
-               {
-                  unschedExists.add(sch.splitId);
-                  finalUnscheduled.add(sch);
-                  totalSchools--;
-               }
-            }
+   /**
+    * Takes the master seed from the clock unless one was set.
+    */
+   private void pickMasterSeed() {
+      if (!seedSet)
+      {
+         masterSeed = System.currentTimeMillis();
+      }
+   }
 
-         }
+   /**
+    * Returns the seed of a restart. Every restart gets its own seed from the
+    * master seed, so a run can be repeated and any one restart replayed.
+    *
+    * @param restart The restart number.
+    * @return The seed.
+    */
+   protected long seedFor(long restart) {
+      //SplitMix64, so nearby restart numbers give unrelated seeds
+      long seed = masterSeed + (restart + 1) * 0x9E3779B97F4A7C15L;
+      seed = (seed ^ (seed >>> 30)) * 0xBF58476D1CE4E5B9L;
+      seed = (seed ^ (seed >>> 27)) * 0x94D049BB133111EBL;
+      return seed ^ (seed >>> 31);
+   }
 
-         notify(NotifyCmd.PROG);
+   /**
+    * Runs the one restart with the given seed again and makes it the final
+    * schedule. With the same workbook and pinned schools loaded this gives
+    * back the exact schedule the seed gave during the run.
+    *
+    * @param seed The restart seed, from BestSchedule.getSeed().
+    * @return The replayed schedule.
+    */
+   public BestSchedule replay(long seed) {
+      //The restarts' reduction still has the parts a repair dropped
+      if (schoolListSplit == null || droppedParts != null)
+      {
+         createSplitSchoolList();
       }
+      runIteration(seed);
+      best.set(snapshot());
+      publishBest();
+      index = iterations;
+      notifyResults();
+      return best.get();
+   }
 
-      //Keep track of highest seed
-      highestSeed = currentSeed;
-      System.out.println(highestSeed);
-      
-      notify(NotifyCmd.LIST);
-      notifyText = "# of Seated Students: " + "<b>" + totalSeated + "</b>" + "<br/>Total Seats: " + "<b>" + xlHandler.totalSeats + "</b>" 
-              + "<br/>Empty Seats: " + "<b>" + (xlHandler.totalSeats - totalSeated) + "</b>" + "<br/>Total # of Students: " + "<b>" + totalStudents + "</b>"
-              + "<br/><br/># of Scheduled Schools: " + "<b>" + totalSchools + "</b>" + "<br/>Total # of Schools: " + "<b>" + schoolList.size() + "</b>";
-      notify(NotifyCmd.TEXT);
+   /**
+    * Runs a local search over the best schedule, moving and swapping schools
+    * between days and swapping unscheduled schools in. The result replaces
+    * the best schedule if it seats more students, or the same students with
+    * higher priority. It has no restart seed, since replaying a seed only
+    * gives back the schedule before the search.
+    *
+    * @param steps The number of moves to try.
+    * @return True if the best schedule was improved.
+    */
+   public boolean improve(long steps) {
+      BestSchedule current = best.get(), result;
+      LocalSearch search;
+      long startTime;
 
-      //DEBUG
-      /*for (School sch : finalUnscheduled)
+      if (current == null || steps <= 0)
       {
-         System.out.println(500 - sch.priority + " " + sch.name + " ");
-      }*/
+         return false;
+      }
+      startTime = System.nanoTime();
+      search = new LocalSearch(current, dayList, splitGroups, seedFor(-1));
+      search.run(steps);
+      result = search.getResult();
+      SolverMetrics.get().record(SolverMetrics.Phase.IMPROVE, startTime);
+      SolverMetrics.get().addLocalSearch(search.getMoves(), search.getAccepted(), result.seated - current.seated);
+      if (!search.improved())
+      {
+         return false;
+      }
+
+      best.set(result);
+      publishBest();
+      return true;
    }
 
-   public void runAlgorithm(ArrayList<School> notScheduled) {
-      int smallSchool, bigDay;
-      ArrayList<Integer> order;
+   /**
+    * Runs the local search after a run, unless the run was cancelled.
+    */
+   private void improveUnlessCancelled() {
+      if (!isCancelled())
+      {
+         improve(improveSteps);
+      }
+   }
+
+   /**
+    * Runs restarts until the time budget runs out or the target number of
+    * students is seated. Every improvement is published right away, so
+    * getBest() and finalSchedule always hold the best schedule so far.
+    */
+   protected void anytimeKnapsack() {
+      final long start = System.currentTimeMillis();
+      final long deadline = timeBudget > 0 ? start + timeBudget : Long.MAX_VALUE;
+      final int target = getTargetSeats();
+      final ArrayList<AnytimeTask> tasks = new ArrayList<>();
+      ForkJoinPool pool;
+
+      createSplitSchoolList();
+      best.set(null);
+      pickMasterSeed();
+      completed.set(0);
+      index = 0;
+
+      if (threads > 1)
+      {
+         for (int worker = 0; worker < threads; worker++)
+         {
+            tasks.add(new AnytimeTask(start, deadline, target));
+         }
+         pool = new ForkJoinPool(threads);
+         try
+         {
+            pool.invoke(new RecursiveAction() {
+               @Override
+               protected void compute() {
+                  invokeAll(tasks);
+               }
+            });
+         } finally
+         {
+            pool.shutdown();
+         }
+      }
+      else
+      {
+         runUntil(this, start, deadline, target);
+      }
+
+      improveUnlessCancelled();
+      index = iterations;
+      notifyResults();
+   }
+
+   /**
+    * Runs restarts on one worker until the anytime run is over.
+    */
+   private class AnytimeTask extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+      private final long start, deadline;
+      private final int target;
+
+      AnytimeTask(long start, long deadline, int target) {
+         this.start = start;
+         this.deadline = deadline;
+         this.target = target;
+      }
+
+      @Override
+      protected void compute() {
+         runUntil(new LogicModel(LogicModel.this), start, deadline, target);
+      }
+   }
+
+   /**
+    * Runs restarts on the worker until the deadline passes or the best
+    * schedule seats the target. Without a deadline the run also stops once
+    * the set number of restarts is claimed, so it can not go on forever. At
+    * least one restart is always run.
+    *
+    * @param worker The model to run restarts on.
+    * @param start When the run started.
+    * @param deadline When the run has to stop.
+    * @param target The number of seated students to stop at.
+    */
+   private void runUntil(LogicModel worker, long start, long deadline, int target) {
+      BestSchedule current;
+      int workerSeated, restart;
+      int limit = deadline == Long.MAX_VALUE ? Math.max(1, iterations) : Integer.MAX_VALUE;
+      long now;
 
-      //WHILE smallest school is smaller than smallest day. Can fit more students
       do
       {
-         //scheduleNeedAdds();
+         restart = claimRestart(limit);
+         if (restart < 0)
+         {
+            return;
+         }
+         workerSeated = worker.runRestart(restart);
+         if (isCancelled())
+         {
+            return;
+         }
+         current = best.get();
+         if (current == null || workerSeated >= current.seated)
+         {
+            offerBest(worker.snapshot());
+         }
+         now = System.currentTimeMillis();
 
-         order = new ArrayList<>(needAdd.keySet());
+         //Show the progress bar as time used, or as restarts run
+         if (deadline != Long.MAX_VALUE)
+         {
+            index = (int) Math.min(iterations, iterations * (now - start) / Math.max(1, deadline - start));
+         }
+         else
+         {
+            index = Math.min(iterations, restart + 1);
+         }
+         notify(NotifyCmd.PROG);
+      } while (now < deadline && best.get().seated < target);
+   }
 
-         //Sort order by priority
-         Collections.sort(order, new Comparator<Integer>() {
-            @Override
-            public int compare(Integer i1, Integer i2) {
-               return Integer.compare(i1, i2);
-            }
-         });
+   /**
+    * Takes the next restart number of an anytime run.
+    *
+    * @param limit The number of restarts the run may take.
+    * @return The restart number, or -1 if the limit is reached.
+    */
+   private int claimRestart(int limit) {
+      int claimed;
 
-         for (int ord : order)
+      do
+      {
+         claimed = completed.get();
+         if (claimed >= limit)
          {
-            schedule(needAdd.get(ord));
+            return -1;
          }
+      } while (!completed.compareAndSet(claimed, claimed + 1));
+      return claimed;
+   }
 
-         schedule(unscheduled);
+   /**
+    * Returns the number of seated students an anytime run stops at. The
+    * larger of the seat target and the seat fraction wins.
+    *
+    * @return The target, or Integer.MAX_VALUE if there is none.
+    */
+   public int getTargetSeats() {
+      int target = targetSeats;
 
-         smallSchool = getSmallestSchool(unscheduled);
-         bigDay = getBiggestDay();
-         //System.out.printf("smallSchool: %3d | bigDay %3d\n", smallSchool, bigDay);
-      } while (smallSchool <= bigDay && !done);
+      if (targetFraction > 0)
+      {
+         target = Math.max(target, (int) Math.ceil(targetFraction * xlHandler.totalSeats));
+      }
+      return target > 0 ? target : Integer.MAX_VALUE;
    }
 
-   public void schedule(ArrayList<School> toSchedule) {
-      Double[][] dynTable, filledTable;
-      ArrayList<Integer> order = randOrder(-1);
-      ArrayList<School> availSchools, selected;
-      boolean isSelect = false;
+   /**
+    * Finds the schedule seating the most students with branch and bound.
+    * Pinned schools keep their days. The set number of seeded restarts and
+    * the local search run first, and the search starts from their best
+    * schedule, so it never seats fewer students than they do. If the search
+    * finds nothing better their schedule is kept, with its seed.
+    */
+   protected void exactKnapsack() {
+      BranchAndBound solver;
+      BestSchedule start, current;
+      School school;
       Day day;
 
-      //Reset iter
-      iter = 0;
+      createSplitSchoolList();
+      best.set(null);
+      pickMasterSeed();
+      for (index = 0; index < iterations && !isCancelled(); index++)
+      {
+         seated = runRestart(index);
+         if (isCancelled())
+         {
+            break;
+         }
+         current = best.get();
+         if (current == null || seated >= current.seated)
+         {
+            offerBest(snapshot());
+         }
+         notify(NotifyCmd.PROG);
+      }
+      improveUnlessCancelled();
+      start = best.get();
 
-      for (int ord : order)
+      this.reset();
+      iterationSeed = BestSchedule.NO_SEED;
+      iterationRestart = BestSchedule.NO_RESTART;
+
+      solver = new BranchAndBound(schoolListSplit, dayList.values());
+      if (start != null)
+      {
+         solver.setIncumbent(assignmentOf(start));
+      }
+      if (timeBudget > 0)
+      {
+         solver.setDeadline(System.nanoTime() + timeBudget * 1000000L);
+      }
+      solver.setCancel(cancelled);
+      provenOptimal = solver.solve();
+      SolverMetrics.get().addSearch(solver.getNodes(), provenOptimal);
+      index = iterations;
+      if (start != null && solver.getBestValue() <= start.seated)
       {
-         //IF topten is empty, break
-         if (toSchedule.isEmpty())
+         notifyResults();
+         return;
+      }
+
+      for (int pos = 0; pos < schoolListSplit.size(); pos++)
+      {
+         day = solver.getAssignedDay(pos);
+         if (day != null)
          {
-            return;
+            school = schoolListSplit.get(pos);
+            day.addSchool(school, false);
+            school.actualDay = day.date;
+            scheduledSchools.add(school);
          }
+      }
 
-         day = dayList.get(ord);
-         availSchools = getAvail(toSchedule, day);
+      offerBest(snapshot());
+      notifyResults();
+   }
+
+   /**
+    * Returns the day of every split school in a schedule, by position in
+    * the split school list.
+    *
+    * @param schedule The schedule.
+    * @return The days, null where a school is not scheduled.
+    */
+   private Day[] assignmentOf(BestSchedule schedule) {
+      Day[] assigned = new Day[schoolListSplit.size()];
+
+      for (FinalDay finalDay : schedule.schedule)
+      {
+         for (School sch : finalDay.getSchools())
+         {
+            if (splitGroups.contains(sch))
+            {
+               assigned[sch.splitIndex] = dayList.get(finalDay.index);
+            }
+         }
+      }
+      return assigned;
+   }
+
+   /**
+    * Runs the numbered restart of the run, with its seed from seedFor, and
+    * marks its schedule with the number for offerBest.
+    *
+    * @param restart The restart number.
+    * @return The number of students seated.
+    */
+   protected int runRestart(long restart) {
+      int numSeated = runIteration(seedFor(restart));
 
-         //remove scheduled schools from avail schools
-         for (School s : scheduledSchools)
+      iterationRestart = restart;
+      return numSeated;
+   }
+
+   /**
+    * Runs one restart on this model's days and returns the number of seated
+    * students. The same seed always gives the same schedule.
+    *
+    * @param seed The seed for the restart's day orders.
+    * @return The number of students seated.
+    */
+   protected int runIteration(long seed) {
+      ArrayList<School> exclude;
+      Iterator<School> unschedIter;
+      School temp;
+      int numSeated, group;
+      long startTime;
+
+      beginIteration(seed);
+
+      //Schedule schools
+      startTime = System.nanoTime();
+      do
+      {
+         runAlgorithm(unscheduled);
+
+         exclude = new ArrayList<>();
+         //If a split school was scheduled but some parts were not.
+         for (School sch : scheduledSchools)
+         {
+            group = splitGroups.groupOf(sch);
+            if (group >= 0 && groupUnscheduled[group] > 0)
+            {
+               exclude.add(sch);
+            }
+         }
+
+         for (School toRemove : exclude)
          {
-            if (availSchools.contains(s))
+            removeScheduledSchool(toRemove);
+            group = splitGroups.groupOf(toRemove);
+            for (School part : splitGroups.getParts(group))
             {
-               availSchools.remove(s);
+               partUnscheduled[part.splitIndex] = false;
             }
+            groupUnscheduled[group] = 0;
          }
 
-         //IF day doesnt have enough seats
-         if (getSmallestSchool(availSchools) > day.getSeats())
+         //Drop the other parts of the excluded schools
+         if (!exclude.isEmpty())
+         {
+            unschedIter = unscheduled.iterator();
+            while (unschedIter.hasNext())
+            {
+               temp = unschedIter.next();
+               if (splitGroups.contains(temp) && !partUnscheduled[temp.splitIndex])
+               {
+                  unschedIter.remove();
+               }
+            }
+         }
+         needAdd.clear();
+
+      } while (!exclude.isEmpty() && !isCancelled());
+      metrics.record(SolverMetrics.Phase.EXCLUSION, startTime);
+
+      //Get number of seated students
+      numSeated = 0;
+      for (Day d : dayList.values())
+      {
+         for (School s : d.getSchools())
+         {
+            numSeated += s.numStudents;
+         }
+      }
+      metrics.addIteration();
+      metrics.flush();
+      return numSeated;
+   }
+
+   /**
+    * Clears the days and marks every school unscheduled for a new restart.
+    *
+    * @param seed The seed for the restart's day orders.
+    */
+   protected void beginIteration(long seed) {
+      iterationSeed = seed;
+      iterationRestart = BestSchedule.NO_RESTART;
+      iterationRandom = new Random(seed);
+      //Reset seated schools
+      this.reset();
+      //Recalculate average
+      calculateAverage(schoolList);
+
+      //Currently no schools are scheduled but the fixed ones
+      unscheduled = reduction.getWorkList();
+      trackUnscheduled();
+      placeFixed();
+   }
+
+   /**
+    * Puts the schools the reduction fixed on their days.
+    */
+   private void placeFixed() {
+      School school;
+
+      for (int pos : reduction.getFixed())
+      {
+         school = schoolListSplit.get(pos);
+         takeSchool(school, dayList.get(reduction.getFixedDay(pos)));
+         scheduledSchools.add(school);
+         setUnscheduled(school, false);
+      }
+   }
+
+   /**
+    * Copies the schedule currently in the days.
+    *
+    * @return A snapshot of the current schedule.
+    */
+   protected BestSchedule snapshot() {
+      ArrayList<FinalDay> schedule = new ArrayList<>();
+      ArrayList<School> unschedSchools = new ArrayList<>();
+      ArrayList<School> chosen, leftover;
+      HashSet<Integer> unschedExists;
+      boolean[] isChosen = new boolean[schoolListSplit.size()];
+      int numSeated = 0, numSchools;
+      long startTime = System.nanoTime();
+
+      chosen = new ArrayList<>(); //temp list of chosen schools
+      for (Day d : dayList.values())
+      {
+         schedule.add(new FinalDay(d.date, d.schools, d.index, d.seatsLeft));
+         for (School s : d.getSchools())
+         {
+            chosen.add(s);
+            numSeated += s.numStudents;
+         }
+      }
+
+      //create list of unscheduled schools
+      for (School sch : chosen)
+      {
+         if (splitGroups.contains(sch))
+         {
+            isChosen[sch.splitIndex] = true;
+         }
+      }
+      leftover = new ArrayList<>();
+      for (School sch : schoolListSplit)
+      {
+         if (!isChosen[sch.splitIndex] && !isDropped(sch))
+         {
+            leftover.add(sch);
+         }
+      }
+      unschedExists = new HashSet<>();
+
+      numSchools = schoolList.size();
+      for (School sch : leftover)
+      {
+         if (unschedExists.add(sch.splitId))
+         {
+            unschedSchools.add(sch);
+            numSchools--;
+         }
+      }
+
+      //Also adds phases recorded outside a restart, such as by a repair
+      metrics.flush();
+      SolverMetrics.get().record(SolverMetrics.Phase.SNAPSHOT, startTime);
+      return new BestSchedule(numSeated, numSchools, schedule, unschedSchools, iterationSeed, iterationRestart);
+   }
+
+   /**
+    * Replaces the best schedule if the given one seats more students, or as
+    * many from a later restart. Ties go to the later restart as they do when
+    * the restarts run in order, so parallel and distributed runs keep the
+    * same schedule however their workers finish. Safe to call from any
+    * worker.
+    *
+    * @param candidate The schedule to offer.
+    * @return True if the candidate is now the best schedule.
+    */
+   protected boolean offerBest(BestSchedule candidate) {
+      BestSchedule current;
+
+      do
+      {
+         current = best.get();
+         if (current != null && (candidate.seated < current.seated
+                 || candidate.seated == current.seated && candidate.restart < current.restart))
+         {
+            return false;
+         }
+      } while (!best.compareAndSet(current, candidate));
+
+      publishBest();
+      return true;
+   }
+
+   /**
+    * Copies the best schedule into finalSchedule and finalUnscheduled.
+    */
+   private void publishBest() {
+      BestSchedule current;
+
+      synchronized (best)
+      {
+         current = best.get();
+         if (current == null)
+         {
+            return;
+         }
+         finalSchedule = new ArrayList<>(current.schedule);
+         finalUnscheduled = new ArrayList<>(current.unscheduled);
+         totalSeated = current.seated;
+         totalSchools = current.schools;
+      }
+   }
+
+   /**
+    * Returns the best schedule found so far.
+    *
+    * @return The best schedule, or null if nothing has been scheduled.
+    */
+   public BestSchedule getBest() {
+      return best.get();
+   }
+
+   /**
+    * Notifies the gui that the run is done and with the results.
+    */
+   private void notifyResults() {
+      BestSchedule current = best.get();
+
+      notify(NotifyCmd.LIST);
+      notifyText = "# of Seated Students: " + "<b>" + totalSeated + "</b>" + "<br/>Total Seats: " + "<b>" + xlHandler.totalSeats + "</b>" 
+              + "<br/>Empty Seats: " + "<b>" + (xlHandler.totalSeats - totalSeated) + "</b>" + "<br/>Total # of Students: " + "<b>" + totalStudents + "</b>"
+              + "<br/><br/># of Scheduled Schools: " + "<b>" + totalSchools + "</b>" + "<br/>Total # of Schools: " + "<b>" + schoolList.size() + "</b>";
+      if (current != null && current.hasSeed())
+      {
+         notifyText += "<br/><br/>Seed: " + "<b>" + current.seed + "</b>";
+      }
+      notify(NotifyCmd.TEXT);
+   }
+
+   public void runAlgorithm(ArrayList<School> notScheduled) {
+      int smallSchool, bigDay;
+      ArrayList<Integer> order;
+
+      //WHILE smallest school is smaller than smallest day. Can fit more students
+      do
+      {
+         //scheduleNeedAdds();
+
+         order = new ArrayList<>(needAdd.keySet());
+
+         //Sort order by priority
+         Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+               return Integer.compare(i1, i2);
+            }
+         });
+
+         for (int ord : order)
+         {
+            schedule(needAdd.get(ord));
+         }
+
+         schedule(unscheduled);
+
+         smallSchool = getSmallestSchool(unscheduled);
+         bigDay = getBiggestDay();
+         //System.out.printf("smallSchool: %3d | bigDay %3d\n", smallSchool, bigDay);
+      } while (smallSchool <= bigDay && !done && !isCancelled());
+   }
+
+   public void schedule(ArrayList<School> toSchedule) {
+      ArrayList<Integer> order = randOrder(-1);
+      ArrayList<School> availSchools, selected;
+      Iterator<School> availIter;
+      School school;
+      boolean isSelect = false;
+      Day day;
+
+      //Reset iter
+      iter = 0;
+
+      for (int ord : order)
+      {
+         //IF topten is empty or the run was cancelled, break
+         if (toSchedule.isEmpty() || isCancelled())
+         {
+            return;
+         }
+
+         day = dayList.get(ord);
+         //IF no school can come this day
+         if (!reduction.isLive(day))
+         {
+            continue;
+         }
+         availSchools = getAvail(toSchedule, day);
+
+         //remove scheduled schools and schools too big for the seats left
+         availIter = availSchools.iterator();
+         while (availIter.hasNext())
+         {
+            school = availIter.next();
+            if (school.numStudents > day.getSeats() || scheduledSchools.contains(school))
+            {
+               availIter.remove();
+            }
+         }
+
+         //IF day doesnt have enough seats
+         if (availSchools.isEmpty())
+         {
+            continue;
+         }
+
+         selected = chooseDay(availSchools, day, ord);
+
+         //FOR school in selected, remove
+         for (School sch : selected)
+         {
+            if (scheduledSchools.contains(sch))
+            {
+               unplace(sch, day);
+               toSchedule.remove(sch);
+            }
+            else
+            {
+               //seated += sch.numStudents;
+               scheduledSchools.add(sch);
+               if (unscheduled.remove(sch))
+               {
+                  setUnscheduled(sch, false);
+               }
+               toSchedule.remove(sch);
+               //availSchools.remove(sch);
+               addNeedAdds(sch);
+               iter++;
+               isSelect = true;
+            }
+         }
+      }
+
+      if (!isSelect)
+      {
+         done = true;
+      }
+   }
+
+   public void scheduleNeedAdds() {
+      int smallSchool, bigDay;
+      ArrayList<Integer> order = new ArrayList<>(needAdd.keySet());
+      Iterator schedIter;
+      School temp;
+
+      //Sort order by priority
+      Collections.sort(order, new Comparator<Integer>() {
+         @Override
+         public int compare(Integer i1, Integer i2) {
+            return Integer.compare(i1, i2);
+         }
+      });
+      //NeedAdd should be hashmap with <id,array>. check array size to remove all duplicate schools.
+
+      //while list is not empty, schedule need add
+      for (int ord : order)
+      {
+         smallSchool = getSmallestSchool(needAdd.get(ord));
+         bigDay = getBiggestDay();
+
+         //IF smallschool <= smallday, schedule must add
+         if (smallSchool <= bigDay)
+         {
+            schedule(needAdd.get(ord));
+
+            //IF num split schools == iter, remove from needadds
+            if (needAdd.get(ord).size() != iter && !needAdd.get(ord).isEmpty())
+            {
+               schedIter = scheduledSchools.iterator();
+               while (schedIter.hasNext())
+               {
+                  temp = (School) schedIter.next();
+                  if (temp.id == needAdd.get(ord).get(0).id)
+                  {
+                     unscheduled.add(temp);
+                     setUnscheduled(temp, true);
+                  }
+               }
+               removeScheduledSchool(needAdd.get(ord).get(0));
+
+            }
+            needAdd.remove(ord);
+         }
+      }
+   }
+
+   /**
+    * Adds all schools with the same id to needAdds
+    *
+    * @param school The just added school, to be excluded from need adds
+    */
+   public void addNeedAdds(School school) {
+      boolean exists;
+      ArrayList<School> temp, need;
+      int group = splitGroups.groupOf(school);
+
+      if (group < 0)
+      {
+         return;
+      }
+
+      for (School sch : splitGroups.getParts(group))
+      {
+         //IF id's match, not in needAdds, and not in final schedule
+         if (partUnscheduled[sch.splitIndex])
+         {
+            //Check if already in needAdds. Only its own splitId and its
+            //mustAdd key can hold it
+            need = needAdd.get(sch.splitId);
+            exists = need != null && need.contains(sch);
+            if (!exists && splitGroups.getMustAddKey(sch) >= 0)
+            {
+               need = needAdd.get(splitGroups.getMustAddKey(sch));
+               exists = need != null && need.contains(sch);
+            }
+
+            //IF not in needAdds
+            if (!exists)
+            {
+               //IF needadd already has the key
+               if (needAdd.containsKey(school.splitId))
+               {
+                  needAdd.get(school.splitId).add(sch);
+               } //ELSE make a new mapping
+               else
+               {
+                  temp = new ArrayList<>();
+                  temp.add(sch);
+                  needAdd.put(school.splitId, temp);
+               }
+            }
+         }
+      }
+   }
+
+   public void reset() {
+      scheduledSchools = new ArrayList<>(preScheduled);
+      for (Day day : dayList.values())
+      {
+         day.clearSchools();
+      }
+      if (partDay != null)
+      {
+         Arrays.fill(partDay, null);
+      }
+      //needAdd = new HashMap<>();
+      needAdd = cloneHashMap(mustAdd);
+      done = false;
+   }
+
+   /**
+    * Get Available schools for this date
+    *
+    * @param arr The list to check from
+    * @param day The Day to check
+    * @return A list of available schools
+    */
+   public ArrayList<School> getAvail(ArrayList<School> arr, Day day) {
+      long startTime = System.nanoTime();
+      ArrayList<School> avail = findAvail(arr, day);
+
+      metrics.record(SolverMetrics.Phase.AVAIL, startTime);
+      return avail;
+   }
+
+   /**
+    * Get Available schools for this date using the day's candidate mask.
+    *
+    * @param arr The list to check from
+    * @param day The Day to check
+    * @return A list of available schools
+    */
+   private ArrayList<School> findAvail(ArrayList<School> arr, Day day) {
+      ArrayList<School> avail = new ArrayList<>();
+      long[] candidateMask = day.candidateMask;
+      long bits;
+      int pos, last = -1;
+
+      //Small lists or a day that was never indexed check school by school
+      if (candidateMask == null || arr.size() < candidateMask.length)
+      {
+         return getAvailByMask(arr, day);
+      }
+
+      if (memberMask == null || memberMask.length < candidateMask.length)
+      {
+         memberMask = new long[candidateMask.length];
+      }
+      Arrays.fill(memberMask, 0, candidateMask.length, 0L);
+
+      //Mark the schools in arr. Only works if arr keeps the split list order
+      for (School school : arr)
+      {
+         pos = school.splitIndex;
+         if (pos <= last || pos >= schoolListSplit.size() || schoolListSplit.get(pos) != school)
+         {
+            return getAvailByMask(arr, day);
+         }
+         memberMask[pos >>> 6] |= 1L << pos;
+         last = pos;
+      }
+
+      //AND with the day's candidates a word at a time
+      for (int word = 0; word < candidateMask.length; word++)
+      {
+         bits = memberMask[word] & candidateMask[word];
+         while (bits != 0)
+         {
+            pos = (word << 6) + Long.numberOfTrailingZeros(bits);
+            avail.add(schoolListSplit.get(pos));
+            bits &= bits - 1;
+         }
+      }
+      return avail;
+   }
+
+   /**
+    * Get Available schools for this date by checking each school's mask.
+    *
+    * @param arr The list to check from
+    * @param day The Day to check
+    * @return A list of available schools
+    */
+   private ArrayList<School> getAvailByMask(ArrayList<School> arr, Day day) {
+      ArrayList<School> avail = new ArrayList<>();
+
+      for (School school : arr)
+      {
+         if (school.isAvailable(day))
+         {
+            avail.add(school);
+         }
+      }
+      return avail;
+   }
+
+   /**
+    * Builds every day's candidate mask and candidate array, and the splitId
+    * index, from the split school list.
+    */
+   private void indexAvailability() {
+      int words = (schoolListSplit.size() + 63) >>> 6;
+      long[] mask;
+      int[] candidates;
+      int count;
+
+      for (int pos = 0; pos < schoolListSplit.size(); pos++)
+      {
+         schoolListSplit.get(pos).splitIndex = pos;
+      }
+
+      for (Day day : dayList.values())
+      {
+         mask = new long[words];
+         count = 0;
+         for (int pos = 0; pos < schoolListSplit.size(); pos++)
+         {
+            if (schoolListSplit.get(pos).isAvailable(day))
+            {
+               mask[pos >>> 6] |= 1L << pos;
+               count++;
+            }
+         }
+
+         candidates = new int[count];
+         count = 0;
+         for (int pos = 0; pos < schoolListSplit.size(); pos++)
+         {
+            if ((mask[pos >>> 6] & (1L << pos)) != 0)
+            {
+               candidates[count++] = pos;
+            }
+         }
+         day.candidateMask = mask;
+         day.candidates = candidates;
+      }
+      splitGroups = new SplitIndex(schoolListSplit, mustAdd);
+      reduction = new ProblemReduction(schoolListSplit, dayList.values(), splitGroups);
+      SolverMetrics.get().addReduction(reduction);
+      droppedParts = null;
+      partDay = null;
+      //The kept picks are split indexes of the old list
+      dayMemo.clear();
+   }
+
+   public ArrayList<School> splitSchool(School school) {
+      ArrayList<School> split = new ArrayList<>();
+      //FOR each split num
+      for (int num : school.splitNums)
+      {
+         split.add(new School(school, num, ids.nextId()));
+      }
+      return split;
+   }
+
+   /**
+    * Choose which schools will be scheduled.
+    *
+    * @param dynTable
+    * @param availSchools
+    * @param dayIndex
+    * @return The scheduled schools for the dayIndex
+    */
+   public ArrayList<School> altChooseSchedule(KnapsackTable dynTable, ArrayList<School> availSchools, int dayIndex) {
+      School selected;
+      ArrayList<School> chosen = new ArrayList<>();
+      int copies;
+      int numItems = groupItems(availSchools);
+      Day day = dayList.get(dayIndex);
+      long startTime = System.nanoTime();
+
+      //WHILE weight & items both > 0
+      while (numItems > 0 && day.getSeats() > 0)
+      {
+         //The copies of the item that raised the value by at least epsilon .01
+         copies = dynTable.getCopies(numItems, day.getSeats());
+         for (int pos = itemStart[numItems - 1]; copies > 0; pos++, copies--)
+         {
+            selected = availSchools.get(itemOrder[pos]);
+            takeSchool(selected, day);
+            chosen.add(selected);
+         }
+         numItems--;
+      }
+
+      metrics.record(SolverMetrics.Phase.CHOOSE, startTime);
+      return chosen;
+   }
+
+   /**
+    * Picks the day's schools from the available ones. If the same schools
+    * and seats were solved before in this run, the earlier picks are taken
+    * again without filling the table.
+    *
+    * @param availSchools The schools available on the day.
+    * @param day The day.
+    * @param dayIndex The index of the day.
+    * @return The scheduled schools for the day
+    */
+   private ArrayList<School> chooseDay(ArrayList<School> availSchools, Day day, int dayIndex) {
+      DayMemo.Key key = dayMemo.keyOf(availSchools, schoolListSplit, day.getSeats());
+      int[] picks = key == null ? null : dayMemo.get(key);
+      ArrayList<School> chosen;
+      School selected;
+      long startTime;
+
+      if (picks == null)
+      {
+         chosen = altChooseSchedule(fillTable(dynTable, availSchools, day.getSeats()), availSchools, dayIndex);
+         if (key != null)
+         {
+            dayMemo.put(key, chosen);
+            metrics.addMemo(false);
+         }
+         return chosen;
+      }
+
+      startTime = System.nanoTime();
+      chosen = new ArrayList<>(picks.length);
+      for (int pos : picks)
+      {
+         selected = schoolListSplit.get(pos);
+         takeSchool(selected, day);
+         chosen.add(selected);
+      }
+      metrics.addMemo(true);
+      metrics.record(SolverMetrics.Phase.CHOOSE, startTime);
+      return chosen;
+   }
+
+   /**
+    * Puts a picked school on the day.
+    */
+   private void takeSchool(School selected, Day day) {
+      day.addSchool(selected, false);
+      if (partDay != null && splitGroups.contains(selected))
+      {
+         partDay[selected.splitIndex] = day;
+      }
+      selected.actualDay = day.date;
+   }
+
+   /**
+    * Returns the smallest school size in the list
+    *
+    * @param arr The list.
+    * @return The smallest school size.
+    */
+   public int getSmallestSchool(ArrayList<School> arr) {
+      int smallest = Integer.MAX_VALUE;
+      for (School school : arr)
+      {
+         if (school.numStudents < smallest)
+         {
+            smallest = school.numStudents;
+         }
+      }
+      return smallest;
+   }
+
+   public int getBiggestDay() {
+      int big = Integer.MIN_VALUE;
+
+      for (Day day : dayList.values())
+      {
+         //Seats on a day nothing can come on are never filled
+         if (reduction != null && !reduction.isLive(day))
+         {
+            continue;
+         }
+         if (day.seatsLeft >= big)
+         {
+            big = day.seatsLeft;
+         }
+      }
+      return big;
+   }
+
+   /**
+    * Calculate the average number of students per school.
+    *
+    * @param arr The list of schools
+    */
+   private void calculateAverage(ArrayList<School> arr) {
+      int newAvg = 0;
+
+      for (School s : arr)
+      {
+         newAvg += s.numStudents;
+      }
+      average = newAvg / arr.size();
+   }
+
+   /**
+    * Counts the number of unique schools based on school id.
+    *
+    * @param arr The array to use.
+    * @return The number of unique schools.
+    */
+   public int countSchools(ArrayList<School> arr) {
+      Set uniqueSchools = new HashSet();
+
+      for (School school : arr)
+      {
+         uniqueSchools.add(school.id);
+      }
+
+      return uniqueSchools.size();
+   }
+
+   /**
+    * Returns the seats of all the days that were read.
+    *
+    * @return The number of seats.
+    */
+   public int getAvailableSeats() {
+      return xlHandler.totalSeats;
+   }
+
+   public int getTotalSeats() {
+      int result = 0;
+
+      for (FinalDay day : finalSchedule)
+      {
+         for (School school : day.getSchools())
+         {
+            result += school.numStudents;
+         }
+      }
+      return result;
+   }
+
+   public void setIterations(int iter) {
+      this.iterations = iter;
+   }
+
+   /**
+    * Sets the engine knapsack() runs.
+    *
+    * @param mode The engine.
+    */
+   public void setSolverMode(SolverMode mode) {
+      this.solverMode = mode;
+   }
+
+   /**
+    * Sets the master seed so the next run can be repeated exactly.
+    *
+    * @param seed The master seed.
+    */
+   public void setSeed(long seed) {
+      this.masterSeed = seed;
+      this.seedSet = true;
+   }
+
+   /**
+    * Returns the master seed of the last run, including one taken from the
+    * clock. Setting it as the seed repeats the run.
+    *
+    * @return The master seed.
+    */
+   public long getSeed() {
+      return masterSeed;
+   }
+
+   /**
+    * Sets how long an anytime or exact run may take.
+    *
+    * @param millis The time budget in milliseconds. 0 is no limit, and an
+    * anytime run then stops after the set number of restarts.
+    */
+   public void setTimeBudget(long millis) {
+      this.timeBudget = Math.max(0, millis);
+   }
+
+   /**
+    * Sets the number of seated students that ends an anytime run.
+    *
+    * @param seats The target. 0 is no target.
+    */
+   public void setTargetSeats(int seats) {
+      this.targetSeats = Math.max(0, seats);
+   }
+
+   /**
+    * Sets the share of all available seats that ends an anytime run, such as
+    * .98 to stop once 98% of the seats are filled.
+    *
+    * @param fraction The share of seats. 0 is no target.
+    */
+   public void setTargetFraction(double fraction) {
+      this.targetFraction = Math.max(0, fraction);
+   }
+
+   /**
+    * Returns if the last exact run proved its schedule optimal.
+    *
+    * @return True if the schedule is optimal.
+    */
+   public boolean isProvenOptimal() {
+      return provenOptimal;
+   }
+
+   /**
+    * Sets the number of threads to run restarts on.
+    *
+    * @param numThreads The number of threads. 1 runs restarts in order.
+    */
+   public void setThreads(int numThreads) {
+      this.threads = Math.max(1, numThreads);
+   }
+
+   /**
+    * Sets the number of worker processes to run restarts on. Workers are
+    * started on this host and talk to the model over the loopback address.
+    *
+    * @param numWorkers The number of workers. 0 runs restarts in this
+    * process.
+    */
+   public void setWorkers(int numWorkers) {
+      this.workers = Math.max(0, numWorkers);
+   }
+
+   /**
+    * Sets the number of local search moves tried on the best schedule after
+    * a restart or anytime run.
+    *
+    * @param steps The number of moves. 0 skips the local search.
+    */
+   public void setImproveSteps(long steps) {
+      this.improveSteps = Math.max(0, steps);
+   }
+
+   /**
+    * Sets where the results of seeded restart runs and exact runs without a
+    * time budget are kept. None is used unless set.
+    *
+    * @param cache The cache, or null to always solve.
+    */
+   public void setResultCache(ResultCache cache) {
+      this.resultCache = cache;
+   }
+
+   /**
+    * Returns if the last run's schedule came from the result cache.
+    *
+    * @return True if the run was not solved again.
+    */
+   public boolean isResultReused() {
+      return resultReused;
+   }
+
+   /**
+    * Pins a school to a day and repairs the final schedule around it. Only
+    * the days the school left and any schools pushed off the day are
+    * rescheduled.
+    *
+    * @param school The school from the school list.
+    * @param day The day to pin it to.
+    */
+   public void repairPin(School school, Day day) {
+      LinkedHashSet<Day> affected = new LinkedHashSet<>();
+      ArrayList<School> displaced = new ArrayList<>();
+
+      restoreFinalSchedule();
+      affected.addAll(unscheduleSplit(school, displaced));
+      dropFragments(school);
+      displaced.clear();
+
+      day.addSchool(school, true);
+      preScheduled.add(school);
+      schoolList.remove(school);
+      toAdd.remove(school);
+      mustAdd.remove(school.id);
+      affected.addAll(makeRoom(day, displaced));
+      affected.remove(day);
+
+      repairDays(affected, displaced);
+   }
+
+   /**
+    * Removes a school that cancelled and repairs the final schedule. Only the
+    * days the school left are rescheduled.
+    *
+    * @param school The school, either from the school list or pinned.
+    */
+   public void repairCancel(School school) {
+      LinkedHashSet<Day> affected = new LinkedHashSet<>();
+
+      restoreFinalSchedule();
+      affected.addAll(unscheduleSplit(school, new ArrayList<School>()));
+      for (Day d : dayList.values())
+      {
+         if (d.isPinned(school))
          {
-            continue;
+            d.removeSchool(school, true);
+            affected.add(d);
          }
+      }
+      dropFragments(school);
+      preScheduled.remove(school);
+      schoolList.remove(school);
+      toAdd.remove(school);
+      mustAdd.remove(school.id);
+
+      repairDays(affected, new ArrayList<School>());
+   }
+
+   /**
+    * Changes the number of seats on a day and repairs the final schedule. If
+    * the day lost seats its lowest priority schools are moved elsewhere.
+    *
+    * @param day The day to change.
+    * @param numSeats The new number of seats.
+    */
+   public void repairCapacity(Day day, int numSeats) {
+      LinkedHashSet<Day> affected = new LinkedHashSet<>();
+      ArrayList<School> displaced = new ArrayList<>();
 
-         dynTable = initializeDynTable(availSchools.size(), day.getSeats());
-         filledTable = fillTable(dynTable, availSchools, day.getSeats());
-         selected = altChooseSchedule(filledTable, availSchools, ord);
+      restoreFinalSchedule();
+      xlHandler.totalSeats += numSeats - day.getMaxSeats();
+      day.setMaxStudents(numSeats);
+      affected.add(day);
+      affected.addAll(makeRoom(day, displaced));
 
-         //FOR school in selected, remove
-         for (School sch : selected)
+      repairDays(affected, displaced);
+   }
+
+   /**
+    * Loads the final schedule back into the days and rebuilds the scheduled
+    * and unscheduled lists from it.
+    */
+   private void restoreFinalSchedule() {
+      Day day;
+
+      if (schoolListSplit == null)
+      {
+         createSplitSchoolList();
+      }
+      for (Day d : dayList.values())
+      {
+         d.clearSchools();
+      }
+      partDay = null;
+      iterationSeed = BestSchedule.NO_SEED;
+      iterationRestart = BestSchedule.NO_RESTART;
+      placement.clear();
+      for (FinalDay saved : finalSchedule)
+      {
+         day = dayList.get(saved.index);
+         if (day != null)
          {
-            if (scheduledSchools.contains(sch))
-            {
-               day.removeSchool(sch, false);
-               toSchedule.remove(sch);
-            }
-            else
+            day.restore(saved);
+            for (School sch : saved.getSchools())
             {
-               //seated += sch.numStudents;
-               scheduledSchools.add(sch);
-               unscheduled.remove(sch);
-               toSchedule.remove(sch);
-               //availSchools.remove(sch);
-               addNeedAdds(sch);
-               iter++;
-               isSelect = true;
+               placement.put(sch, day);
             }
          }
       }
 
-      if (!isSelect)
+      scheduledSchools = new ArrayList<>(preScheduled);
+      unscheduled = new ArrayList<>();
+      for (School sch : schoolListSplit)
       {
-         done = true;
+         if (placement.containsKey(sch))
+         {
+            scheduledSchools.add(sch);
+         }
+         else if (!isDropped(sch))
+         {
+            unscheduled.add(sch);
+         }
       }
+      needAdd.clear();
+      done = false;
    }
 
-   public void scheduleNeedAdds() {
-      int smallSchool, bigDay;
-      ArrayList<Integer> order = new ArrayList<>(needAdd.keySet());
-      Iterator schedIter;
-      School temp;
-
-      //Sort order by priority
-      Collections.sort(order, new Comparator<Integer>() {
-         @Override
-         public int compare(Integer i1, Integer i2) {
-            return Integer.compare(i1, i2);
-         }
-      });
-      //NeedAdd should be hashmap with <id,array>. check array size to remove all duplicate schools.
+   /**
+    * Takes every part of a school off the days it is on.
+    *
+    * @param school Any part of the school.
+    * @param displaced Gets the parts that were taken off.
+    * @return The days that lost a part.
+    */
+   private ArrayList<Day> unscheduleSplit(School school, ArrayList<School> displaced) {
+      ArrayList<Day> left = new ArrayList<>();
+      int group = splitGroups.groupOf(school);
+      Day day;
 
-      //while list is not empty, schedule need add
-      for (int ord : order)
+      if (group < 0)
       {
-         smallSchool = getSmallestSchool(needAdd.get(ord));
-         bigDay = getBiggestDay();
-
-         //IF smallschool <= smallday, schedule must add
-         if (smallSchool <= bigDay)
+         return left;
+      }
+      for (School sch : splitGroups.getParts(group))
+      {
+         day = placement.remove(sch);
+         if (day != null)
          {
-            schedule(needAdd.get(ord));
-
-            //IF num split schools == iter, remove from needadds
-            if (needAdd.get(ord).size() != iter && !needAdd.get(ord).isEmpty())
-            {
-               schedIter = scheduledSchools.iterator();
-               while (schedIter.hasNext())
-               {
-                  temp = (School) schedIter.next();
-                  if (temp.id == needAdd.get(ord).get(0).id)
-                  {
-                     unscheduled.add(temp);
-                  }
-               }
-               removeScheduledSchool(needAdd.get(ord).get(0));
-
-            }
-            needAdd.remove(ord);
+            day.removeSchool(sch, false);
+            scheduledSchools.remove(sch);
+            unscheduled.add(sch);
+            displaced.add(sch);
+            left.add(day);
          }
       }
+      return left;
    }
 
    /**
-    * Adds all schools with the same id to needAdds
+    * Drops every part of a school from the problem. The parts keep their
+    * places in the split school list, so only the days they could come on
+    * change.
     *
-    * @param school The just added school, to be excluded from need adds
+    * @param school Any part of the school.
     */
-   public void addNeedAdds(School school) {
-      boolean exists;
-      ArrayList<School> temp;
+   private void dropFragments(School school) {
+      int group = splitGroups.groupOf(school);
+      long[] mask;
+      Day day;
 
-      for (School sch : unscheduled)
+      if (group < 0)
       {
-         exists = false;
-         //IF id's match, not in needAdds, and not in final schedule
-         if ((sch.splitId == school.splitId))
+         return;
+      }
+      if (droppedParts == null)
+      {
+         droppedParts = new boolean[schoolListSplit.size()];
+      }
+      for (School sch : splitGroups.getParts(group))
+      {
+         if (droppedParts[sch.splitIndex])
          {
-            //Check if already in needAdds
-            for (ArrayList<School> need : needAdd.values())
-            {
-               if (need.contains(sch))
-               {
-                  exists = true;
-                  break;
-               }
-            }
+            continue;
+         }
+         droppedParts[sch.splitIndex] = true;
+         unscheduled.remove(sch);
+         scheduledSchools.remove(sch);
 
-            //IF not in needAdds
-            if (!exists)
+         //Only the days in the part's own mask list it
+         mask = sch.availMask;
+         for (int word = 0; word < mask.length; word++)
+         {
+            for (long bits = mask[word]; bits != 0; bits &= bits - 1)
             {
-               //IF needadd already has the key
-               if (needAdd.containsKey(school.splitId))
-               {
-                  needAdd.get(school.splitId).add(sch);
-               } //ELSE make a new mapping
-               else
+               day = dayList.get((word << 6) + Long.numberOfTrailingZeros(bits));
+               if (day != null)
                {
-                  temp = new ArrayList<>();
-                  temp.add(sch);
-                  needAdd.put(school.splitId, temp);
+                  removeCandidate(day, sch.splitIndex);
                }
             }
          }
       }
    }
 
-   public void reset() {
-      scheduledSchools = new ArrayList<>(preScheduled);
-      for (Day day : dayList.values())
-      {
-         day.clearSchools();
-      }
-      //needAdd = new HashMap<>();
-      needAdd = cloneHashMap(mustAdd);
-      done = false;
+   /**
+    * Returns if a repair dropped a part of the split school list.
+    */
+   private boolean isDropped(School school) {
+      return droppedParts != null && splitGroups.contains(school) && droppedParts[school.splitIndex];
    }
 
    /**
-    * Get Available schools for this date
+    * Takes a part out of a day's candidate mask and candidates. Both are
+    * copied first, since copies of the day share them.
     *
-    * @param arr The list to check from
-    * @param day The Day to check
-    * @return A list of available schools
+    * @param day The day.
+    * @param pos The part's position in the split school list.
     */
-   public ArrayList<School> getAvail(ArrayList<School> arr, Day day) {
-      ArrayList<School> avail = new ArrayList<>();
+   private static void removeCandidate(Day day, int pos) {
+      int at = Arrays.binarySearch(day.candidates, pos);
+      int[] candidates;
 
-      for (School school : arr)
+      if (at < 0)
       {
-         if (school.availDates.contains(day))
-         {
-            avail.add(school);
-         }
+         return;
       }
-      return avail;
+      day.candidateMask = day.candidateMask.clone();
+      day.candidateMask[pos >>> 6] &= ~(1L << pos);
+      candidates = new int[day.candidates.length - 1];
+      System.arraycopy(day.candidates, 0, candidates, 0, at);
+      System.arraycopy(day.candidates, at + 1, candidates, at, candidates.length - at);
+      day.candidates = candidates;
    }
 
-   public ArrayList<School> splitSchool(School school) {
-      ArrayList<School> split = new ArrayList<>();
-      //FOR each split num
-      for (int num : school.splitNums)
+   /**
+    * Takes the lowest priority schools off a day until it is no longer over
+    * its seats. Pinned schools stay.
+    *
+    * @param day The day.
+    * @param displaced Gets the parts that were taken off.
+    * @return The other days that lost a part of a removed school.
+    */
+   private ArrayList<Day> makeRoom(Day day, ArrayList<School> displaced) {
+      ArrayList<Day> left = new ArrayList<>();
+      School lowest;
+
+      while (day.getSeats() < 0)
       {
-         split.add(new School(school, num));
+         lowest = null;
+         for (School sch : day.getSchools())
+         {
+            if (!day.isPinned(sch) && (lowest == null || sch.priority < lowest.priority))
+            {
+               lowest = sch;
+            }
+         }
+         if (lowest == null)
+         {
+            break;
+         }
+         left.addAll(unscheduleSplit(lowest, displaced));
       }
-      return split;
+      return left;
    }
 
    /**
-    * Choose which schools will be scheduled.
+    * Refills the affected days from the unscheduled schools, then tries the
+    * displaced schools on any day with room. Split schools that are only
+    * partly placed are taken back out. Saves the result as the final
+    * schedule.
     *
-    * @param dynTable
-    * @param availSchools
-    * @param dayIndex
-    * @return The scheduled schools for the dayIndex
+    * @param affected The days that lost or gained seats.
+    * @param displaced The schools that were taken off a day.
     */
-   public ArrayList<School> altChooseSchedule(Double[][] dynTable, ArrayList<School> availSchools, int dayIndex) {
-      School selected;
-      ArrayList<School> chosen = new ArrayList<>();
-      int weights;
-      int numItems = availSchools.size();
-      Day day = dayList.get(dayIndex);
+   private void repairDays(Collection<Day> affected, ArrayList<School> displaced) {
+      ArrayList<School> placed = new ArrayList<>();
+      ArrayList<School> partial;
 
-      //WHILE weight & items both > 0
-      while (numItems > 0 && day.getSeats() > 0)
+      for (Day d : affected)
       {
-         weights = day.getSeats();
-
-         //IF values are not equal with epsilon .01 Compare doubles to 2nd decimal
-         if (Math.abs(dynTable[numItems][weights] - dynTable[numItems - 1][weights]) >= .01)
+         placed.addAll(repairDay(d, unscheduled));
+      }
+      displaced.retainAll(unscheduled);
+      if (!displaced.isEmpty())
+      {
+         for (Day d : dayList.values())
          {
-            selected = availSchools.get(numItems - 1);
-            day.addSchool(selected, false);
-            selected.actualDay = day.date;
-            chosen.add(selected);
+            if (!affected.contains(d) && d.getSeats() >= getSmallestSchool(displaced))
+            {
+               placed.addAll(repairDay(d, displaced));
+            }
+         }
+      }
 
+      //Split schools must have every part placed
+      partial = new ArrayList<>();
+      for (School sch : placed)
+      {
+         for (School part : splitGroups.getParts(splitGroups.groupOf(sch)))
+         {
+            if (!placement.containsKey(part) && !isDropped(part))
+            {
+               partial.add(sch);
+               break;
+            }
          }
-         numItems--;
+      }
+      for (School sch : partial)
+      {
+         placement.remove(sch).removeSchool(sch, false);
+         scheduledSchools.remove(sch);
+         unscheduled.add(sch);
       }
 
-      return chosen;
+      best.set(snapshot());
+      publishBest();
+      notifyResults();
    }
 
    /**
-    * Returns the smallest school size in the list
+    * Runs the knapsack for one day over the given schools.
     *
-    * @param arr The list.
-    * @return The smallest school size.
+    * @param day The day to fill.
+    * @param from The schools to choose from.
+    * @return The schools placed on the day.
     */
-   public int getSmallestSchool(ArrayList<School> arr) {
-      int smallest = Integer.MAX_VALUE;
-      for (School school : arr)
+   private ArrayList<School> repairDay(Day day, ArrayList<School> from) {
+      ArrayList<School> availSchools = getAvail(from, day);
+      ArrayList<School> selected;
+
+      if (availSchools.isEmpty() || getSmallestSchool(availSchools) > day.getSeats())
       {
-         if (school.numStudents < smallest)
-         {
-            smallest = school.numStudents;
-         }
+         return new ArrayList<>();
       }
-      return smallest;
-   }
-
-   public int getBiggestDay() {
-      int big = Integer.MIN_VALUE;
-
-      for (Day day : dayList.values())
+      selected = altChooseSchedule(fillTable(dynTable, availSchools, day.getSeats()), availSchools, day.index);
+      for (School sch : selected)
       {
-         if (day.seatsLeft >= big)
+         scheduledSchools.add(sch);
+         placement.put(sch, day);
+         unscheduled.remove(sch);
+         if (from != unscheduled)
          {
-            big = day.seatsLeft;
+            from.remove(sch);
          }
       }
-      return big;
+      return selected;
    }
 
    /**
-    * Calculate the average number of students per school.
-    *
-    * @param arr The list of schools
+    * Starts tracking a restart. Every part is unscheduled and on no day.
     */
-   private void calculateAverage(ArrayList<School> arr) {
-      int newAvg = 0;
+   private void trackUnscheduled() {
+      int size = schoolListSplit.size();
 
-      for (School s : arr)
+      if (partDay == null || partDay.length != size)
       {
-         newAvg += s.numStudents;
+         partDay = new Day[size];
+      }
+      if (partUnscheduled == null || partUnscheduled.length != size)
+      {
+         partUnscheduled = new boolean[size];
+      }
+      if (groupUnscheduled == null || groupUnscheduled.length != splitGroups.size())
+      {
+         groupUnscheduled = new int[splitGroups.size()];
+      }
+
+      Arrays.fill(partDay, null);
+      Arrays.fill(partUnscheduled, true);
+      for (int group = 0; group < groupUnscheduled.length; group++)
+      {
+         groupUnscheduled[group] = splitGroups.getParts(group).length;
       }
-      average = newAvg / arr.size();
    }
 
    /**
-    * Counts the number of unique schools based on school id.
+    * Records that a part was added to or removed from unscheduled.
     *
-    * @param arr The array to use.
-    * @return The number of unique schools.
+    * @param school The part.
+    * @param value True if it was added.
     */
-   public int countSchools(ArrayList<School> arr) {
-      Set uniqueSchools = new HashSet();
+   private void setUnscheduled(School school, boolean value) {
+      int pos = school.splitIndex;
 
-      for (School school : arr)
+      if (partUnscheduled != null && splitGroups.contains(school) && partUnscheduled[pos] != value)
       {
-         uniqueSchools.add(school.id);
+         partUnscheduled[pos] = value;
+         groupUnscheduled[splitGroups.groupOf(school)] += value ? 1 : -1;
       }
-
-      return uniqueSchools.size();
    }
 
-   public int getTotalSeats() {
-      int result = 0;
+   /**
+    * Removes every part of a school from a day.
+    *
+    * @param school Any part of the school.
+    * @param day The day.
+    */
+   private void unplace(School school, Day day) {
+      int group;
 
-      for (FinalDay day : finalSchedule)
+      day.removeSchool(school, false);
+      if (partDay != null && (group = splitGroups.groupOf(school)) >= 0)
       {
-         for (School school : day.getSchools())
+         for (School part : splitGroups.getParts(group))
          {
-            result += school.numStudents;
+            if (partDay[part.splitIndex] == day)
+            {
+               partDay[part.splitIndex] = null;
+            }
          }
       }
-      return result;
-   }
-
-   public void setIterations(int iter) {
-      this.iterations = iter;
    }
 
    /**
@@ -869,11 +2653,27 @@ System.out.println();
    public void removeScheduledSchool(School school) {
       Iterator<School> scheduleIter = scheduledSchools.iterator();
       School tempSchool;
+      Day day;
+      int group = splitGroups == null ? -1 : splitGroups.groupOf(school);
 
       //Remove schools from the daylist
-      for (Day d : dayList.values())
+      if (partDay != null && group >= 0)
+      {
+         for (School part : splitGroups.getParts(group))
+         {
+            day = partDay[part.splitIndex];
+            if (day != null)
+            {
+               unplace(part, day);
+            }
+         }
+      }
+      else
       {
-         d.removeSchool(school, false);
+         for (Day d : dayList.values())
+         {
+            d.removeSchool(school, false);
+         }
       }
 
       //Remove schools from the scheduledschools
@@ -0,0 +1,116 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Carries the model's notifications to whoever shows them, without making
+ * the solver wait. The model posts and returns at once. The gui drains the
+ * events on its own thread, a frame at a time.
+ *
+ * Progress is coalesced: only the latest progress since the last drain is
+ * kept, so restarts cost one write each however fast they run. Every other
+ * event is queued with the text the model had when it was posted. If no one
+ * drains, the oldest events are dropped past MAX_QUEUED.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class ModelEvents {
+
+   /**
+    * The most events kept waiting for a drain
+    */
+   public static final int MAX_QUEUED = 1000;
+
+   /**
+    * One notification from the model.
+    */
+   public static class Event {
+
+      private final LogicModel.NotifyCmd cmd;
+      private final String text;
+      private final int progress;
+
+      Event(LogicModel.NotifyCmd cmd, String text, int progress) {
+         this.cmd = cmd;
+         this.text = text;
+         this.progress = progress;
+      }
+
+      /**
+       * @return What happened.
+       */
+      public LogicModel.NotifyCmd getCmd() {
+         return cmd;
+      }
+
+      /**
+       * @return The model's notify text when the event was posted.
+       */
+      public String getText() {
+         return text;
+      }
+
+      /**
+       * @return The number of restarts done, for PROG events.
+       */
+      public int getProgress() {
+         return progress;
+      }
+   }
+
+   private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger queued = new AtomicInteger();
+   /**
+    * The latest progress not yet drained, or -1
+    */
+   private final AtomicInteger progress = new AtomicInteger(-1);
+
+   /**
+    * Posts an event.
+    *
+    * @param cmd What happened.
+    * @param text The model's notify text.
+    */
+   void post(LogicModel.NotifyCmd cmd, String text) {
+      queue.add(new Event(cmd, text, -1));
+      if (queued.incrementAndGet() > MAX_QUEUED && queue.poll() != null)
+      {
+         queued.decrementAndGet();
+      }
+   }
+
+   /**
+    * Posts progress, replacing any progress not yet drained.
+    *
+    * @param done The number of restarts done.
+    */
+   void progress(int done) {
+      progress.lazySet(done);
+   }
+
+   /**
+    * Takes every event posted since the last drain. The latest progress
+    * comes first, then the other events in the order they were posted.
+    *
+    * @return The events, empty if there were none.
+    */
+   public ArrayList<Event> drain() {
+      ArrayList<Event> events = new ArrayList<>();
+      int done = progress.getAndSet(-1);
+      Event event;
+
+      if (done >= 0)
+      {
+         events.add(new Event(LogicModel.NotifyCmd.PROG, null, done));
+      }
+      while ((event = queue.poll()) != null)
+      {
+         queued.decrementAndGet();
+         events.add(event);
+      }
+      return events;
+   }
+}
@@ -0,0 +1,306 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.IdentityHashMap;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Writes the scheduling problem in a compact binary form and reads it back,
+ * so a worker process can run restarts without the workbook. Holds the days
+ * with their seats and pinned schools, every school with its availability
+ * as a bit mask, and the must add schools.
+ *
+ * School ids and split ids are kept, and the id counter is carried over, so
+ * a decoded model splits schools into the same parts with the same ids and
+ * any restart seed gives the same schedule on both sides.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class ProblemCodec {
+
+   /**
+    * Marks the start of an encoded problem
+    */
+   private static final int MAGIC = 0x4C42444C;
+   /**
+    * The format version. Change when the layout changes
+    */
+   private static final int VERSION = 1;
+
+   /**
+    * Writes the model's problem. Call before the model splits its schools
+    * for a run, so the id counter matches the decoded model's.
+    *
+    * @param model The model to write.
+    * @param out Where to write it.
+    * @throws IOException If writing fails.
+    */
+   public static void write(LogicModel model, DataOutput out) throws IOException {
+      write(model, out, false);
+   }
+
+   /**
+    * Writes what the solver's result depends on, for hashing. Leaves out
+    * the id counters, which grow every time the schools are split, and the
+    * time of day the dates were made at, so every read of the same workbook
+    * writes the same bytes.
+    *
+    * @param model The model to write.
+    * @param out Where to write it.
+    * @throws IOException If writing fails.
+    */
+   static void writeCanonical(LogicModel model, DataOutput out) throws IOException {
+      write(model, out, true);
+   }
+
+   private static void write(LogicModel model, DataOutput out, boolean canonical) throws IOException {
+      IdentityHashMap<School, Integer> table = new IdentityHashMap<>();
+      ArrayList<School> schools = new ArrayList<>(model.schoolList);
+      TreeMap<Integer, Day> days = new TreeMap<>(model.dayList);
+
+      for (int pos = 0; pos < schools.size(); pos++)
+      {
+         table.put(schools.get(pos), pos);
+      }
+      //Pinned schools are not in the school list
+      for (Day day : days.values())
+      {
+         addToTable(day.initialSchools, schools, table);
+      }
+      addToTable(model.preScheduled, schools, table);
+      addToTable(model.toAdd, schools, table);
+
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(model.TotalDays);
+      out.writeInt(canonical ? 0 : model.ids.peekId());
+      out.writeInt(canonical ? 0 : model.ids.peekSplitId());
+
+      out.writeInt(schools.size());
+      out.writeInt(model.schoolList.size());
+      for (School school : schools)
+      {
+         writeSchool(school, out);
+      }
+
+      out.writeInt(days.size());
+      for (Entry<Integer, Day> entry : days.entrySet())
+      {
+         Day day = entry.getValue();
+
+         out.writeInt(entry.getKey());
+         out.writeInt(day.index);
+         out.writeInt(day.getMaxSeats());
+         if (canonical)
+         {
+            out.writeLong(day.date.get(Calendar.YEAR) * 10000L + day.date.get(Calendar.MONTH) * 100
+                    + day.date.get(Calendar.DAY_OF_MONTH));
+         }
+         else
+         {
+            out.writeLong(day.date.getTimeInMillis());
+         }
+         writeRefs(day.initialSchools, table, out);
+      }
+
+      writeRefs(model.preScheduled, table, out);
+      writeRefs(model.toAdd, table, out);
+   }
+
+   /**
+    * Reads a problem into a new model, ready for createSplitSchoolList().
+    * Sets the school id counters.
+    *
+    * @param in Where to read from.
+    * @return The model.
+    * @throws IOException If reading fails or the data is not a problem.
+    */
+   public static LogicModel read(DataInput in) throws IOException {
+      //A new model starts its own ids
+      LogicModel model = new LogicModel();
+
+      read(model, in);
+      return model;
+   }
+
+   /**
+    * Reads a problem into a model in place of its schools and days, as if
+    * its workbook had just been read. Sets the model's id counters.
+    *
+    * @param model The model to read into.
+    * @param in Where to read from.
+    * @throws IOException If reading fails or the data is not a problem.
+    */
+   public static void read(LogicModel model, DataInput in) throws IOException {
+      School[] schools;
+      Day day;
+      int numListed, nextId, nextSplitId, key;
+
+      if (in.readInt() != MAGIC)
+      {
+         throw new IOException("Not an encoded problem");
+      }
+      if (in.readInt() != VERSION)
+      {
+         throw new IOException("Unknown problem version");
+      }
+
+      model.resetModel();
+      model.preScheduled.clear();
+      model.toAdd.clear();
+      model.TotalDays = in.readInt();
+      nextId = in.readInt();
+      nextSplitId = in.readInt();
+
+      schools = new School[in.readInt()];
+      numListed = in.readInt();
+      for (int pos = 0; pos < schools.length; pos++)
+      {
+         schools[pos] = readSchool(in);
+         if (pos < numListed)
+         {
+            model.schoolList.add(schools[pos]);
+         }
+      }
+
+      for (int count = in.readInt(); count > 0; count--)
+      {
+         key = in.readInt();
+         day = new Day(in.readInt(), in.readInt());
+         day.date.setTimeInMillis(in.readLong());
+         for (School school : readRefs(schools, in))
+         {
+            day.addSchool(school, true);
+         }
+         model.dayList.put(key, day);
+      }
+
+      //Availability is kept as a mask, so the days are only needed now
+      for (School school : schools)
+      {
+         long[] mask = school.availMask;
+
+         school.availMask = new long[1];
+         for (int word = 0; word < mask.length; word++)
+         {
+            for (long bits = mask[word]; bits != 0; bits &= bits - 1)
+            {
+               school.addDay(model.dayList.get(findDay(model, word * 64 + Long.numberOfTrailingZeros(bits))));
+            }
+         }
+      }
+
+      model.preScheduled.addAll(readRefs(schools, in));
+      model.toAdd.addAll(readRefs(schools, in));
+      model.fileRead = true;
+      model.ids.resume(nextId, nextSplitId);
+   }
+
+   private static void writeSchool(School school, DataOutput out) throws IOException {
+      out.writeInt(school.id);
+      out.writeInt(school.splitId);
+      out.writeUTF(school.name == null ? "" : school.name);
+      out.writeDouble(school.priority);
+      out.writeInt(school.numStudents);
+      out.writeInt(school.totalNumStudents);
+      out.writeBoolean(school.visited);
+      out.writeBoolean(school.split);
+      out.writeInt(school.split ? school.splitNums.size() : 0);
+      if (school.split)
+      {
+         for (int num : school.splitNums)
+         {
+            out.writeInt(num);
+         }
+      }
+      out.writeInt(school.availMask.length);
+      for (long word : school.availMask)
+      {
+         out.writeLong(word);
+      }
+   }
+
+   private static School readSchool(DataInput in) throws IOException {
+      School school = new School(in.readInt(), in.readInt());
+
+      school.name = in.readUTF();
+      school.priority = in.readDouble();
+      school.numStudents = in.readInt();
+      school.totalNumStudents = in.readInt();
+      school.visited = in.readBoolean();
+      school.split = in.readBoolean();
+      for (int count = in.readInt(); count > 0; count--)
+      {
+         school.splitNums.add(in.readInt());
+      }
+      school.availMask = new long[in.readInt()];
+      for (int word = 0; word < school.availMask.length; word++)
+      {
+         school.availMask[word] = in.readLong();
+      }
+      return school;
+   }
+
+   /**
+    * Adds the schools not yet in the school table to the end of it.
+    */
+   private static void addToTable(ArrayList<School> list, ArrayList<School> schools,
+           IdentityHashMap<School, Integer> table) {
+      for (School school : list)
+      {
+         if (!table.containsKey(school))
+         {
+            table.put(school, schools.size());
+            schools.add(school);
+         }
+      }
+   }
+
+   /**
+    * Writes a list of schools as positions in the school table.
+    */
+   private static void writeRefs(ArrayList<School> list, IdentityHashMap<School, Integer> table,
+           DataOutput out) throws IOException {
+      out.writeInt(list.size());
+      for (School school : list)
+      {
+         out.writeInt(table.get(school));
+      }
+   }
+
+   private static ArrayList<School> readRefs(School[] schools, DataInput in) throws IOException {
+      ArrayList<School> list = new ArrayList<>();
+
+      for (int count = in.readInt(); count > 0; count--)
+      {
+         list.add(schools[in.readInt()]);
+      }
+      return list;
+   }
+
+   /**
+    * Returns the dayList key of the day with the given index.
+    */
+   private static Integer findDay(LogicModel model, int index) {
+      Day day = model.dayList.get(index);
+
+      if (day != null && day.index == index)
+      {
+         return index;
+      }
+      for (Entry<Integer, Day> entry : model.dayList.entrySet())
+      {
+         if (entry.getValue().index == index)
+         {
+            return entry.getKey();
+         }
+      }
+      return null;
+   }
+}
@@ -0,0 +1,331 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Shrinks the problem the restarts solve. Built once a run, after the
+ * schools are split, with four reductions that never cost a seat:
+ *
+ * - A fragment too big for every day it can come on is dropped, with the
+ * other parts of its school, since a school is only kept whole.
+ * - A school that fits only one day is fixed to it, if everything that can
+ * come that day fits at once, so the day never has to choose.
+ * - Schools with the same size, priority and days are put in one class, so a
+ * day's table takes them as one item with a number of copies.
+ * - A day that nothing is left to come on is marked empty and skipped.
+ *
+ * The reduction is only read once built, so parallel workers share it.
+ * Days are kept by index, since every worker has its own copies.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class ProblemReduction {
+
+   /**
+    * The split school list the reduction was built from
+    */
+   private final ArrayList<School> schoolListSplit;
+   /**
+    * True for every position in the split school list that is dropped
+    */
+   private final boolean[] dropped;
+   /**
+    * The index of the day every position is fixed to, -1 if none
+    */
+   private final int[] fixedDay;
+   /**
+    * The positions that are fixed, in split school list order
+    */
+   private final int[] fixed;
+   /**
+    * The class of every position, -1 if it is alike no other school
+    */
+   private final int[] classOf;
+   /**
+    * The number of classes
+    */
+   private final int classes;
+   /**
+    * The indexes of the days something can still come on
+    */
+   private final HashSet<Integer> liveDays = new HashSet<>();
+   private int numDropped, numMerged, numEmpty;
+
+   /**
+    * Builds the reduction. The days must already have their candidates.
+    *
+    * @param schoolListSplit The split school list.
+    * @param days The days, with any pinned schools on them.
+    * @param splitGroups The parts of every school.
+    */
+   public ProblemReduction(ArrayList<School> schoolListSplit, Collection<Day> days, SplitIndex splitGroups) {
+      HashMap<String, Integer> classKeys = new HashMap<>();
+      int size = schoolListSplit.size();
+      int[] fitDays = new int[size], onlyDay = new int[size], members;
+      HashSet<Integer> uncontested = new HashSet<>();
+      ArrayList<Integer> fixedList = new ArrayList<>();
+      School school;
+      String key;
+      Integer cls;
+      long load;
+      int count;
+
+      this.schoolListSplit = schoolListSplit;
+      dropped = new boolean[size];
+      fixedDay = new int[size];
+      classOf = new int[size];
+      Arrays.fill(fixedDay, -1);
+      Arrays.fill(classOf, -1);
+
+      //Count the days every school fits on
+      for (Day day : days)
+      {
+         for (int pos : day.candidates)
+         {
+            if (schoolListSplit.get(pos).numStudents <= day.initialSeatsLeft)
+            {
+               fitDays[pos]++;
+               onlyDay[pos] = day.index;
+            }
+         }
+      }
+
+      //Drop the fragments that fit no day, and the rest of their school
+      for (int pos = 0; pos < size; pos++)
+      {
+         if (fitDays[pos] == 0 && !dropped[pos])
+         {
+            for (School part : splitGroups.getParts(splitGroups.groupOf(schoolListSplit.get(pos))))
+            {
+               dropped[part.splitIndex] = true;
+               numDropped++;
+            }
+         }
+      }
+
+      //Fix the schools with one day, if that day can take all who fit it
+      for (Day day : days)
+      {
+         load = 0;
+         for (int pos : day.candidates)
+         {
+            if (!dropped[pos] && schoolListSplit.get(pos).numStudents <= day.initialSeatsLeft)
+            {
+               load += schoolListSplit.get(pos).numStudents;
+            }
+         }
+         if (load <= day.initialSeatsLeft)
+         {
+            uncontested.add(day.index);
+         }
+      }
+      for (int pos = 0; pos < size; pos++)
+      {
+         school = schoolListSplit.get(pos);
+         if (!dropped[pos] && fitDays[pos] == 1 && uncontested.contains(onlyDay[pos])
+                 && isWhole(school, splitGroups) && school.priority >= KnapsackTable.EPSILON)
+         {
+            fixedDay[pos] = onlyDay[pos];
+            fixedList.add(pos);
+         }
+      }
+      fixed = new int[fixedList.size()];
+      for (int pos = 0; pos < fixed.length; pos++)
+      {
+         fixed[pos] = fixedList.get(pos);
+      }
+
+      //Put the schools that are alike in classes, keeping the ones with copies
+      members = new int[size];
+      for (int pos = 0; pos < size; pos++)
+      {
+         school = schoolListSplit.get(pos);
+         if (dropped[pos] || fixedDay[pos] >= 0 || !isWhole(school, splitGroups))
+         {
+            continue;
+         }
+         key = keyOf(school);
+         cls = classKeys.get(key);
+         if (cls == null)
+         {
+            cls = classKeys.size();
+            classKeys.put(key, cls);
+         }
+         classOf[pos] = cls;
+         members[cls]++;
+      }
+      count = 0;
+      for (int c = 0; c < classKeys.size(); c++)
+      {
+         //Renumber the classes with copies, and mark the rest alone
+         members[c] = members[c] > 1 ? count++ : -1;
+      }
+      for (int pos = 0; pos < size; pos++)
+      {
+         if (classOf[pos] >= 0)
+         {
+            classOf[pos] = members[classOf[pos]];
+            if (classOf[pos] >= 0)
+            {
+               numMerged++;
+            }
+         }
+      }
+      classes = count;
+
+      //Mark the days that something can still come on
+      for (Day day : days)
+      {
+         for (int pos : day.candidates)
+         {
+            if (!dropped[pos] && fixedDay[pos] < 0 && schoolListSplit.get(pos).numStudents <= day.initialSeatsLeft)
+            {
+               liveDays.add(day.index);
+               break;
+            }
+         }
+      }
+      numEmpty = days.size() - liveDays.size();
+   }
+
+   /**
+    * Returns if a school is not split and not a must add, so it can be
+    * placed without looking at other parts.
+    */
+   private static boolean isWhole(School school, SplitIndex splitGroups) {
+      return splitGroups.getParts(splitGroups.groupOf(school)).length == 1
+              && splitGroups.getMustAddKey(school) < 0;
+   }
+
+   /**
+    * Returns the size, priority and days of a school as one key.
+    */
+   private static String keyOf(School school) {
+      long[] mask = school.availMask;
+      int words = mask.length;
+      StringBuilder key = new StringBuilder();
+
+      //Masks can end in unused words
+      while (words > 0 && mask[words - 1] == 0)
+      {
+         words--;
+      }
+      key.append(school.numStudents).append('/').append(Double.doubleToLongBits(school.priority));
+      for (int word = 0; word < words; word++)
+      {
+         key.append('/').append(mask[word]);
+      }
+      return key.toString();
+   }
+
+   /**
+    * Returns the schools a restart has to schedule: the split school list
+    * without the dropped and fixed schools.
+    *
+    * @return A new list, in split school list order.
+    */
+   public ArrayList<School> getWorkList() {
+      ArrayList<School> work = new ArrayList<>(schoolListSplit.size());
+
+      for (School school : schoolListSplit)
+      {
+         if (!dropped[school.splitIndex] && fixedDay[school.splitIndex] < 0)
+         {
+            work.add(school);
+         }
+      }
+      return work;
+   }
+
+   /**
+    * Returns the fixed schools.
+    *
+    * @return Their positions in the split school list.
+    */
+   public int[] getFixed() {
+      return fixed;
+   }
+
+   /**
+    * Returns the day a school is fixed to.
+    *
+    * @param pos The school's position in the split school list.
+    * @return The index of the day, or -1 if it is not fixed.
+    */
+   public int getFixedDay(int pos) {
+      return fixedDay[pos];
+   }
+
+   /**
+    * Returns the class of a school.
+    *
+    * @param school The school.
+    * @return The class, or -1 if no other school is alike or it is not in
+    * the split school list.
+    */
+   public int classOf(School school) {
+      int pos = school.splitIndex;
+
+      if (pos < 0 || pos >= classOf.length || schoolListSplit.get(pos) != school)
+      {
+         return -1;
+      }
+      return classOf[pos];
+   }
+
+   /**
+    * @return The number of classes.
+    */
+   public int getClasses() {
+      return classes;
+   }
+
+   /**
+    * Returns if anything is left to come on a day.
+    *
+    * @param day The day.
+    * @return False if the day can be skipped.
+    */
+   public boolean isLive(Day day) {
+      return liveDays.contains(day.index);
+   }
+
+   /**
+    * @return The number of fragments dropped.
+    */
+   public int getDropped() {
+      return numDropped;
+   }
+
+   /**
+    * @return The number of schools in a class with copies.
+    */
+   public int getMerged() {
+      return numMerged;
+   }
+
+   /**
+    * @return The number of days nothing is left to come on.
+    */
+   public int getEmpty() {
+      return numEmpty;
+   }
+
+   /**
+    * @return True if any reduction was made.
+    */
+   public boolean hasReductions() {
+      return numDropped > 0 || fixed.length > 0 || classes > 0 || numEmpty > 0;
+   }
+
+   @Override
+   public String toString() {
+      return "Reduced: " + numDropped + " fragments dropped, " + fixed.length + " schools fixed, "
+              + numMerged + " schools merged into " + classes + " items, " + numEmpty + " days empty";
+   }
+}
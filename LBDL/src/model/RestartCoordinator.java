@@ -0,0 +1,367 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+
+/**
+ * Hands out restarts to worker processes and merges what they find. The
+ * problem is encoded once with ProblemCodec and sent to every worker that
+ * connects. Workers are then given ranges of restart numbers, run
+ * seedFor(restart) for each one, and send back the best restart of the
+ * range. Only restart numbers and seat counts cross the socket, and the
+ * coordinator replays the winning restart to rebuild its schedule.
+ *
+ * Ties go to the higher restart number, the same as altKnapsack, so a run
+ * gives the same schedule no matter how many workers it had. A range whose
+ * worker drops is handed to the next worker that asks.
+ *
+ * Workers can be started on this host, or on other hosts with
+ * "java -cp LBDL.jar model.RestartWorker host port" once the coordinator
+ * listens on an address they can reach.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class RestartCoordinator {
+
+   /**
+    * Sent to a worker with a range of restarts to run
+    */
+   static final byte RANGE = 1;
+   /**
+    * Sent to a worker when there is nothing left to run
+    */
+   static final byte DONE = 2;
+   /**
+    * Sent back by a worker with the best restart of its range
+    */
+   static final byte RESULT = 3;
+   /**
+    * How long to wait without any worker connected before giving up
+    */
+   private static final int CONNECT_TIMEOUT = 30000;
+   /**
+    * How often to check if the run was cancelled while waiting
+    */
+   private static final int CANCEL_CHECK = 100;
+
+   private final LogicModel model;
+   /**
+    * The encoded problem sent to every worker
+    */
+   private final byte[] problem;
+   /**
+    * The ranges not yet handed out, as {from, to}
+    */
+   private final ArrayDeque<long[]> ranges = new ArrayDeque<>();
+   private final ArrayList<Process> processes = new ArrayList<>();
+   private InetAddress address = InetAddress.getLoopbackAddress();
+   private int port = 0;
+   private int localWorkers;
+   private long total, completed;
+   private int connected;
+   private long lastConnected;
+   private int bestSeated = -1;
+   private long bestRestart = -1;
+   private IOException failure;
+   private boolean finished;
+
+   /**
+    * Encodes the model's problem. Create before the model splits its
+    * schools for the run.
+    *
+    * @param model The model to run restarts for.
+    * @param localWorkers The number of worker processes to start on this
+    * host.
+    */
+   public RestartCoordinator(LogicModel model, int localWorkers) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+      this.model = model;
+      this.localWorkers = localWorkers;
+      try (DataOutputStream out = new DataOutputStream(bytes))
+      {
+         ProblemCodec.write(model, out);
+      } catch (IOException ex)
+      {
+         //Writing to memory does not fail
+         throw new IllegalStateException(ex);
+      }
+      problem = bytes.toByteArray();
+   }
+
+   /**
+    * Sets where workers connect to. The default is the loopback address on
+    * a free port.
+    *
+    * @param address The address to listen on.
+    * @param port The port, or 0 for any free port.
+    */
+   public void setAddress(InetAddress address, int port) {
+      this.address = address;
+      this.port = port;
+   }
+
+   /**
+    * Runs the restarts on the workers. Stops the workers early if the
+    * model's run is cancelled.
+    *
+    * @param iterations The number of restarts.
+    * @param chunk The number of restarts handed out at a time.
+    * @return The restart number of the best schedule, or -1 if none was
+    * reported.
+    * @throws IOException If the coordinator can not listen, or no worker
+    * was connected for CONNECT_TIMEOUT while restarts were left.
+    */
+   public long run(long iterations, long chunk) throws IOException {
+      final ServerSocket server = new ServerSocket(port, 50, address);
+      Thread acceptor;
+
+      total = iterations;
+      for (long from = 0; from < iterations; from += chunk)
+      {
+         ranges.add(new long[]
+         {
+            from, Math.min(iterations, from + chunk)
+         });
+      }
+      acceptor = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            acceptWorkers(server);
+         }
+      }, "coordinator-accept");
+      acceptor.setDaemon(true);
+
+      try
+      {
+         lastConnected = System.currentTimeMillis();
+         acceptor.start();
+         startLocalWorkers(server.getLocalPort());
+         waitForRestarts();
+      } finally
+      {
+         server.close();
+         synchronized (this)
+         {
+            finished = true;
+            notifyAll();
+         }
+         stopLocalWorkers();
+      }
+      return bestRestart;
+   }
+
+   /**
+    * Starts the local worker processes with this JVM's class path.
+    */
+   private void startLocalWorkers(int localPort) throws IOException {
+      String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+      ProcessBuilder builder;
+
+      for (int worker = 0; worker < localWorkers; worker++)
+      {
+         builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                 RestartWorker.class.getName(), address.getHostAddress(), Integer.toString(localPort));
+         builder.inheritIO();
+         processes.add(builder.start());
+      }
+   }
+
+   /**
+    * Waits for the local workers to exit, or stops them if the run failed.
+    */
+   private void stopLocalWorkers() {
+      for (Process process : processes)
+      {
+         if (completed < total)
+         {
+            process.destroy();
+         }
+         try
+         {
+            process.waitFor();
+         } catch (InterruptedException ex)
+         {
+            process.destroy();
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   /**
+    * Waits until every restart has run or the model's run is cancelled.
+    */
+   private synchronized void waitForRestarts() throws IOException {
+      while (completed < total && !model.isCancelled())
+      {
+         if (failure != null)
+         {
+            throw failure;
+         }
+         if (connected == 0 && System.currentTimeMillis() - lastConnected > CONNECT_TIMEOUT)
+         {
+            throw new IOException("No workers connected");
+         }
+         try
+         {
+            wait(CANCEL_CHECK);
+         } catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+         }
+      }
+   }
+
+   /**
+    * Accepts workers until the server is closed. Each worker is served on
+    * its own thread.
+    */
+   private void acceptWorkers(ServerSocket server) {
+      Thread handler;
+
+      while (!server.isClosed())
+      {
+         try
+         {
+            final Socket socket = server.accept();
+
+            handler = new Thread(new Runnable() {
+               @Override
+               public void run() {
+                  serve(socket);
+               }
+            }, "coordinator-" + socket.getRemoteSocketAddress());
+            handler.setDaemon(true);
+            handler.start();
+         } catch (SocketException | SocketTimeoutException ex)
+         {
+            //Closed when the run is done
+         } catch (IOException ex)
+         {
+            synchronized (this)
+            {
+               failure = ex;
+               notifyAll();
+            }
+            return;
+         }
+      }
+   }
+
+   /**
+    * Sends the problem to a worker and hands it ranges until none are left.
+    */
+   private void serve(Socket socket) {
+      long[] range = null;
+      int seated;
+      long restart;
+
+      synchronized (this)
+      {
+         connected++;
+      }
+      try (Socket s = socket)
+      {
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+         DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+
+         out.writeInt(problem.length);
+         out.write(problem);
+         out.writeLong(model.getSeed());
+
+         while ((range = nextRange()) != null)
+         {
+            out.writeByte(RANGE);
+            out.writeLong(range[0]);
+            out.writeLong(range[1]);
+            out.flush();
+
+            if (in.readByte() != RESULT)
+            {
+               throw new IOException("Unexpected message from worker");
+            }
+            seated = in.readInt();
+            restart = in.readLong();
+            merge(range, seated, restart);
+            range = null;
+         }
+         out.writeByte(DONE);
+         out.flush();
+      } catch (IOException ex)
+      {
+         //Another worker takes the range
+         SolverMetrics.get().addDroppedWorker();
+      } finally
+      {
+         synchronized (this)
+         {
+            //Give the unfinished range to another worker
+            if (range != null)
+            {
+               ranges.addFirst(range);
+            }
+            connected--;
+            lastConnected = System.currentTimeMillis();
+            notifyAll();
+         }
+      }
+   }
+
+   /**
+    * Returns the next range to run, or null if every restart is done or
+    * handed out. Waits while a range could still come back from a worker
+    * that drops.
+    */
+   private synchronized long[] nextRange() {
+      while (ranges.isEmpty() && completed < total && !finished)
+      {
+         try
+         {
+            wait();
+         } catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+            return null;
+         }
+      }
+      return finished ? null : ranges.pollFirst();
+   }
+
+   /**
+    * Keeps the best restart and updates the model's progress.
+    */
+   private synchronized void merge(long[] range, int seated, long restart) {
+      if (seated > bestSeated || (seated == bestSeated && restart > bestRestart))
+      {
+         bestSeated = seated;
+         bestRestart = restart;
+      }
+      completed += range[1] - range[0];
+      model.index = (int) completed;
+      model.notify(LogicModel.NotifyCmd.PROG);
+      notifyAll();
+   }
+
+   /**
+    * Returns the seats of the best restart the workers reported.
+    *
+    * @return The number of seated students.
+    */
+   public synchronized int getBestSeated() {
+      return bestSeated;
+   }
+}
@@ -0,0 +1,97 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Runs restarts for a RestartCoordinator. Reads the problem once, then runs
+ * each range of restarts it is given and sends back the best one, until the
+ * coordinator says it is done.
+ *
+ * Usage: java -cp LBDL.jar model.RestartWorker host port
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class RestartWorker {
+
+   /**
+    * Connects to a coordinator and runs restarts until it is done.
+    *
+    * @param host The coordinator's host.
+    * @param port The coordinator's port.
+    * @return The number of restarts run.
+    * @throws IOException If the connection fails.
+    */
+   public static long work(String host, int port) throws IOException {
+      LogicModel model;
+      byte[] problem;
+      long restarts = 0, bestRestart;
+      int seated, bestSeated;
+      byte message;
+
+      try (Socket socket = new Socket(host, port))
+      {
+         DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+         problem = new byte[in.readInt()];
+         in.readFully(problem);
+         model = ProblemCodec.read(new DataInputStream(new ByteArrayInputStream(problem)));
+         model.setSeed(in.readLong());
+         model.createSplitSchoolList();
+
+         while ((message = in.readByte()) == RestartCoordinator.RANGE)
+         {
+            long from = in.readLong();
+            long to = in.readLong();
+
+            bestSeated = -1;
+            bestRestart = -1;
+            for (long restart = from; restart < to; restart++)
+            {
+               seated = model.runIteration(model.seedFor(restart));
+               //Ties go to the later restart, as in altKnapsack
+               if (seated >= bestSeated)
+               {
+                  bestSeated = seated;
+                  bestRestart = restart;
+               }
+            }
+            restarts += to - from;
+
+            out.writeByte(RestartCoordinator.RESULT);
+            out.writeInt(bestSeated);
+            out.writeLong(bestRestart);
+            out.flush();
+         }
+         if (message != RestartCoordinator.DONE)
+         {
+            throw new IOException("Unexpected message from coordinator");
+         }
+      }
+      return restarts;
+   }
+
+   public static void main(String[] args) {
+      if (args.length != 2)
+      {
+         System.err.println("Usage: RestartWorker host port");
+         System.exit(2);
+      }
+      try
+      {
+         //Print nothing, since local workers share the parent's stdout
+         work(args[0], Integer.parseInt(args[1]));
+      } catch (IOException ex)
+      {
+         System.err.println("Worker failed: " + ex.getMessage());
+         System.exit(1);
+      }
+   }
+}
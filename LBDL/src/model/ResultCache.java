@@ -0,0 +1,361 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the results of solver runs, so a run of the same problem with the
+ * same settings gives back its schedule without solving again. A result is
+ * keyed by the SHA-256 of the problem as ProblemCodec writes it and of the
+ * settings that decide the schedule. Only runs that give the same schedule
+ * every time are kept: seeded restart runs, and exact runs without a time
+ * budget.
+ *
+ * A result is stored as the day of every part in the split school list, so
+ * it can be laid back onto any model with the same problem. The least
+ * recently used results are dropped past the capacity. With a directory set,
+ * results are also written there and read back by later processes, and the
+ * directory is trimmed to the same capacity.
+ *
+ * A model has no cache unless given one. Whatever runs the models owns the
+ * cache and hands it to each, so the results are shared only as far as it
+ * chooses.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class ResultCache {
+
+   /**
+    * The results kept unless set otherwise
+    */
+   public static final int DEFAULT_CAPACITY = 64;
+   /**
+    * Added to the key to get a result file's name
+    */
+   public static final String SUFFIX = ".lbdlresult";
+   /**
+    * Marks the start of a result file
+    */
+   private static final int MAGIC = 0x4C424452;
+   /**
+    * The result format version. Change when the layout changes, or when
+    * the solver would give other schedules for the same settings
+    */
+   private static final int VERSION = 2;
+
+   private final LinkedHashMap<String, Result> results = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+         return size() > capacity;
+      }
+   };
+   private int capacity;
+   private File directory;
+   private long hits, misses;
+
+   /**
+    * Creates an empty cache in memory.
+    *
+    * @param capacity The most results kept.
+    */
+   public ResultCache(int capacity) {
+      this.capacity = Math.max(1, capacity);
+   }
+
+   /**
+    * Sets the most results kept, dropping the least recently used ones.
+    *
+    * @param capacity The most results.
+    */
+   public synchronized void setCapacity(int capacity) {
+      Result[] kept = results.values().toArray(new Result[0]);
+      String[] keys = results.keySet().toArray(new String[0]);
+
+      this.capacity = Math.max(1, capacity);
+      //Put them back in use order so the eldest are dropped
+      results.clear();
+      for (int pos = Math.max(0, keys.length - this.capacity); pos < keys.length; pos++)
+      {
+         results.put(keys[pos], kept[pos]);
+      }
+      trimDirectory();
+   }
+
+   /**
+    * Keeps the results in a directory as well, so they outlive the process.
+    *
+    * @param dir The directory, made if missing, or null for memory only.
+    */
+   public synchronized void setDirectory(File dir) {
+      if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+      {
+         System.err.println("Could not make result cache directory " + dir);
+         dir = null;
+      }
+      directory = dir;
+   }
+
+   /**
+    * @return The number of runs answered from the cache.
+    */
+   public synchronized long getHits() {
+      return hits;
+   }
+
+   /**
+    * @return The number of cacheable runs that had to be solved.
+    */
+   public synchronized long getMisses() {
+      return misses;
+   }
+
+   /**
+    * Forgets every result in memory and in the directory.
+    */
+   public synchronized void clear() {
+      File[] files = directory == null ? null : directory.listFiles();
+
+      results.clear();
+      if (files != null)
+      {
+         for (File file : files)
+         {
+            if (file.getName().endsWith(SUFFIX))
+            {
+               file.delete();
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns the key of a model's problem and the run settings.
+    *
+    * @param model The model, before its schools are split for the run.
+    * @param settings Every setting that decides the schedule.
+    * @return The key, as hex.
+    */
+   static String keyOf(LogicModel model, long... settings) {
+      MessageDigest digest;
+      StringBuilder hex = new StringBuilder();
+
+      try
+      {
+         digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException ex)
+      {
+         //Every Java platform has SHA-256
+         throw new IllegalStateException(ex);
+      }
+      try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(new OutputStream() {
+         @Override
+         public void write(int b) {
+         }
+
+         @Override
+         public void write(byte[] b, int off, int len) {
+         }
+      }, digest)))
+      {
+         out.writeInt(VERSION);
+         for (long setting : settings)
+         {
+            out.writeLong(setting);
+         }
+         ProblemCodec.writeCanonical(model, out);
+      } catch (IOException ex)
+      {
+         //Writing to a digest does not fail
+         throw new IllegalStateException(ex);
+      }
+      for (byte b : digest.digest())
+      {
+         hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+   }
+
+   /**
+    * Returns the result of a key, from memory or else from the directory.
+    *
+    * @param key The key.
+    * @return The result, or null if there is none.
+    */
+   synchronized Result get(String key) {
+      Result result = results.get(key);
+      File file;
+
+      if (result == null && directory != null)
+      {
+         file = new File(directory, key + SUFFIX);
+         if (file.isFile())
+         {
+            result = read(file);
+            if (result != null)
+            {
+               results.put(key, result);
+               //Mark it used, for trimming
+               file.setLastModified(System.currentTimeMillis());
+            }
+         }
+      }
+      if (result == null)
+      {
+         misses++;
+      }
+      else
+      {
+         hits++;
+      }
+      return result;
+   }
+
+   /**
+    * Keeps a result, and writes it to the directory if there is one.
+    *
+    * @param key The key.
+    * @param result The result.
+    */
+   synchronized void put(String key, Result result) {
+      File file, temp = null;
+
+      results.put(key, result);
+      if (directory == null)
+      {
+         return;
+      }
+      file = new File(directory, key + SUFFIX);
+      try
+      {
+         //Write to a temp file and move it, so a result is never half written
+         temp = File.createTempFile(key, ".tmp", directory);
+         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+         {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(result.seated);
+            out.writeLong(result.seed);
+            out.writeBoolean(result.optimal);
+            out.writeInt(result.days.length);
+            for (int day : result.days)
+            {
+               out.writeInt(day);
+            }
+         }
+         Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         trimDirectory();
+      } catch (IOException ex)
+      {
+         System.err.println("Could not write result " + file + ": " + ex);
+         if (temp != null)
+         {
+            temp.delete();
+         }
+      }
+   }
+
+   /**
+    * Reads a result file, or returns null if it can not be.
+    */
+   private static Result read(File file) {
+      int[] days;
+      int seated;
+      long seed;
+      boolean optimal;
+
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+      {
+         if (in.readInt() != MAGIC || in.readInt() != VERSION)
+         {
+            return null;
+         }
+         seated = in.readInt();
+         seed = in.readLong();
+         optimal = in.readBoolean();
+         days = new int[in.readInt()];
+         for (int pos = 0; pos < days.length; pos++)
+         {
+            days[pos] = in.readInt();
+         }
+         return new Result(seated, seed, optimal, days);
+      } catch (IOException | RuntimeException ex)
+      {
+         System.err.println("Could not read result " + file + ": " + ex);
+         return null;
+      }
+   }
+
+   /**
+    * Deletes the least recently used result files past the capacity.
+    */
+   private void trimDirectory() {
+      File[] files = directory == null ? null : directory.listFiles();
+      int count = 0;
+
+      if (files == null)
+      {
+         return;
+      }
+      Arrays.sort(files, new Comparator<File>() {
+         @Override
+         public int compare(File f1, File f2) {
+            return Long.compare(f2.lastModified(), f1.lastModified());
+         }
+      });
+      for (File file : files)
+      {
+         if (file.getName().endsWith(SUFFIX) && ++count > capacity)
+         {
+            file.delete();
+         }
+      }
+   }
+
+   /**
+    * One run's schedule, as the day of every split school part.
+    */
+   static class Result {
+
+      /**
+       * The number of seated students, to check the schedule laid back
+       */
+      final int seated;
+      /**
+       * The restart seed of the schedule, or BestSchedule.NO_SEED
+       */
+      final long seed;
+      /**
+       * True if an exact run proved the schedule optimal
+       */
+      final boolean optimal;
+      /**
+       * The Day.index of every part in the split school list, 0 if it was
+       * not scheduled
+       */
+      final int[] days;
+
+      Result(int seated, long seed, boolean optimal, int[] days) {
+         this.seated = seated;
+         this.seed = seed;
+         this.optimal = optimal;
+         this.days = days;
+      }
+   }
+}
@@ -36,14 +36,32 @@ public class School
    protected int splitId;
    /** Total number of students including all splits*/
    protected int totalNumStudents;
+   /** One bit per available day, keyed by Day.index */
+   protected long[] availMask;
+   /** The position of this school in the split school list. -1 if not in it */
+   protected int splitIndex = -1;
    
    
    /**
     * Creates a School object to represent a school.
+    *
+    * @param ids Where the school's id and split id come from.
+    */
+   public School(IdAllocator ids)
+   {
+      this(ids.nextId(), ids.nextSplitId());
+   }
+   
+   /**
+    * Creates a School object with the given ids.
+    *
+    * @param newId The id of the school.
+    * @param newSplitId The split id of the school.
     */
-   public School(int newId)
+   public School(int newId, int newSplitId)
    {
       this.availDates = new ArrayList<>();
+      this.availMask = new long[1];
       this.splitNums = new ArrayList<>();
       this.splitSchool = new ArrayList<>();
       this.priority = 100.0;
@@ -52,7 +70,7 @@ public class School
       this.split = false;
       this.actualDay = null;
       this.id = newId;
-      this.splitId = LogicModel.schoolSplitId++;
+      this.splitId = newSplitId;
    }
    
    /**
@@ -60,13 +78,15 @@ public class School
     * 
     * @param old The original school to create from.
     * @param splitNum The numStudents of the new school.
+    * @param newId The id of the new school.
     */
-   public School(School old, int splitNum)
+   public School(School old, int splitNum, int newId)
    {
       this.actualDay = old.actualDay;
       this.availDates = old.availDates;
+      this.availMask = old.availMask;
       this.comments = old.comments;
-      this.id = LogicModel.schoolId++;
+      this.id = newId;
       this.name = old.name;
       this.numStudents = splitNum;
       this.priority = old.priority;
@@ -84,7 +104,31 @@ public class School
     */
    public void addDay(Day day)
    {
+      int word;
+      
       availDates.add(day);
+      if (day != null)
+      {
+         word = day.index >>> 6;
+         if (word >= availMask.length)
+         {
+            availMask = Arrays.copyOf(availMask, word + 1);
+         }
+         availMask[word] |= 1L << day.index;
+      }
+   }
+   
+   /**
+    * Returns if the school can come on the given day.
+    * 
+    * @param day The day to check.
+    * @return True if the day is one of the available dates.
+    */
+   public boolean isAvailable(Day day)
+   {
+      int word = day.index >>> 6;
+      
+      return word < availMask.length && (availMask[word] & (1L << day.index)) != 0;
    }
    
    /**
@@ -0,0 +1,545 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.LocaleUtil;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Streams the first sheet of an xlsx file one row at a time with SAX, so a
+ * workbook can be read without loading all of it. Only the shared strings
+ * and the styles are kept in memory.
+ *
+ * Cells give the same values an XSSFCell would: toString() and
+ * getNumericCellValue() follow POI's rules for strings, numbers, dates,
+ * booleans, errors and blank cells, so code moved over from the XSSF model
+ * reads the same values.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class SheetReader {
+
+   /**
+    * Gets each row of the sheet in order.
+    */
+   public interface RowHandler {
+
+      /**
+       * Takes one row. The cells are reused for the next row, so copy what
+       * is needed.
+       *
+       * @param rowNum The row number, starting at 0.
+       * @param cells The cells that are in the file, in column order.
+       * @return False to stop reading.
+       * @throws Exception If the row can not be used.
+       */
+      boolean row(int rowNum, ArrayList<Cell> cells) throws Exception;
+   }
+
+   private static final int NUMERIC = 0, STRING = 1, FORMULA = 2, BLANK = 3, BOOLEAN = 4, ERROR = 5;
+   /**
+    * Characters escaped in strings, as XSSFRichTextString decodes them
+    */
+   private static final Pattern ESCAPE = Pattern.compile("_x([0-9A-F]{4})_");
+
+   /**
+    * One cell of a row.
+    */
+   public static class Cell {
+
+      private final SheetReader sheet;
+      private int col;
+      private int type;
+      private int style;
+      private String value;
+      private String formula;
+
+      private Cell(SheetReader sheet) {
+         this.sheet = sheet;
+      }
+
+      /**
+       * Returns a copy of the cell that is not reused for the next row.
+       *
+       * @return The copy.
+       */
+      public Cell copy() {
+         Cell cell = new Cell(sheet);
+
+         cell.col = col;
+         cell.type = type;
+         cell.style = style;
+         cell.value = value;
+         cell.formula = formula;
+         return cell;
+      }
+
+      /**
+       * Returns the column, starting at 0.
+       *
+       * @return The column.
+       */
+      public int getColumnIndex() {
+         return col;
+      }
+
+      /**
+       * Returns the number in the cell, as XSSFCell.getNumericCellValue.
+       *
+       * @return The number. 0 for a blank cell.
+       * @throws IllegalStateException If the cell holds text, a boolean or
+       * an error.
+       */
+      public double getNumericCellValue() {
+         if (type == BLANK || ((type == NUMERIC || type == FORMULA) && (value == null || value.isEmpty())))
+         {
+            return 0;
+         }
+         if (type == NUMERIC || type == FORMULA)
+         {
+            try
+            {
+               return Double.parseDouble(value);
+            } catch (NumberFormatException ex)
+            {
+               //Falls through to the type error like XSSFCell
+            }
+         }
+         throw new IllegalStateException("Cannot get a numeric value from a "
+                 + (type == STRING ? "text" : type == BOOLEAN ? "boolean" : type == ERROR ? "error" : "formula")
+                 + " cell");
+      }
+
+      /**
+       * Returns the cell as text, as XSSFCell.toString.
+       *
+       * @return The text.
+       */
+      @Override
+      public String toString() {
+         double number;
+         DateFormat formatter;
+
+         switch (type)
+         {
+            case BLANK:
+               return "";
+            case BOOLEAN:
+               return "1".equals(value) ? "TRUE" : "FALSE";
+            case ERROR:
+            case STRING:
+               return value == null ? "" : value;
+            case FORMULA:
+               return formula;
+            default:
+               number = getNumericCellValue();
+               if (sheet.isDateFormatted(number, style))
+               {
+                  formatter = new SimpleDateFormat("dd-MMM-yyyy", LocaleUtil.getUserLocale());
+                  formatter.setTimeZone(LocaleUtil.getUserTimeZone());
+                  return formatter.format(DateUtil.getJavaDate(number, sheet.date1904));
+               }
+               return Double.toString(number);
+         }
+      }
+   }
+
+   private final StylesTable styles;
+   private final boolean date1904;
+   private final ArrayList<String> strings;
+
+   private SheetReader(StylesTable styles, boolean date1904, ArrayList<String> strings) {
+      this.styles = styles;
+      this.date1904 = date1904;
+      this.strings = strings;
+   }
+
+   /**
+    * Reads the first sheet of a workbook.
+    *
+    * @param filename The xlsx file.
+    * @param handler Gets each row.
+    * @throws Exception If the file can not be read, or the handler fails.
+    */
+   public static void read(String filename, RowHandler handler) throws Exception {
+      OPCPackage pkg = OPCPackage.open(filename, PackageAccess.READ);
+      XSSFReader reader;
+      SheetReader sheet;
+      Iterator<InputStream> sheets;
+
+      try
+      {
+         reader = new XSSFReader(pkg);
+         sheet = new SheetReader(reader.getStylesTable(), readDate1904(reader), readStrings(reader));
+         sheets = reader.getSheetsData();
+         if (!sheets.hasNext())
+         {
+            throw new IOException("The workbook has no sheets");
+         }
+         try (InputStream in = sheets.next())
+         {
+            sheet.parse(in, handler);
+         }
+      } finally
+      {
+         //Read only, so nothing is saved
+         pkg.revert();
+      }
+   }
+
+   /**
+    * Returns if a number is shown as a date, as DateUtil.isCellDateFormatted.
+    */
+   private boolean isDateFormatted(double number, int styleIndex) {
+      XSSFCellStyle style;
+
+      if (!DateUtil.isValidExcelDate(number) || styles == null || styles.getNumCellStyles() == 0)
+      {
+         return false;
+      }
+      style = styles.getStyleAt(styleIndex);
+      return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+   }
+
+   /**
+    * Reads the sheet, handing each row to the handler.
+    */
+   private void parse(InputStream in, final RowHandler handler) throws Exception {
+      final ArrayList<Cell> cells = new ArrayList<>();
+      final ArrayList<Cell> spare = new ArrayList<>();
+      XMLReader xml = SAXHelper.newXMLReader();
+
+      xml.setContentHandler(new DefaultHandler() {
+         private final StringBuilder text = new StringBuilder();
+         private final StringBuilder runs = new StringBuilder();
+         private Cell cell;
+         private int rowNum = -1, nextCol;
+         private boolean inValue, inFormula, inRun, inPhonetic, hasRuns, shared;
+
+         @Override
+         public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+            String ref, cellType, styleIndex;
+
+            switch (localName)
+            {
+               case "row":
+                  ref = attrs.getValue("r");
+                  rowNum = ref != null ? Integer.parseInt(ref) - 1 : rowNum + 1;
+                  nextCol = 0;
+                  spare.addAll(cells);
+                  cells.clear();
+                  break;
+               case "c":
+                  cell = spare.isEmpty() ? new Cell(SheetReader.this) : spare.remove(spare.size() - 1);
+                  ref = attrs.getValue("r");
+                  cell.col = ref != null ? column(ref) : nextCol;
+                  nextCol = cell.col + 1;
+                  styleIndex = attrs.getValue("s");
+                  cell.style = styleIndex != null ? Integer.parseInt(styleIndex) : 0;
+                  cellType = attrs.getValue("t");
+                  cell.type = cellType == null || cellType.equals("n") ? NUMERIC
+                          : cellType.equals("b") ? BOOLEAN : cellType.equals("e") ? ERROR : STRING;
+                  shared = "s".equals(cellType);
+                  cell.value = null;
+                  cell.formula = null;
+                  hasRuns = false;
+                  runs.setLength(0);
+                  text.setLength(0);
+                  break;
+               case "v":
+                  inValue = true;
+                  text.setLength(0);
+                  break;
+               case "f":
+                  inFormula = true;
+                  text.setLength(0);
+                  break;
+               case "is":
+                  inValue = true;
+                  text.setLength(0);
+                  break;
+               case "r":
+                  inRun = true;
+                  hasRuns = true;
+                  break;
+               case "rPh":
+                  inPhonetic = true;
+                  break;
+            }
+         }
+
+         @Override
+         public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName)
+            {
+               case "v":
+                  inValue = false;
+                  cell.value = text.toString();
+                  if (shared)
+                  {
+                     cell.value = strings.get(Integer.parseInt(cell.value.trim()));
+                  }
+                  else if (cell.type == STRING)
+                  {
+                     cell.value = decode(cell.value);
+                  }
+                  break;
+               case "f":
+                  inFormula = false;
+                  cell.formula = text.toString();
+                  break;
+               case "is":
+                  inValue = false;
+                  cell.value = decode(hasRuns ? runs.toString() : text.toString());
+                  break;
+               case "r":
+                  inRun = false;
+                  break;
+               case "rPh":
+                  inPhonetic = false;
+                  break;
+               case "c":
+                  if (cell.formula != null)
+                  {
+                     cell.type = FORMULA;
+                  }
+                  else if (cell.value == null && cell.type == NUMERIC)
+                  {
+                     cell.type = BLANK;
+                  }
+                  cells.add(cell);
+                  cell = null;
+                  break;
+               case "row":
+                  try
+                  {
+                     if (!handler.row(rowNum, cells))
+                     {
+                        throw new StopReading();
+                     }
+                  } catch (SAXException ex)
+                  {
+                     throw ex;
+                  } catch (Exception ex)
+                  {
+                     throw new SAXException(ex);
+                  }
+                  break;
+            }
+         }
+
+         @Override
+         public void characters(char[] ch, int start, int length) {
+            if (inPhonetic)
+            {
+               return;
+            }
+            if (inRun && inValue)
+            {
+               runs.append(ch, start, length);
+            }
+            else if (inValue || inFormula)
+            {
+               text.append(ch, start, length);
+            }
+         }
+      });
+
+      try
+      {
+         xml.parse(new InputSource(in));
+      } catch (StopReading ex)
+      {
+         //The handler has what it needs
+      } catch (SAXException ex)
+      {
+         if (ex.getException() != null)
+         {
+            throw ex.getException();
+         }
+         throw ex;
+      }
+   }
+
+   /**
+    * Thrown to stop parsing once the handler is done.
+    */
+   private static class StopReading extends SAXException {
+
+      private static final long serialVersionUID = 1L;
+   }
+
+   /**
+    * Returns the column of a cell reference such as AB12, where A = 0.
+    */
+   private static int column(String ref) {
+      int number = 0;
+
+      for (int i = 0; i < ref.length() && Character.isLetter(ref.charAt(i)); i++)
+      {
+         number = number * 26 + (ref.charAt(i) - ('A' - 1));
+      }
+      return number - 1;
+   }
+
+   /**
+    * Decodes _xHHHH_ escapes, as XSSFRichTextString.getString does.
+    */
+   private static String decode(String value) {
+      StringBuffer decoded;
+      Matcher matcher;
+
+      if (value == null || value.indexOf("_x") < 0)
+      {
+         return value;
+      }
+      decoded = new StringBuffer();
+      matcher = ESCAPE.matcher(value);
+      while (matcher.find())
+      {
+         matcher.appendReplacement(decoded, "");
+         decoded.append((char) Integer.parseInt(matcher.group(1), 16));
+      }
+      matcher.appendTail(decoded);
+      return decoded.toString();
+   }
+
+   /**
+    * Reads the shared strings. Each one is its runs joined together, or its
+    * text if it has no runs, leaving out phonetic text.
+    */
+   private static ArrayList<String> readStrings(XSSFReader reader) throws Exception {
+      final ArrayList<String> strings = new ArrayList<>();
+      XMLReader xml;
+
+      try (InputStream in = reader.getSharedStringsData())
+      {
+         if (in == null)
+         {
+            return strings;
+         }
+         xml = SAXHelper.newXMLReader();
+         xml.setContentHandler(new DefaultHandler() {
+            private final StringBuilder text = new StringBuilder();
+            private final StringBuilder runs = new StringBuilder();
+            private boolean inText, inRun, inPhonetic, hasRuns, hasText;
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attrs) {
+               switch (localName)
+               {
+                  case "si":
+                     text.setLength(0);
+                     runs.setLength(0);
+                     hasRuns = false;
+                     hasText = false;
+                     break;
+                  case "r":
+                     inRun = true;
+                     hasRuns = true;
+                     break;
+                  case "rPh":
+                     inPhonetic = true;
+                     break;
+                  case "t":
+                     inText = true;
+                     if (!inRun && !inPhonetic)
+                     {
+                        hasText = true;
+                     }
+                     break;
+               }
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+               switch (localName)
+               {
+                  case "si":
+                     strings.add(hasRuns ? decode(runs.toString()) : hasText ? decode(text.toString()) : null);
+                     break;
+                  case "r":
+                     inRun = false;
+                     break;
+                  case "rPh":
+                     inPhonetic = false;
+                     break;
+                  case "t":
+                     inText = false;
+                     break;
+               }
+            }
+
+            @Override
+            public void characters(char[] ch, int start, int length) {
+               if (!inText || inPhonetic)
+               {
+                  return;
+               }
+               if (inRun)
+               {
+                  runs.append(ch, start, length);
+               }
+               else
+               {
+                  text.append(ch, start, length);
+               }
+            }
+         });
+         xml.parse(new InputSource(in));
+      }
+      return strings;
+   }
+
+   /**
+    * Reads if the workbook counts dates from 1904.
+    */
+   private static boolean readDate1904(XSSFReader reader) throws Exception {
+      final boolean[] date1904 = new boolean[1];
+      XMLReader xml = SAXHelper.newXMLReader();
+
+      xml.setContentHandler(new DefaultHandler() {
+         @Override
+         public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+            String value;
+
+            if (localName.equals("workbookPr"))
+            {
+               value = attrs.getValue("date1904");
+               date1904[0] = "1".equals(value) || "true".equals(value);
+               throw new StopReading();
+            }
+            if (localName.equals("sheets"))
+            {
+               throw new StopReading();
+            }
+         }
+      });
+      try (InputStream in = reader.getWorkbookData())
+      {
+         xml.parse(new InputSource(in));
+      } catch (StopReading ex)
+      {
+         //Found it, or it is not there
+      }
+      return date1904[0];
+   }
+}
@@ -0,0 +1,148 @@
+package model;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A solver run on its own thread, started by LogicModel.knapsack(). The
+ * result is the best schedule of the run.
+ *
+ * Cancelling is cooperative. It raises the model's cancel flag, which the
+ * restart loops and the day scheduling check, so the solver thread stops
+ * within one day solve and frees its CPU. A cancelled run keeps the best
+ * schedule of the restarts it finished, and still sends the gui its
+ * results. get() throws CancellationException as for any cancelled Future,
+ * so use await() or getBest() for that schedule.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class SolverJob implements Future<BestSchedule> {
+
+   private final LogicModel model;
+   private final FutureTask<BestSchedule> task;
+   private final Thread thread;
+
+   SolverJob(final LogicModel model) {
+      this.model = model;
+      task = new FutureTask<>(new Callable<BestSchedule>() {
+         @Override
+         public BestSchedule call() {
+            try
+            {
+               model.solve();
+            } catch (RuntimeException | Error ex)
+            {
+               //No one may call get(), so do not lose it
+               ex.printStackTrace();
+               throw ex;
+            }
+            return model.getBest();
+         }
+      });
+      thread = new Thread(task, "solver");
+   }
+
+   /**
+    * Starts the run.
+    */
+   void start() {
+      thread.start();
+   }
+
+   /**
+    * @return The number of restarts done, or the share of the time budget
+    * used out of getTotal() for anytime runs.
+    */
+   public int getProgress() {
+      return model.index;
+   }
+
+   /**
+    * @return The progress of a finished run.
+    */
+   public int getTotal() {
+      return model.iterations;
+   }
+
+   /**
+    * @return The best schedule so far, or null if no restart has finished.
+    */
+   public BestSchedule getBest() {
+      return model.getBest();
+   }
+
+   /**
+    * @return True while the solver thread has not stopped, even after a
+    * cancel.
+    */
+   public boolean isRunning() {
+      return thread.isAlive();
+   }
+
+   /**
+    * Stops the run. The solver thread stops soon after, see isRunning().
+    *
+    * @param mayInterruptIfRunning Also interrupt the solver thread, which
+    * only matters while it waits on distributed workers.
+    * @return False if the run had already finished or been cancelled.
+    */
+   @Override
+   public boolean cancel(boolean mayInterruptIfRunning) {
+      if (task.isDone())
+      {
+         return false;
+      }
+      model.requestCancel();
+      return task.cancel(mayInterruptIfRunning);
+   }
+
+   @Override
+   public boolean isCancelled() {
+      return task.isCancelled();
+   }
+
+   @Override
+   public boolean isDone() {
+      return task.isDone();
+   }
+
+   @Override
+   public BestSchedule get() throws InterruptedException, ExecutionException {
+      return task.get();
+   }
+
+   @Override
+   public BestSchedule get(long timeout, TimeUnit unit)
+           throws InterruptedException, ExecutionException, TimeoutException {
+      return task.get(timeout, unit);
+   }
+
+   /**
+    * Waits for the solver thread to stop, finished or cancelled.
+    *
+    * @return The best schedule of the run, or null if there is none.
+    * @throws InterruptedException If interrupted while waiting.
+    */
+   public BestSchedule await() throws InterruptedException {
+      thread.join();
+      return model.getBest();
+   }
+
+   /**
+    * Waits for the solver thread to stop, up to the timeout.
+    *
+    * @param timeout The longest to wait.
+    * @param unit The unit of the timeout.
+    * @return True if the thread stopped.
+    * @throws InterruptedException If interrupted while waiting.
+    */
+   public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+      thread.join(Math.max(1, unit.toMillis(timeout)));
+      return !thread.isAlive();
+   }
+}
@@ -0,0 +1,585 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts and times the phases of the solver, and publishes them over JMX as
+ * "LBDL:type=SolverMetrics" so a running scheduler can be watched with
+ * jconsole or any other JMX client.
+ *
+ * Every phase keeps a count, a total, a maximum, and a histogram of its
+ * times. Histogram bucket i counts the times from 2^i up to 2^(i+1)
+ * nanoseconds. The phases that run for every day of every restart are first
+ * recorded into the model's own Recorder, which no other thread touches,
+ * and added to the shared totals once per restart. What the problem
+ * reductions removed is counted too, in place of printing it.
+ *
+ * Several models can run at once, as Server's solvers do, so the rates are
+ * totals over the time any run was going rather than one run's.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class SolverMetrics implements SolverMetricsMXBean {
+
+   /**
+    * The phases that are timed.
+    */
+   public enum Phase {
+      /** Reading the input file */
+      PARSE("parse"),
+      /** Splitting the schools before a run */
+      SPLIT("createSplitSchoolList"),
+      /** Finding the schools that can come on a day */
+      AVAIL("getAvail"),
+      /** Filling the knapsack table of a day */
+      FILL("fillTable"),
+      /** Picking the day's schools from the table */
+      CHOOSE("altChooseSchedule"),
+      /** One restart's schedule and exclude loop, with the phases in it */
+      EXCLUSION("exclusionLoop"),
+      /** Copying a schedule that may be the best */
+      SNAPSHOT("snapshot"),
+      /** The local search over the best schedule */
+      IMPROVE("improve");
+
+      private final String label;
+
+      Phase(String label) {
+         this.label = label;
+      }
+
+      /**
+       * @return The name the phase is published under.
+       */
+      public String getLabel() {
+         return label;
+      }
+   }
+
+   /**
+    * The name the metrics are registered under
+    */
+   public static final String NAME = "LBDL:type=SolverMetrics";
+   /**
+    * The number of histogram buckets. The last one also holds anything
+    * longer
+    */
+   static final int BUCKETS = 48;
+   private static final int PHASES = Phase.values().length;
+   private static final SolverMetrics INSTANCE = new SolverMetrics();
+
+   static
+   {
+      try
+      {
+         ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(NAME));
+      } catch (JMException | SecurityException ex)
+      {
+         //Still count, just without JMX
+         System.err.println("Solver metrics not registered: " + ex);
+      }
+   }
+
+   private final AtomicLongArray count = new AtomicLongArray(PHASES);
+   private final AtomicLongArray total = new AtomicLongArray(PHASES);
+   private final AtomicLongArray max = new AtomicLongArray(PHASES);
+   private final AtomicLongArray buckets = new AtomicLongArray(PHASES * BUCKETS);
+   private final AtomicLong runs = new AtomicLong();
+   private final AtomicLong iterations = new AtomicLong();
+   private final AtomicLong cells = new AtomicLong();
+   private final AtomicLong memoHits = new AtomicLong();
+   private final AtomicLong memoMisses = new AtomicLong();
+   private final AtomicLong droppedWorkers = new AtomicLong();
+   private final AtomicLong searchNodes = new AtomicLong();
+   private final AtomicLong optimalRuns = new AtomicLong();
+   private final AtomicLong localMoves = new AtomicLong();
+   private final AtomicLong localAccepted = new AtomicLong();
+   private final AtomicLong localSeated = new AtomicLong();
+   private final AtomicLong reusedRuns = new AtomicLong();
+   private final AtomicLong reducedFragments = new AtomicLong();
+   private final AtomicLong fixedSchools = new AtomicLong();
+   private final AtomicLong mergedSchools = new AtomicLong();
+   private final AtomicLong emptyDays = new AtomicLong();
+   /**
+    * The runs going now. Models can run at once, so nothing here belongs
+    * to one run
+    */
+   private int activeRuns;
+   /**
+    * The nanoseconds some run was going before busySince, and when the
+    * current stretch of runs started
+    */
+   private long busyNanos, busySince;
+
+   private SolverMetrics() {
+   }
+
+   /**
+    * Returns the metrics, registering them the first time.
+    *
+    * @return The metrics.
+    */
+   public static SolverMetrics get() {
+      return INSTANCE;
+   }
+
+   /**
+    * Marks the start of a solver run, for the per second rates.
+    */
+   public synchronized void beginRun() {
+      runs.incrementAndGet();
+      if (activeRuns++ == 0)
+      {
+         busySince = System.nanoTime();
+      }
+   }
+
+   /**
+    * Marks the end of a solver run. Every beginRun() needs one.
+    */
+   public synchronized void endRun() {
+      if (activeRuns > 0 && --activeRuns == 0)
+      {
+         busyNanos += System.nanoTime() - busySince;
+      }
+   }
+
+   /**
+    * Records a phase straight into the totals. For phases that run once or
+    * a few times a run.
+    *
+    * @param phase The phase.
+    * @param startNanos The System.nanoTime() the phase started at.
+    */
+   public void record(Phase phase, long startNanos) {
+      long nanos = System.nanoTime() - startNanos;
+      int p = phase.ordinal();
+
+      count.incrementAndGet(p);
+      total.addAndGet(p, nanos);
+      raiseMax(p, nanos);
+      buckets.incrementAndGet(p * BUCKETS + bucketOf(nanos));
+   }
+
+   /**
+    * Counts the nodes of an exact run's branch and bound search.
+    *
+    * @param nodes The nodes searched.
+    * @param optimal True if the search proved its schedule optimal.
+    */
+   public void addSearch(long nodes, boolean optimal) {
+      searchNodes.addAndGet(nodes);
+      if (optimal)
+      {
+         optimalRuns.incrementAndGet();
+      }
+   }
+
+   /**
+    * Counts the moves of a local search over the best schedule.
+    *
+    * @param moves The moves tried.
+    * @param accepted The moves taken.
+    * @param seated The students seated beyond the schedule it started from.
+    */
+   public void addLocalSearch(long moves, long accepted, long seated) {
+      localMoves.addAndGet(moves);
+      localAccepted.addAndGet(accepted);
+      localSeated.addAndGet(seated);
+   }
+
+   /**
+    * Counts a restart worker whose connection failed before it was done.
+    */
+   public void addDroppedWorker() {
+      droppedWorkers.incrementAndGet();
+   }
+
+   /**
+    * Counts a run whose schedule came from a result cache.
+    */
+   public void addReusedRun() {
+      reusedRuns.incrementAndGet();
+   }
+
+   /**
+    * Adds what a problem reduction removed to the totals.
+    *
+    * @param reduction The reduction just built.
+    */
+   public void addReduction(ProblemReduction reduction) {
+      reducedFragments.addAndGet(reduction.getDropped());
+      fixedSchools.addAndGet(reduction.getFixed().length);
+      mergedSchools.addAndGet(reduction.getMerged());
+      emptyDays.addAndGet(reduction.getEmpty());
+   }
+
+   /**
+    * Adds a recorder's counts to the totals.
+    */
+   private void merge(Recorder recorder) {
+      for (int p = 0; p < PHASES; p++)
+      {
+         if (recorder.count[p] == 0)
+         {
+            continue;
+         }
+         count.addAndGet(p, recorder.count[p]);
+         total.addAndGet(p, recorder.total[p]);
+         raiseMax(p, recorder.max[p]);
+         for (int b = p * BUCKETS; b < (p + 1) * BUCKETS; b++)
+         {
+            if (recorder.buckets[b] != 0)
+            {
+               buckets.addAndGet(b, recorder.buckets[b]);
+            }
+         }
+      }
+      iterations.addAndGet(recorder.iterations);
+      cells.addAndGet(recorder.cells);
+      memoHits.addAndGet(recorder.memoHits);
+      memoMisses.addAndGet(recorder.memoMisses);
+   }
+
+   private void raiseMax(int p, long nanos) {
+      long current;
+
+      do
+      {
+         current = max.get(p);
+      } while (nanos > current && !max.compareAndSet(p, current, nanos));
+   }
+
+   /**
+    * Returns the histogram bucket of a time.
+    */
+   static int bucketOf(long nanos) {
+      return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+   }
+
+   @Override
+   public long getRuns() {
+      return runs.get();
+   }
+
+   @Override
+   public synchronized boolean isRunning() {
+      return activeRuns > 0;
+   }
+
+   @Override
+   public synchronized int getActiveRuns() {
+      return activeRuns;
+   }
+
+   @Override
+   public synchronized double getBusySeconds() {
+      return (busyNanos + (activeRuns > 0 ? System.nanoTime() - busySince : 0)) / 1e9;
+   }
+
+   @Override
+   public long getIterations() {
+      return iterations.get();
+   }
+
+   @Override
+   public long getDpCells() {
+      return cells.get();
+   }
+
+   @Override
+   public long getDpMemoHits() {
+      return memoHits.get();
+   }
+
+   @Override
+   public long getDpMemoMisses() {
+      return memoMisses.get();
+   }
+
+   @Override
+   public long getSearchNodes() {
+      return searchNodes.get();
+   }
+
+   @Override
+   public long getOptimalRuns() {
+      return optimalRuns.get();
+   }
+
+   @Override
+   public long getLocalSearchMoves() {
+      return localMoves.get();
+   }
+
+   @Override
+   public long getLocalSearchAccepted() {
+      return localAccepted.get();
+   }
+
+   @Override
+   public long getLocalSearchSeated() {
+      return localSeated.get();
+   }
+
+   @Override
+   public long getDroppedWorkers() {
+      return droppedWorkers.get();
+   }
+
+   @Override
+   public long getReusedRuns() {
+      return reusedRuns.get();
+   }
+
+   @Override
+   public long getReducedFragments() {
+      return reducedFragments.get();
+   }
+
+   @Override
+   public long getFixedSchools() {
+      return fixedSchools.get();
+   }
+
+   @Override
+   public long getMergedSchools() {
+      return mergedSchools.get();
+   }
+
+   @Override
+   public long getEmptyDays() {
+      return emptyDays.get();
+   }
+
+   @Override
+   public double getIterationsPerSecond() {
+      double seconds = getBusySeconds();
+
+      return seconds > 0 ? iterations.get() / seconds : 0;
+   }
+
+   @Override
+   public double getDpCellsPerSecond() {
+      double seconds = getBusySeconds();
+
+      return seconds > 0 ? cells.get() / seconds : 0;
+   }
+
+   @Override
+   public List<PhaseStats> getPhases() {
+      List<PhaseStats> phases = new ArrayList<>();
+      long[] histogram;
+
+      for (Phase phase : Phase.values())
+      {
+         int p = phase.ordinal();
+
+         histogram = new long[BUCKETS];
+         for (int b = 0; b < BUCKETS; b++)
+         {
+            histogram[b] = buckets.get(p * BUCKETS + b);
+         }
+         phases.add(new PhaseStats(phase.label, count.get(p), total.get(p), max.get(p), histogram));
+      }
+      return phases;
+   }
+
+   @Override
+   public synchronized void reset() {
+      for (int p = 0; p < PHASES; p++)
+      {
+         count.set(p, 0);
+         total.set(p, 0);
+         max.set(p, 0);
+      }
+      for (int b = 0; b < buckets.length(); b++)
+      {
+         buckets.set(b, 0);
+      }
+      iterations.set(0);
+      cells.set(0);
+      memoHits.set(0);
+      memoMisses.set(0);
+      searchNodes.set(0);
+      optimalRuns.set(0);
+      localMoves.set(0);
+      localAccepted.set(0);
+      localSeated.set(0);
+      reusedRuns.set(0);
+      droppedWorkers.set(0);
+      busyNanos = 0;
+      busySince = System.nanoTime();
+      reducedFragments.set(0);
+      fixedSchools.set(0);
+      mergedSchools.set(0);
+      emptyDays.set(0);
+   }
+
+   /**
+    * The counts and times of one phase, as shown over JMX.
+    */
+   public static class PhaseStats {
+
+      private final String name;
+      private final long count, totalNanos, maxNanos;
+      private final long[] histogram;
+
+      PhaseStats(String name, long count, long totalNanos, long maxNanos, long[] histogram) {
+         this.name = name;
+         this.count = count;
+         this.totalNanos = totalNanos;
+         this.maxNanos = maxNanos;
+         this.histogram = histogram;
+      }
+
+      public String getName() {
+         return name;
+      }
+
+      public long getCount() {
+         return count;
+      }
+
+      public double getTotalMillis() {
+         return totalNanos / 1e6;
+      }
+
+      public double getMeanMicros() {
+         return count > 0 ? totalNanos / 1e3 / count : 0;
+      }
+
+      public double getMaxMicros() {
+         return maxNanos / 1e3;
+      }
+
+      public double getP50Micros() {
+         return percentile(0.50);
+      }
+
+      public double getP90Micros() {
+         return percentile(0.90);
+      }
+
+      public double getP99Micros() {
+         return percentile(0.99);
+      }
+
+      /**
+       * @return The count of every histogram bucket.
+       */
+      public long[] getHistogram() {
+         return histogram.clone();
+      }
+
+      /**
+       * Returns the top of the bucket the given fraction of times fall in.
+       */
+      private double percentile(double fraction) {
+         long seen = 0, rank = (long) Math.ceil(fraction * count);
+
+         for (int b = 0; b < histogram.length; b++)
+         {
+            seen += histogram[b];
+            if (seen >= rank && seen > 0)
+            {
+               return Math.min(maxNanos, 2L << b) / 1e3;
+            }
+         }
+         return 0;
+      }
+   }
+
+   /**
+    * Records phases for one model. Only the model's own thread uses it, so
+    * recording is plain array updates. flush() adds it to the totals.
+    */
+   static class Recorder {
+
+      private final long[] count = new long[PHASES];
+      private final long[] total = new long[PHASES];
+      private final long[] max = new long[PHASES];
+      private final long[] buckets = new long[PHASES * BUCKETS];
+      private long iterations, cells, memoHits, memoMisses;
+      private boolean dirty = false;
+
+      /**
+       * Records a phase.
+       *
+       * @param phase The phase.
+       * @param startNanos The System.nanoTime() the phase started at.
+       */
+      void record(Phase phase, long startNanos) {
+         long nanos = System.nanoTime() - startNanos;
+         int p = phase.ordinal();
+
+         count[p]++;
+         total[p] += nanos;
+         if (nanos > max[p])
+         {
+            max[p] = nanos;
+         }
+         buckets[p * BUCKETS + bucketOf(nanos)]++;
+         dirty = true;
+      }
+
+      /**
+       * Counts the cells of a filled knapsack table.
+       */
+      void addCells(long filled) {
+         cells += filled;
+         dirty = true;
+      }
+
+      /**
+       * Counts a day solve looked up in the model's DayMemo.
+       */
+      void addMemo(boolean hit) {
+         if (hit)
+         {
+            memoHits++;
+         }
+         else
+         {
+            memoMisses++;
+         }
+         dirty = true;
+      }
+
+      /**
+       * Counts a finished restart.
+       */
+      void addIteration() {
+         iterations++;
+         dirty = true;
+      }
+
+      /**
+       * Adds what was recorded to the totals and starts over.
+       */
+      void flush() {
+         if (!dirty)
+         {
+            return;
+         }
+         INSTANCE.merge(this);
+         Arrays.fill(count, 0);
+         Arrays.fill(total, 0);
+         Arrays.fill(max, 0);
+         Arrays.fill(buckets, 0);
+         iterations = 0;
+         cells = 0;
+         memoHits = 0;
+         memoMisses = 0;
+         dirty = false;
+      }
+   }
+}
@@ -0,0 +1,139 @@
+package model;
+
+import java.util.List;
+
+/**
+ * The solver metrics published over JMX. See SolverMetrics.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public interface SolverMetricsMXBean {
+
+   /**
+    * @return The number of solver runs started.
+    */
+   long getRuns();
+
+   /**
+    * @return True while any run is going.
+    */
+   boolean isRunning();
+
+   /**
+    * @return The number of runs going now.
+    */
+   int getActiveRuns();
+
+   /**
+    * @return The seconds at least one run was going, over all runs. Runs
+    * that overlap are counted once.
+    */
+   double getBusySeconds();
+
+   /**
+    * @return The number of restarts run, over all runs.
+    */
+   long getIterations();
+
+   /**
+    * @return The number of knapsack table cells filled, over all runs.
+    */
+   long getDpCells();
+
+   /**
+    * @return The number of day solves answered from a DayMemo, over all
+    * runs.
+    */
+   long getDpMemoHits();
+
+   /**
+    * @return The number of day solves that filled a knapsack table and were
+    * kept in a DayMemo, over all runs.
+    */
+   long getDpMemoMisses();
+
+   /**
+    * @return The number of branch and bound nodes exact runs searched, over
+    * all runs.
+    */
+   long getSearchNodes();
+
+   /**
+    * @return The number of exact runs that proved their schedule optimal
+    * before the search limit.
+    */
+   long getOptimalRuns();
+
+   /**
+    * @return The number of moves local searches tried, over all runs.
+    */
+   long getLocalSearchMoves();
+
+   /**
+    * @return The number of moves local searches took, over all runs.
+    */
+   long getLocalSearchAccepted();
+
+   /**
+    * @return The students local searches seated beyond the schedules they
+    * started from, over all runs.
+    */
+   long getLocalSearchSeated();
+
+   /**
+    * @return The number of restart workers whose connection failed before
+    * they were done, over all runs. Their restarts are run by the others.
+    */
+   long getDroppedWorkers();
+
+   /**
+    * @return The number of runs whose schedule came from a result cache
+    * instead of being solved.
+    */
+   long getReusedRuns();
+
+   /**
+    * @return The fragments problem reductions dropped since they fit no
+    * day, over all runs.
+    */
+   long getReducedFragments();
+
+   /**
+    * @return The schools problem reductions fixed to their only day, over
+    * all runs.
+    */
+   long getFixedSchools();
+
+   /**
+    * @return The schools problem reductions put in a class with copies,
+    * over all runs.
+    */
+   long getMergedSchools();
+
+   /**
+    * @return The days problem reductions left nothing to come on, over all
+    * runs.
+    */
+   long getEmptyDays();
+
+   /**
+    * @return The restarts per busy second, over all runs.
+    */
+   double getIterationsPerSecond();
+
+   /**
+    * @return The knapsack table cells per busy second, over all runs.
+    */
+   double getDpCellsPerSecond();
+
+   /**
+    * @return The counts and times of every phase, over all runs.
+    */
+   List<SolverMetrics.PhaseStats> getPhases();
+
+   /**
+    * Sets every count and time back to zero.
+    */
+   void reset();
+}
@@ -0,0 +1,144 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+/**
+ * Groups the split school list by splitId so the parts of a school can be
+ * found without scanning every school. The index is only read once built,
+ * so parallel workers share it.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class SplitIndex {
+
+   /**
+    * The parts of every school, in split school list order
+    */
+   private final School[][] groups;
+   /**
+    * The group of every position in the split school list
+    */
+   private final int[] groupOf;
+   /**
+    * The mustAdd key of every position in the split school list. -1 if none
+    */
+   private final int[] mustAddKey;
+   /**
+    * Group number keyed by splitId
+    */
+   private final HashMap<Integer, Integer> bySplitId;
+   /**
+    * The split school list the index was built from
+    */
+   private final ArrayList<School> schoolListSplit;
+
+   /**
+    * Builds the index. Every school must already have its splitIndex set.
+    *
+    * @param schoolListSplit The split school list.
+    * @param mustAdd The must add schools, keyed by the id of the school they
+    * were split from.
+    */
+   public SplitIndex(ArrayList<School> schoolListSplit, HashMap<Integer, ArrayList<School>> mustAdd) {
+      ArrayList<ArrayList<School>> members = new ArrayList<>();
+      Integer group;
+
+      this.schoolListSplit = schoolListSplit;
+      bySplitId = new HashMap<>();
+      groupOf = new int[schoolListSplit.size()];
+      mustAddKey = new int[schoolListSplit.size()];
+
+      for (School school : schoolListSplit)
+      {
+         group = bySplitId.get(school.splitId);
+         if (group == null)
+         {
+            group = members.size();
+            bySplitId.put(school.splitId, group);
+            members.add(new ArrayList<School>());
+         }
+         members.get(group).add(school);
+         groupOf[school.splitIndex] = group;
+         mustAddKey[school.splitIndex] = -1;
+      }
+
+      groups = new School[members.size()][];
+      for (int g = 0; g < groups.length; g++)
+      {
+         groups[g] = members.get(g).toArray(new School[0]);
+      }
+
+      for (Entry<Integer, ArrayList<School>> entry : mustAdd.entrySet())
+      {
+         for (School school : entry.getValue())
+         {
+            if (contains(school))
+            {
+               mustAddKey[school.splitIndex] = entry.getKey();
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns if the school is one of the indexed parts.
+    *
+    * @param school The school.
+    * @return True if the school is in the split school list.
+    */
+   public boolean contains(School school) {
+      int pos = school.splitIndex;
+
+      return pos >= 0 && pos < groupOf.length && schoolListSplit.get(pos) == school;
+   }
+
+   /**
+    * Returns the group of a school. Any school with the same splitId as an
+    * indexed part is in that part's group.
+    *
+    * @param school The school.
+    * @return The group, or -1 if no part has the school's splitId.
+    */
+   public int groupOf(School school) {
+      Integer group;
+
+      if (contains(school))
+      {
+         return groupOf[school.splitIndex];
+      }
+      group = bySplitId.get(school.splitId);
+      return group == null ? -1 : group;
+   }
+
+   /**
+    * Returns the parts of a group.
+    *
+    * @param group The group.
+    * @return The parts, in split school list order.
+    */
+   public School[] getParts(int group) {
+      return groups[group];
+   }
+
+   /**
+    * Returns the mustAdd key of a part.
+    *
+    * @param school An indexed part.
+    * @return The key, or -1 if the part is not a must add.
+    */
+   public int getMustAddKey(School school) {
+      return mustAddKey[school.splitIndex];
+   }
+
+   /**
+    * Returns the number of groups.
+    *
+    * @return The number of groups.
+    */
+   public int size() {
+      return groups.length;
+   }
+}
@@ -0,0 +1,105 @@
+package model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the exact solver mode against a brute force search, and against
+ * the restarts it starts from.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class BranchAndBoundTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * On problems small enough to try every schedule, the exact mode proves
+    * it seats as many students as the best of them.
+    */
+   @Test
+   public void matchesBruteForce() throws Exception {
+      LogicModel model;
+      Day[] days;
+      int[] seats;
+      int best;
+
+      for (long seed = 1; seed <= 25; seed++)
+      {
+         model = new TestProblems().seed(seed).size(7, 3).read(folder.getRoot());
+         model.createSplitSchoolList();
+         days = model.dayList.values().toArray(new Day[0]);
+         seats = new int[days.length];
+         for (int d = 0; d < days.length; d++)
+         {
+            seats[d] = days[d].getMaxSeats();
+         }
+         best = TestProblems.bruteForce(model.schoolListSplit, days, seats);
+
+         model.setSolverMode(LogicModel.SolverMode.EXACT);
+         model.setIterations(0);
+         model.solve();
+
+         assertTrue("seed " + seed, model.isProvenOptimal());
+         assertEquals("seed " + seed, best, model.getBest().getSeated());
+         assertFits(model);
+      }
+   }
+
+   /**
+    * With restarts first, the exact mode never seats fewer students than
+    * the same restarts do alone, even when the search runs out of time.
+    */
+   @Test
+   public void neverBelowRestarts() throws Exception {
+      LogicModel restarts, exact;
+      TestProblems problem;
+
+      for (long seed = 1; seed <= 4; seed++)
+      {
+         problem = new TestProblems().seed(seed).size(40, 6).seats(150, 250);
+         restarts = problem.read(folder.getRoot());
+         restarts.setIterations(30);
+         restarts.setSeed(seed);
+         restarts.solve();
+
+         exact = problem.read(folder.getRoot());
+         exact.setSolverMode(LogicModel.SolverMode.EXACT);
+         exact.setIterations(30);
+         exact.setSeed(seed);
+         exact.setTimeBudget(200);
+         exact.solve();
+
+         assertTrue("seed " + seed, exact.getBest().getSeated() >= restarts.getBest().getSeated());
+         assertFits(exact);
+      }
+   }
+
+   /**
+    * Checks that every day of the best schedule has room for its schools,
+    * and that they can all come that day.
+    */
+   static void assertFits(LogicModel model) {
+      Day day;
+      int seated, total = 0;
+
+      for (FinalDay finalDay : model.getBest().getSchedule())
+      {
+         day = model.dayList.get(finalDay.index);
+         seated = 0;
+         for (School school : finalDay.getSchools())
+         {
+            assertTrue(school.isAvailable(day));
+            seated += school.numStudents;
+         }
+         assertTrue(seated <= day.getMaxSeats());
+         total += seated;
+      }
+      assertEquals(model.getBest().getSeated(), total);
+   }
+}
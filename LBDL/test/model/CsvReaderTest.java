@@ -0,0 +1,86 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that CSV and TSV files read the same as a workbook of the same
+ * cells.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class CsvReaderTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * The days and schools read from CSV and TSV files match the ones read
+    * from the workbook.
+    */
+   @Test
+   public void matchesWorkbook() throws Exception {
+      TestProblems problem;
+      String workbook;
+
+      for (long seed = 1; seed <= 5; seed++)
+      {
+         problem = new TestProblems().seed(seed).size(30, 12).splitRatio(.4);
+         workbook = describe(problem.read(folder.getRoot(), ".xlsx"));
+
+         assertEquals("seed " + seed, workbook, describe(problem.read(folder.getRoot(), ".csv")));
+         assertEquals("seed " + seed, workbook, describe(problem.read(folder.getRoot(), ".tsv")));
+      }
+   }
+
+   /**
+    * Numbers are parsed the way Double.valueOf parses them.
+    */
+   @Test
+   public void parsesNumbers() {
+      String[] numbers = {"0", "7", "42.0", "110.5", "-3", "+8", "1e3", "2.5E-2", " 12 ", "0.30000000000000004",
+         "123456789012345678", "1.7976931348623157E308"};
+      byte[] bytes;
+
+      for (String number : numbers)
+      {
+         bytes = number.getBytes();
+         assertEquals(number, Double.parseDouble(number), CsvReader.parseNumber(bytes, 0, bytes.length), 0.0);
+      }
+   }
+
+   /**
+    * Returns everything the solver reads from the days and schools, one
+    * line each.
+    */
+   private static String describe(LogicModel model) {
+      StringBuilder text = new StringBuilder();
+      ArrayList<Integer> days = new ArrayList<>(model.dayList.keySet());
+      Day day;
+
+      Collections.sort(days);
+      for (int index : days)
+      {
+         day = model.dayList.get(index);
+         text.append(index).append(' ').append(day.getMaxSeats()).append(' ')
+                 .append(day.date.get(Calendar.MONTH)).append('/').append(day.date.get(Calendar.DAY_OF_MONTH))
+                 .append('\n');
+      }
+      for (School school : model.schoolList)
+      {
+         text.append(school.name).append(' ').append(school.priority).append(' ').append(school.numStudents)
+                 .append(' ').append(school.totalNumStudents).append(' ').append(school.visited)
+                 .append(' ').append(school.split).append(' ').append(school.splitNums)
+                 .append(' ').append(Arrays.toString(school.availMask))
+                 .append(' ').append(model.toAdd.contains(school)).append('\n');
+      }
+      return text.toString();
+   }
+}
@@ -0,0 +1,174 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks KnapsackTable against the two dimensional table the day solves used
+ * to fill.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class KnapsackTableTest {
+
+   /**
+    * The best value and the items taken match the old table on random days,
+    * with one table reused for every solve.
+    */
+   @Test
+   public void matchesTwoDimensionalTable() {
+      Random random = new Random(11);
+      KnapsackTable table = new KnapsackTable();
+      double[][] grid;
+      int[] weights;
+      double[] values;
+      int items, capacity;
+
+      for (int trial = 0; trial < 300; trial++)
+      {
+         items = 1 + random.nextInt(25);
+         capacity = random.nextInt(250);
+         weights = new int[items + 1];
+         values = new double[items + 1];
+         table.reset(items, capacity);
+         for (int item = 1; item <= items; item++)
+         {
+            weights[item] = 1 + random.nextInt(80);
+            //Priorities are 500 less the sheet's priority, with a bonus
+            values[item] = 500 - random.nextInt(200) + random.nextInt(3) * .5;
+            table.setItem(item, weights[item], values[item]);
+         }
+         table.fill();
+         grid = fillGrid(weights, values, capacity);
+
+         assertEquals(grid[items][capacity], table.getValue(capacity), 1e-9);
+         assertEquals(gridPicks(grid, weights, capacity), tablePicks(table, weights, capacity));
+      }
+   }
+
+   /**
+    * An item with copies is worth the same as that many separate items.
+    */
+   @Test
+   public void copiesMatchSeparateItems() {
+      Random random = new Random(12);
+      KnapsackTable table = new KnapsackTable();
+      ArrayList<Integer> weights = new ArrayList<>();
+      ArrayList<Double> values = new ArrayList<>();
+      int[] copies, expandedWeights;
+      double[] expandedValues;
+      int items, capacity, taken, weight, row;
+      double total;
+
+      for (int trial = 0; trial < 200; trial++)
+      {
+         items = 1 + random.nextInt(6);
+         capacity = random.nextInt(300);
+         copies = new int[items + 1];
+         weights.clear();
+         values.clear();
+         table.reset(items, capacity);
+         for (int item = 1; item <= items; item++)
+         {
+            weights.add(1 + random.nextInt(60));
+            values.add(300.0 + random.nextInt(200));
+            copies[item] = 1 + random.nextInt(9);
+            table.setItem(item, weights.get(item - 1), values.get(item - 1), copies[item]);
+         }
+         table.fill();
+
+         row = 0;
+         for (int item = 1; item <= items; item++)
+         {
+            row += copies[item];
+         }
+         expandedWeights = new int[row + 1];
+         expandedValues = new double[row + 1];
+         row = 1;
+         for (int item = 1; item <= items; item++)
+         {
+            for (int copy = 0; copy < copies[item]; copy++, row++)
+            {
+               expandedWeights[row] = weights.get(item - 1);
+               expandedValues[row] = values.get(item - 1);
+            }
+         }
+         assertEquals(fillGrid(expandedWeights, expandedValues, capacity)[row - 1][capacity],
+                 table.getValue(capacity), 1e-9);
+
+         //Backtracking the copies adds up to the best value
+         weight = capacity;
+         total = 0;
+         for (int item = items; item > 0; item--)
+         {
+            taken = table.getCopies(item, weight);
+            assertTrue(taken <= copies[item]);
+            total += taken * values.get(item - 1);
+            weight -= taken * weights.get(item - 1);
+         }
+         assertTrue(weight >= 0);
+         assertEquals(table.getValue(capacity), total, 1e-9);
+      }
+   }
+
+   /**
+    * Fills the table the way the day solves did before KnapsackTable, with a
+    * row for every item.
+    */
+   private static double[][] fillGrid(int[] weights, double[] values, int capacity) {
+      int items = weights.length - 1;
+      double[][] grid = new double[items + 1][capacity + 1];
+
+      for (int item = 1; item <= items; item++)
+      {
+         for (int weight = 1; weight <= capacity; weight++)
+         {
+            grid[item][weight] = grid[item - 1][weight];
+            if (weights[item] <= weight)
+            {
+               grid[item][weight] = Math.max(grid[item][weight],
+                       grid[item - 1][weight - weights[item]] + values[item]);
+            }
+         }
+      }
+      return grid;
+   }
+
+   /**
+    * Backtracks the old table. An item was taken if it raised the value by at
+    * least .01.
+    */
+   private static ArrayList<Integer> gridPicks(double[][] grid, int[] weights, int capacity) {
+      ArrayList<Integer> picks = new ArrayList<>();
+      int weight = capacity;
+
+      for (int item = weights.length - 1; item > 0; item--)
+      {
+         if (Math.abs(grid[item][weight] - grid[item - 1][weight]) >= .01)
+         {
+            picks.add(item);
+            weight -= weights[item];
+         }
+      }
+      return picks;
+   }
+
+   private static ArrayList<Integer> tablePicks(KnapsackTable table, int[] weights, int capacity) {
+      ArrayList<Integer> picks = new ArrayList<>();
+      int weight = capacity;
+
+      for (int item = weights.length - 1; item > 0; item--)
+      {
+         if (table.isTaken(item, weight))
+         {
+            picks.add(item);
+            weight -= weights[item];
+         }
+      }
+      return picks;
+   }
+}
@@ -0,0 +1,79 @@
+package model;
+
+import java.util.HashMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the local search never makes the best schedule worse.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class LocalSearchTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * After a short run, every local search seats at least as many students,
+    * keeps every day within its seats and keeps split schools whole.
+    */
+   @Test
+   public void neverLowersSeated() throws Exception {
+      LogicModel model;
+      int seated, improved = 0;
+
+      for (long seed = 1; seed <= 15; seed++)
+      {
+         model = new TestProblems().seed(seed).size(40, 6).seats(100, 200).splitRatio(.4).read(folder.getRoot());
+         model.setIterations(1);
+         model.setSeed(seed);
+         model.solve();
+
+         for (int round = 0; round < 3; round++)
+         {
+            seated = model.getBest().getSeated();
+            if (model.improve(2000))
+            {
+               improved++;
+            }
+            assertTrue("seed " + seed, model.getBest().getSeated() >= seated);
+            BranchAndBoundTest.assertFits(model);
+            assertWhole(model);
+         }
+      }
+      //The searches did move schools
+      assertTrue(improved > 0);
+   }
+
+   /**
+    * Checks that every split school of the best schedule has all its parts
+    * scheduled or none.
+    */
+   private static void assertWhole(LogicModel model) {
+      HashMap<Integer, Integer> placed = new HashMap<>(), parts = new HashMap<>();
+      Integer count;
+
+      for (School part : model.schoolListSplit)
+      {
+         count = parts.get(part.splitId);
+         parts.put(part.splitId, count == null ? 1 : count + 1);
+      }
+      for (FinalDay day : model.getBest().getSchedule())
+      {
+         for (School part : day.getSchools())
+         {
+            count = placed.get(part.splitId);
+            placed.put(part.splitId, count == null ? 1 : count + 1);
+         }
+      }
+      for (Integer group : placed.keySet())
+      {
+         assertEquals(parts.get(group), placed.get(group));
+      }
+   }
+}
@@ -0,0 +1,124 @@
+package model;
+
+import java.util.ArrayList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the problem reduction never costs a seat.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class ProblemReductionTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * The best schedule of the reduced problem, with the fixed schools on
+    * their days and only the work list left to place on the live days,
+    * seats as many students as the best schedule of the whole problem.
+    */
+   @Test
+   public void reducedSolveMatchesFullSolve() throws Exception {
+      LogicModel model;
+      ProblemReduction reduction;
+      ArrayList<Day> live = new ArrayList<>();
+      Day[] days;
+      int[] seats;
+      int full, fixed, dropped = 0, fixedSchools = 0, merged = 0, empty = 0;
+      School school;
+      Day day;
+
+      //The first ten schools are must adds, which are never fixed or merged,
+      //so there are more schools than the other tests use
+      for (long seed = 1; seed <= 40; seed++)
+      {
+         model = new TestProblems().seed(seed).size(16, 3).seats(5, 60).students(12, 13)
+                 .availability(.35).priorities(2).read(folder.getRoot());
+         model.createSplitSchoolList();
+         reduction = new ProblemReduction(model.schoolListSplit, model.dayList.values(),
+                 new SplitIndex(model.schoolListSplit, model.mustAdd));
+
+         days = model.dayList.values().toArray(new Day[0]);
+         seats = new int[days.length];
+         for (int d = 0; d < days.length; d++)
+         {
+            seats[d] = days[d].getMaxSeats();
+         }
+         full = TestProblems.bruteForce(model.schoolListSplit, days, seats);
+
+         fixed = 0;
+         for (int pos : reduction.getFixed())
+         {
+            school = model.schoolListSplit.get(pos);
+            day = model.dayList.get(reduction.getFixedDay(pos));
+            assertTrue(school.isAvailable(day));
+            day.seatsLeft -= school.numStudents;
+            fixed += school.numStudents;
+         }
+         live.clear();
+         for (Day d : model.dayList.values())
+         {
+            assertTrue(d.seatsLeft >= 0);
+            if (reduction.isLive(d))
+            {
+               live.add(d);
+            }
+         }
+         days = live.toArray(new Day[0]);
+         seats = new int[days.length];
+         for (int d = 0; d < days.length; d++)
+         {
+            seats[d] = days[d].seatsLeft;
+         }
+
+         assertEquals("seed " + seed, full, fixed + TestProblems.bruteForce(reduction.getWorkList(), days, seats));
+         dropped += reduction.getDropped();
+         fixedSchools += reduction.getFixed().length;
+         merged += reduction.getMerged();
+         empty += reduction.getEmpty();
+      }
+
+      //Every reduction was tried
+      assertTrue(dropped > 0);
+      assertTrue(fixedSchools > 0);
+      assertTrue(merged > 0);
+      assertTrue(empty > 0);
+   }
+
+   /**
+    * Restarts on a reduced problem give schedules that fit, and seat no more
+    * than the best schedule of the whole problem.
+    */
+   @Test
+   public void restartsStayFeasible() throws Exception {
+      LogicModel model;
+      Day[] days;
+      int[] seats;
+
+      for (long seed = 1; seed <= 10; seed++)
+      {
+         model = new TestProblems().seed(seed).size(16, 3).seats(5, 60).students(12, 13)
+                 .availability(.35).priorities(2).read(folder.getRoot());
+         model.createSplitSchoolList();
+         days = model.dayList.values().toArray(new Day[0]);
+         seats = new int[days.length];
+         for (int d = 0; d < days.length; d++)
+         {
+            seats[d] = days[d].getMaxSeats();
+         }
+
+         model.setIterations(20);
+         model.setSeed(seed);
+         model.solve();
+
+         BranchAndBoundTest.assertFits(model);
+         assertTrue(model.getBest().getSeated() <= TestProblems.bruteForce(model.schoolListSplit, days, seats));
+      }
+   }
+}
@@ -0,0 +1,52 @@
+package model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that replaying a seed gives back the schedule the seed gave during
+ * the run.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class ReplayTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * The best schedule's seed, replayed on the same model and on a new model
+    * of the same workbook, gives the same schedule, on one thread or many.
+    */
+   @Test
+   public void sameSchedule() throws Exception {
+      TestProblems problem;
+      LogicModel model, fresh;
+      BestSchedule best, replayed;
+
+      for (long seed = 1; seed <= 6; seed++)
+      {
+         problem = new TestProblems().seed(seed).size(30, 6).seats(100, 200).splitRatio(.4);
+         model = problem.read(folder.getRoot());
+         model.setIterations(25);
+         model.setSeed(seed);
+         model.setThreads(seed % 2 == 0 ? 4 : 1);
+         model.solve();
+         best = model.getBest();
+         assertTrue("seed " + seed, best.hasSeed());
+
+         fresh = problem.read(folder.getRoot());
+         replayed = fresh.replay(best.getSeed());
+         assertEquals("seed " + seed, best.getSeated(), replayed.getSeated());
+         assertEquals("seed " + seed, TestProblems.describe(best), TestProblems.describe(replayed));
+         BranchAndBoundTest.assertFits(fresh);
+
+         replayed = model.replay(best.getSeed());
+         assertEquals("seed " + seed, TestProblems.describe(best), TestProblems.describe(replayed));
+      }
+   }
+}
@@ -0,0 +1,76 @@
+package model;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a cached result gives back the schedule the run found.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class ResultCacheTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * A seeded run kept in a result directory is reused by a new cache on the
+    * same directory, and gives the same schedule.
+    */
+   @Test
+   public void roundTrip() throws Exception {
+      TestProblems problem = new TestProblems().seed(3).size(30, 6).seats(100, 200);
+      File dir = folder.newFolder("results");
+      ResultCache cache;
+      LogicModel first, second;
+
+      cache = new ResultCache(ResultCache.DEFAULT_CAPACITY);
+      cache.setDirectory(dir);
+      first = solve(problem, cache, 11);
+      assertFalse(first.isResultReused());
+      assertEquals(1, cache.getMisses());
+
+      //A new cache only has the directory to go on
+      cache = new ResultCache(ResultCache.DEFAULT_CAPACITY);
+      cache.setDirectory(dir);
+      second = solve(problem, cache, 11);
+      assertTrue(second.isResultReused());
+      assertEquals(1, cache.getHits());
+      assertEquals(first.getBest().getSeated(), second.getBest().getSeated());
+      assertEquals(first.getBest().getSeed(), second.getBest().getSeed());
+      assertEquals(TestProblems.describe(first.getBest()), TestProblems.describe(second.getBest()));
+      BranchAndBoundTest.assertFits(second);
+   }
+
+   /**
+    * Runs with another seed are solved, not answered from the cache.
+    */
+   @Test
+   public void otherSeedMisses() throws Exception {
+      TestProblems problem = new TestProblems().seed(3).size(30, 6).seats(100, 200);
+      ResultCache cache = new ResultCache(ResultCache.DEFAULT_CAPACITY);
+      LogicModel model;
+
+      solve(problem, cache, 11);
+      model = solve(problem, cache, 12);
+      assertFalse(model.isResultReused());
+      assertEquals(0, cache.getHits());
+      assertEquals(2, cache.getMisses());
+   }
+
+   private LogicModel solve(TestProblems problem, ResultCache cache, long seed) throws Exception {
+      LogicModel model = problem.read(folder.getRoot());
+
+      model.setResultCache(cache);
+      model.setIterations(20);
+      model.setSeed(seed);
+      model.solve();
+      return model;
+   }
+}
@@ -0,0 +1,133 @@
+package model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that SheetReader reads every cell the way POI's XSSFWorkbook does.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+public class SheetReaderTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * Numbers, text, booleans, formulas, dates and blank cells give the same
+    * columns, text and numbers from both readers.
+    */
+   @Test
+   public void matchesXssfWorkbook() throws Exception {
+      File file = folder.newFile("cells.xlsx");
+      final ArrayList<String> streamed = new ArrayList<>();
+      ArrayList<String> loaded = new ArrayList<>();
+      XSSFWorkbook workbook = new XSSFWorkbook();
+      XSSFSheet sheet = workbook.createSheet();
+      CellStyle dateStyle = workbook.createCellStyle();
+      Calendar date = Calendar.getInstance();
+      Iterator<Row> rows;
+      Row row;
+
+      dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("m/d/yy"));
+      date.set(2016, Calendar.MARCH, 7, 0, 0, 0);
+
+      row = sheet.createRow(0);
+      row.createCell(0).setCellValue("Priority");
+      row.createCell(1).setCellValue("Full School Name:");
+      row.createCell(7).setCellValue("Mon. 3/7");
+      row.createCell(8).setCellValue(date);
+      row.getCell(8).setCellStyle(dateStyle);
+      row = sheet.createRow(1);
+      row.createCell(7).setCellValue(110.0);
+      row.createCell(8).setCellValue(97.5);
+      row.createCell(9).setCellFormula("H2+1");
+      row = sheet.createRow(2);
+      row.createCell(0).setCellValue(1);
+      row.createCell(1).setCellValue("Saint Mary's <School> & \"Annex\"");
+      row.createCell(2).setCellValue("No");
+      row.createCell(4).setCellValue(45);
+      row.createCell(5).setCellValue(true);
+      row.createCell(6).setCellValue("20, 25");
+      row.createCell(7).setCellValue("y");
+      row.createCell(8).setCellStyle(dateStyle);
+      row.createCell(9).setCellValue(1);
+      row.createCell(10).setCellValue(0.1 + 0.2);
+      row.createCell(11).setCellValue(-12345678.25);
+      //Row 3 is left out
+      row = sheet.createRow(4);
+      row.createCell(1).setCellValue("");
+      row.createCell(3).setCellValue("Line one\nLine two\ttabbed");
+      try (OutputStream out = new FileOutputStream(file))
+      {
+         workbook.write(out);
+      }
+
+      SheetReader.read(file.getPath(), new SheetReader.RowHandler() {
+         @Override
+         public boolean row(int rowNum, ArrayList<SheetReader.Cell> cells) {
+            for (SheetReader.Cell cell : cells)
+            {
+               streamed.add(describe(rowNum, cell.getColumnIndex(), cell.toString(), numberOf(cell)));
+            }
+            return true;
+         }
+      });
+
+      workbook = new XSSFWorkbook(file);
+      rows = workbook.getSheetAt(0).rowIterator();
+      while (rows.hasNext())
+      {
+         row = rows.next();
+         for (Cell cell : row)
+         {
+            loaded.add(describe(row.getRowNum(), cell.getColumnIndex(), cell.toString(), numberOf(cell)));
+         }
+      }
+      workbook.close();
+
+      assertEquals(20, loaded.size());
+      assertEquals(loaded, streamed);
+   }
+
+   private static String describe(int row, int col, String text, String number) {
+      return row + ":" + col + " [" + text + "] " + number;
+   }
+
+   /**
+    * Returns the cell's number, or the error asking for it gives.
+    */
+   private static String numberOf(SheetReader.Cell cell) {
+      try
+      {
+         return Double.toString(cell.getNumericCellValue());
+      } catch (IllegalStateException ex)
+      {
+         return "error";
+      }
+   }
+
+   private static String numberOf(Cell cell) {
+      try
+      {
+         return Double.toString(cell.getNumericCellValue());
+      } catch (IllegalStateException ex)
+      {
+         return "error";
+      }
+   }
+}
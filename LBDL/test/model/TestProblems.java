@@ -0,0 +1,357 @@
+package model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Small random problems for the tests, written as CSV files laid out like
+ * the workbook and read into a model the way the GUI reads them.
+ *
+ * @author Daniel Yao
+ * @year 2016
+ */
+class TestProblems {
+
+   /**
+    * The first date column
+    */
+   static final String START = "H";
+   /**
+    * The number of columns before the dates
+    */
+   static final int DATES = 7;
+
+   private long seed = 1;
+   private int schools = 8, days = 3;
+   private int minSeats = 60, maxSeats = 120;
+   private int minStudents = 10, maxStudents = 70;
+   private double splitRatio = .3, availability = .6;
+   /**
+    * The number of different priorities. 0 gives every school its own
+    */
+   private int priorities = 0;
+
+   TestProblems seed(long seed) {
+      this.seed = seed;
+      return this;
+   }
+
+   TestProblems size(int schools, int days) {
+      this.schools = schools;
+      this.days = days;
+      return this;
+   }
+
+   TestProblems seats(int min, int max) {
+      this.minSeats = min;
+      this.maxSeats = max;
+      return this;
+   }
+
+   TestProblems students(int min, int max) {
+      this.minStudents = min;
+      this.maxStudents = max;
+      return this;
+   }
+
+   TestProblems splitRatio(double splitRatio) {
+      this.splitRatio = splitRatio;
+      return this;
+   }
+
+   TestProblems availability(double availability) {
+      this.availability = availability;
+      return this;
+   }
+
+   TestProblems priorities(int priorities) {
+      this.priorities = priorities;
+      return this;
+   }
+
+   /**
+    * Returns the last date column of the problems.
+    *
+    * @return The column name, like AI.
+    */
+   String endColumn() {
+      int number = ExcelHandler.convertColumn(START) + days;
+      String name = "";
+
+      while (number > 0)
+      {
+         name = (char) ('A' + (number - 1) % 26) + name;
+         number = (number - 1) / 26;
+      }
+      return name;
+   }
+
+   /**
+    * Returns the cells of the problem, row by row. Every school has a value
+    * for every date, so a CSV file reads the same as a workbook of the same
+    * cells.
+    *
+    * @return The rows.
+    */
+   ArrayList<String[]> rows() {
+      ArrayList<String[]> rows = new ArrayList<>();
+      Random random = new Random(seed);
+      String[] row;
+      int students, part;
+
+      row = new String[DATES + days];
+      System.arraycopy(new String[] {"Priority", "Full School Name:", "Have you visited before?", "Grade Levels",
+         "How many total students", "Split?", "Split numbers"}, 0, row, 0, DATES);
+      for (int day = 0; day < days; day++)
+      {
+         row[DATES + day] = "Mon. 3/" + (day + 1);
+      }
+      rows.add(row);
+      row = new String[DATES + days];
+      Arrays.fill(row, "");
+      for (int day = 0; day < days; day++)
+      {
+         row[DATES + day] = Integer.toString(minSeats + random.nextInt(maxSeats - minSeats + 1));
+      }
+      rows.add(row);
+
+      for (int school = 0; school < schools; school++)
+      {
+         row = new String[DATES + days];
+         students = minStudents + random.nextInt(maxStudents - minStudents + 1);
+         row[0] = Integer.toString(priorities > 0 ? school % priorities + 1 : school + 1);
+         row[1] = "School " + (school + 1);
+         row[2] = random.nextBoolean() ? "Yes" : "No";
+         row[3] = "K-5";
+         row[4] = Integer.toString(students);
+         if (students >= 2 && random.nextDouble() < splitRatio)
+         {
+            part = 1 + random.nextInt(students - 1);
+            row[5] = "1";
+            row[6] = part + ", " + (students - part);
+         }
+         else
+         {
+            row[5] = "0";
+            row[6] = "";
+         }
+         for (int day = 0; day < days; day++)
+         {
+            row[DATES + day] = random.nextDouble() < availability ? "1" : "0";
+         }
+         rows.add(row);
+      }
+      return rows;
+   }
+
+   /**
+    * Writes the problem to a .csv, .tsv or .xlsx file. In a workbook the
+    * numbers are numeric cells, except the dates' 1s and 0s, which are text
+    * as in the sheets the office fills in. Empty cells are left out.
+    *
+    * @param file The file to write.
+    * @return The file.
+    * @throws IOException If the file can not be written.
+    */
+   File write(File file) throws IOException {
+      StringBuilder text = new StringBuilder();
+      XSSFWorkbook workbook;
+      XSSFSheet sheet;
+      Row sheetRow;
+      ArrayList<String[]> rows = rows();
+      char delimiter = file.getName().endsWith(".tsv") ? '\t' : ',';
+
+      if (file.getName().endsWith(".xlsx"))
+      {
+         workbook = new XSSFWorkbook();
+         sheet = workbook.createSheet();
+         for (int r = 0; r < rows.size(); r++)
+         {
+            sheetRow = sheet.createRow(r);
+            for (int c = 0; c < rows.get(r).length; c++)
+            {
+               if (rows.get(r)[c].matches("[0-9]+") && (c < DATES || r == 1))
+               {
+                  sheetRow.createCell(c).setCellValue(Double.parseDouble(rows.get(r)[c]));
+               }
+               else if (!rows.get(r)[c].isEmpty())
+               {
+                  sheetRow.createCell(c).setCellValue(rows.get(r)[c]);
+               }
+            }
+         }
+         try (OutputStream out = new FileOutputStream(file))
+         {
+            workbook.write(out);
+         }
+         workbook.close();
+         return file;
+      }
+
+      for (String[] row : rows)
+      {
+         for (int c = 0; c < row.length; c++)
+         {
+            if (c > 0)
+            {
+               text.append(delimiter);
+            }
+            if (row[c].indexOf(delimiter) >= 0)
+            {
+               text.append('"').append(row[c]).append('"');
+            }
+            else
+            {
+               text.append(row[c]);
+            }
+         }
+         text.append('\n');
+      }
+      try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))
+      {
+         out.write(text.toString());
+      }
+      return file;
+   }
+
+   /**
+    * Writes the problem to a new CSV file in a folder and reads it into a
+    * new model without a result cache.
+    *
+    * @param dir The folder to write in.
+    * @return The model.
+    * @throws IOException If the file can not be written.
+    */
+   LogicModel read(File dir) throws IOException {
+      return read(dir, ".csv");
+   }
+
+   /**
+    * Writes the problem to a new file of the given type in a folder and
+    * reads it into a new model without a result cache.
+    *
+    * @param dir The folder to write in.
+    * @param suffix The type of file, like .xlsx.
+    * @return The model.
+    * @throws IOException If the file can not be written.
+    */
+   LogicModel read(File dir, String suffix) throws IOException {
+      LogicModel model = new LogicModel();
+      File file = write(File.createTempFile("problem", suffix, dir));
+
+      model.readExcelFile(file.getPath(), START, endColumn());
+      if (!model.fileRead)
+      {
+         throw new IOException("Could not read " + file);
+      }
+      model.setResultCache(null);
+      return model;
+   }
+
+   /**
+    * Returns the schools of a schedule, one line per day, to compare two
+    * schedules by. The schools of a day are sorted, since the order they
+    * were added in does not change the schedule.
+    *
+    * @param schedule The schedule.
+    * @return The days' indexes and school names.
+    */
+   static String describe(BestSchedule schedule) {
+      StringBuilder text = new StringBuilder();
+      ArrayList<String> schools = new ArrayList<>();
+
+      for (FinalDay day : schedule.getSchedule())
+      {
+         schools.clear();
+         for (School school : day.getSchools())
+         {
+            schools.add(school.name + " (" + school.numStudents + ")");
+         }
+         Collections.sort(schools);
+         text.append(day.index).append(": ").append(schools).append('\n');
+      }
+      return text.toString();
+   }
+
+   /**
+    * Returns the most students any schedule can seat, trying every day or
+    * none for each split school. A school only counts if all its parts are
+    * scheduled.
+    *
+    * @param parts The split schools.
+    * @param days The days.
+    * @param seats The seats on each day.
+    * @return The most students seated.
+    */
+   static int bruteForce(ArrayList<School> parts, Day[] days, int[] seats) {
+      LinkedHashMap<Integer, ArrayList<School>> groups = new LinkedHashMap<>();
+
+      for (School part : parts)
+      {
+         if (!groups.containsKey(part.splitId))
+         {
+            groups.put(part.splitId, new ArrayList<School>());
+         }
+         groups.get(part.splitId).add(part);
+      }
+      return bruteForce(new ArrayList<>(groups.values()), days, seats, 0, 0);
+   }
+
+   /**
+    * Returns the most students the schools from group on can seat, with the
+    * parts of group before part already placed.
+    *
+    * @return The most students, or -1 if the rest of the group can not be
+    * placed.
+    */
+   private static int bruteForce(ArrayList<ArrayList<School>> groups, Day[] days, int[] seats, int group, int part) {
+      ArrayList<School> parts;
+      School school;
+      int best = -1, rest, students = 0;
+
+      if (group == groups.size())
+      {
+         return 0;
+      }
+      parts = groups.get(group);
+      if (part == parts.size())
+      {
+         for (School whole : parts)
+         {
+            students += whole.numStudents;
+         }
+         return students + bruteForce(groups, days, seats, group + 1, 0);
+      }
+
+      //Leave the whole school out
+      if (part == 0)
+      {
+         best = bruteForce(groups, days, seats, group + 1, 0);
+      }
+      school = parts.get(part);
+      for (int d = 0; d < days.length; d++)
+      {
+         if (school.isAvailable(days[d]) && seats[d] >= school.numStudents)
+         {
+            seats[d] -= school.numStudents;
+            rest = bruteForce(groups, days, seats, group, part + 1);
+            seats[d] += school.numStudents;
+            best = Math.max(best, rest);
+         }
+      }
+      return best;
+   }
+}